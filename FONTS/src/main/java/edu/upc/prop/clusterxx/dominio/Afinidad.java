@@ -15,9 +15,9 @@ public class Afinidad {
     private final int valor;
 
     /**
-     * Matriz de afinidades, que se obtiene de la clase <b>Matriz</b>.
+     * Instantánea de la matriz de afinidades, que se obtiene de la clase <b>Matriz</b>.
      */
-    private int[][] matriz;
+    private final InstantaneaMatriz matriz;
 
     /**
      * Calcula la afinidad entre los atributos de dos productos.
@@ -41,7 +41,7 @@ public class Afinidad {
             for (Tipo tB : atrB) {
                 int x = tA.getId();
                 int y = tB.getId();
-                v += matriz[x][y];
+                v += matriz.get(x, y);
                 ++count;
             }
         }
@@ -90,14 +90,48 @@ public class Afinidad {
      * @param b Segundo producto.
      */
     public Afinidad(Producto a, Producto b) {
-        ArrayList<Tipo> atrA = a.getAtributosT();
-        ArrayList<Tipo> atrB = b.getAtributosT();
-        ArrayList<Contexto> contA = a.getAtributosC();
-        ArrayList<Contexto> contB = b.getAtributosC();
+        this(a, b, Matriz.getInstance().getInstantanea());
+    }
 
-        Matriz mat = Matriz.getInstance();
-        this.matriz = mat.getMatriz();
-        this.valor = calculoAfinidad(atrA, atrB, contA, contB);
+    /**
+     * Constructor de <b>Afinidad</b> para dos productos usando una instantánea concreta de la matriz.
+     * <p>
+     * Precondición: Ambos productos existen en el sistema y {@code matriz} no es null.
+     * Postcondición: Se calcula y almacena el valor de afinidad entre ambos productos según {@code matriz}.
+     *
+     * @param a      Primer producto.
+     * @param b      Segundo producto.
+     * @param matriz Instantánea de la matriz de afinidades capturada por el llamante.
+     */
+    public Afinidad(Producto a, Producto b, InstantaneaMatriz matriz) {
+        this.matriz = matriz;
+        this.valor = CacheAfinidad.getInstance().obtener(a, b, matriz);
+    }
+
+    /**
+     * Constructor auxiliar que sólo fija la matriz, usado para calcular afinidades sin memoizar.
+     *
+     * @param matriz Instantánea de la matriz de afinidades.
+     */
+    private Afinidad(InstantaneaMatriz matriz) {
+        this.matriz = matriz;
+        this.valor = 0;
+    }
+
+    /**
+     * Calcula directamente (sin pasar por la caché) la afinidad entre dos productos.
+     * <p>
+     * Precondición: {@code matriz} no es null.
+     * Postcondición: Devuelve la afinidad entre {@code a} y {@code b} según {@code matriz}.
+     *
+     * @param a      Primer producto.
+     * @param b      Segundo producto.
+     * @param matriz Instantánea de la matriz de afinidades.
+     * @return Entero que representa la afinidad entre ambos productos.
+     */
+    static int calcular(Producto a, Producto b, InstantaneaMatriz matriz) {
+        Afinidad af = new Afinidad(matriz);
+        return af.calculoAfinidad(a.getAtributosT(), b.getAtributosT(), a.getAtributosC(), b.getAtributosC());
     }
 
     /**
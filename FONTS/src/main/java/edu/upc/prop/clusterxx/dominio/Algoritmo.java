@@ -10,8 +10,15 @@ import java.util.ArrayList;
  * Sus implementaciones concretas son:
  * <ul>
  *     <li>AlgoritmoAproximacion</li>
+ *     <li>AlgoritmoAristas</li>
+ *     <li>AlgoritmoAutomatico</li>
  *     <li>AlgoritmoBruto</li>
+ *     <li>AlgoritmoBusquedaLocal</li>
+ *     <li>AlgoritmoEstantes</li>
+ *     <li>AlgoritmoExacto</li>
+ *     <li>AlgoritmoGenetico</li>
  *     <li>AlgoritmoGreedy</li>
+ *     <li>AlgoritmoTabu</li>
  * </ul>
  */
 public interface Algoritmo {
@@ -23,4 +30,23 @@ public interface Algoritmo {
      * @return Una nueva lista de productos ordenada según la estrategia implementada.
      */
     ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos);
+
+    /**
+     * Establece la brecha de optimalidad objetivo: la búsqueda puede detenerse en cuanto la afinidad
+     * de la mejor solución esté a esa fracción o menos de la cota superior ({@link CotaSuperior}).
+     * Las estrategias que no admiten parada anticipada la ignoran.
+     *
+     * @param brecha Brecha objetivo entre 0 y 1; 0 desactiva la parada anticipada.
+     */
+    default void setBrechaObjetivo(double brecha) {
+    }
+
+    /**
+     * Establece la semilla de los números aleatorios, para que dos ejecuciones con la misma semilla y
+     * los mismos productos den el mismo resultado. Las estrategias deterministas la ignoran.
+     *
+     * @param semilla Semilla de los números aleatorios.
+     */
+    default void setSemilla(long semilla) {
+    }
 }
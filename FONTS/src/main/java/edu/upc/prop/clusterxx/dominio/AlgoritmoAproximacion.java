@@ -11,6 +11,16 @@ import java.util.Random;
  */
 public class AlgoritmoAproximacion implements Algoritmo {
 
+    /**
+     * Brecha de optimalidad objetivo (0 si no hay parada anticipada).
+     */
+    private volatile double brechaObjetivo;
+
+    /**
+     * Semilla de los reinicios aleatorios.
+     */
+    private volatile long semilla;
+
     /**
      * Aplica el enfoque de <i>hill climbing</i> a la lista de productos.
      * <p>
@@ -22,7 +32,8 @@ public class AlgoritmoAproximacion implements Algoritmo {
      * @return Una nueva lista de productos ordenada tras aplicar el algoritmo de <i>hill climbing</i>.
      */
     private ArrayList<Producto> hillclimbing(ArrayList<Producto> listaProductos) {
-        Random random = new Random();
+        Random random = new Random(semilla);
+        InstantaneaMatriz matriz = Matriz.getInstance().getInstantanea();
         int numIntentos;
         if (listaProductos.size() < 14) {
             numIntentos = listaProductos.size() * 3;
@@ -32,8 +43,18 @@ public class AlgoritmoAproximacion implements Algoritmo {
 
         ArrayList<Producto> mejorIntento = listaProductos;
         int afinidadMejorIntento = 0;
+        // Afinidad con la que se dejan de hacer intentos (brecha objetivo)
+        int objetivo = Integer.MAX_VALUE;
+        if (brechaObjetivo > 0 && listaProductos.size() > 1) {
+            objetivo = CotaSuperior.objetivo(new TablaAfinidad(listaProductos, matriz), brechaObjetivo, 0);
+        }
 
-        for (int iIntentos = 0; iIntentos < numIntentos; ++iIntentos) {
+        Metricas.Ejecucion ejecucion = Metricas.getInstance().iniciar("AlgoritmoAproximacion");
+        for (int iIntentos = 0; iIntentos < numIntentos && afinidadMejorIntento < objetivo; ++iIntentos) {
+            ejecucion.reinicio();
+            EventoIntentoAproximacion evento = new EventoIntentoAproximacion();
+            evento.begin();
+            int mejorasIntento = 0;
             // Creación de una distribución inicial aleatoria
             ArrayList<Producto> listaOrdenada = new ArrayList<>();
             for (int i = 0; i < listaProductos.size(); ++i) {
@@ -46,14 +67,15 @@ public class AlgoritmoAproximacion implements Algoritmo {
             for (int i = 0; i < listaOrdenada.size() - 1; ++i) {
                 Producto p1 = listaOrdenada.get(i);
                 Producto p2 = listaOrdenada.get(i + 1);
-                Afinidad a = new Afinidad(p1, p2);
+                Afinidad a = new Afinidad(p1, p2, matriz);
                 afinidadTotalAux += a.getValor();
             }
             // Añadir afinidad entre el primer y el último producto (distribución circular)
             Producto primero = listaOrdenada.get(0);  // Ajusta si utilizas otro tipo de lista
             Producto ultimo = listaOrdenada.get(listaOrdenada.size() - 1);
-            Afinidad a = new Afinidad(primero, ultimo);
+            Afinidad a = new Afinidad(primero, ultimo, matriz);
             afinidadTotalAux += a.getValor();
+            int afinidadInicial = afinidadTotalAux;
 
             // Búsqueda de mejoras locales (intercambios de productos)
             boolean mejora = true;
@@ -64,6 +86,7 @@ public class AlgoritmoAproximacion implements Algoritmo {
                     for (int j = i; j < listaOrdenada.size(); ++j) {
                         ArrayList<Producto> listaAux = new ArrayList<>(listaOrdenada);
                         if (i != j) {
+                            ejecucion.probados(1);
                             // Intercambiamos los productos
                             Producto auxP1 = listaAux.get(i);
                             Producto auxP2 = listaAux.get(j);
@@ -74,17 +97,19 @@ public class AlgoritmoAproximacion implements Algoritmo {
                             for (int k = 0; k < listaAux.size() - 1; ++k) {
                                 Producto p3 = listaAux.get(k);
                                 Producto p4 = listaAux.get(k + 1);
-                                Afinidad a2 = new Afinidad(p3, p4);
+                                Afinidad a2 = new Afinidad(p3, p4, matriz);
                                 afinidadTotalAux2 += a2.getValor();
                             }
                             // Añadimos la afinidad entre el primer y el último producto
                             Producto primero2 = listaAux.get(0);
                             Producto ultimo2 = listaAux.get(listaAux.size() - 1);
-                            Afinidad a2 = new Afinidad(primero2, ultimo2);
+                            Afinidad a2 = new Afinidad(primero2, ultimo2, matriz);
                             afinidadTotalAux2 += a2.getValor();
 
                             // Si esta permutación mejora la afinidad, actualizamos
                             if (afinidadTotalAux2 > afinidadTotalAux) {
+                                ejecucion.aceptado();
+                                ++mejorasIntento;
                                 afinidadTotalAux = afinidadTotalAux2;
                                 mejora = true;
                                 mejor_solucion = listaAux;
@@ -96,11 +121,23 @@ public class AlgoritmoAproximacion implements Algoritmo {
             }
 
             // Guardamos la mejor solución conseguida en todos los intentos
-            if (afinidadTotalAux > afinidadMejorIntento) {
+            boolean nuevaMejor = afinidadTotalAux > afinidadMejorIntento;
+            if (nuevaMejor) {
                 afinidadMejorIntento = afinidadTotalAux;
                 mejorIntento = listaOrdenada;
+                ejecucion.mejora(afinidadMejorIntento);
+            }
+            evento.end();
+            if (evento.shouldCommit()) {
+                evento.intento = iIntentos;
+                evento.afinidadInicial = afinidadInicial;
+                evento.afinidadFinal = afinidadTotalAux;
+                evento.mejoras = mejorasIntento;
+                evento.nuevaMejor = nuevaMejor;
+                evento.commit();
             }
         }
+        ejecucion.terminar();
         return mejorIntento;
     }
 
@@ -117,4 +154,24 @@ public class AlgoritmoAproximacion implements Algoritmo {
     public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
         return hillclimbing(listaProductos);
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * No se hacen más intentos en cuanto el mejor alcanza la brecha objetivo.
+     */
+    @Override
+    public void setBrechaObjetivo(double brecha) {
+        this.brechaObjetivo = brecha;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Determina las distribuciones iniciales aleatorias de todos los intentos.
+     */
+    @Override
+    public void setSemilla(long semilla) {
+        this.semilla = semilla;
+    }
 }
@@ -0,0 +1,270 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Clase <b>AlgoritmoAristas</b> que implementa la interfaz <b>Algoritmo</b>.
+ * <p>
+ * Construye el ciclo de productos con la heurística de <i>aristas voraces</i> (<i>greedy edge</i>):
+ * se consideran las aristas de mayor a menor afinidad y se añade cada una si sus dos extremos tienen
+ * grado menor que 2 y no cierra un ciclo prematuro. El resultado es un conjunto de caminos que
+ * acaban uniéndose en un único ciclo hamiltoniano.
+ * <p>
+ * Para escalar a miles de productos no se ordenan las n² aristas: sólo se consideran las de las
+ * listas de vecinos candidatos de cada producto (ver {@link TablaAfinidad#vecinos(int)}), guardadas en
+ * un montículo de {@code long}. Los caminos que quedan al agotar los candidatos se unen con el mismo
+ * criterio voraz entre sus extremos, primero también con listas de candidatos y finalmente con
+ * todos los pares cuando quedan pocos. Los ciclos prematuros se detectan con una estructura de
+ * conjuntos disjuntos (<i>union-find</i>). El coste es O(n·m·log(n·m)) por ronda.
+ */
+public class AlgoritmoAristas implements Algoritmo {
+
+    /**
+     * Número de vecinos candidatos por producto.
+     */
+    private static final int CANDIDATOS = 12;
+
+    /**
+     * Número de extremos de camino a partir del cual se unen con listas de candidatos en lugar
+     * de considerar todos los pares.
+     */
+    private static final int MAX_EXTREMOS_COMPLETO = 200;
+
+    /**
+     * Bits reservados a cada índice de producto en la clave de una arista.
+     */
+    private static final int BITS_INDICE = 20;
+
+    /**
+     * Máscara de un índice de producto dentro de la clave de una arista.
+     */
+    private static final long MASCARA = (1L << BITS_INDICE) - 1;
+
+    /**
+     * Montículo de máximos de enteros largos sobre un vector, sin objetos por elemento.
+     */
+    private static final class Monticulo {
+        private long[] datos;
+        private int tam;
+
+        Monticulo(int capacidad) {
+            datos = new long[Math.max(1, capacidad)];
+        }
+
+        boolean estaVacio() {
+            return tam == 0;
+        }
+
+        void insertar(long v) {
+            if (tam == datos.length) datos = Arrays.copyOf(datos, tam * 2);
+            int i = tam++;
+            while (i > 0) {
+                int padre = (i - 1) >>> 1;
+                if (datos[padre] >= v) break;
+                datos[i] = datos[padre];
+                i = padre;
+            }
+            datos[i] = v;
+        }
+
+        long extraerMax() {
+            long max = datos[0];
+            long ultimo = datos[--tam];
+            int i = 0;
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= tam) break;
+                if (hijo + 1 < tam && datos[hijo + 1] > datos[hijo]) ++hijo;
+                if (datos[hijo] <= ultimo) break;
+                datos[i] = datos[hijo];
+                i = hijo;
+            }
+            if (tam > 0) datos[i] = ultimo;
+            return max;
+        }
+    }
+
+    /**
+     * Conjuntos disjuntos con compresión de caminos y unión por tamaño.
+     */
+    private static final class ConjuntosDisjuntos {
+        private final int[] padre;
+        private final int[] tam;
+
+        ConjuntosDisjuntos(int n) {
+            padre = new int[n];
+            tam = new int[n];
+            for (int i = 0; i < n; ++i) {
+                padre[i] = i;
+                tam[i] = 1;
+            }
+        }
+
+        int buscar(int x) {
+            while (padre[x] != x) {
+                padre[x] = padre[padre[x]];
+                x = padre[x];
+            }
+            return x;
+        }
+
+        boolean unir(int a, int b) {
+            a = buscar(a);
+            b = buscar(b);
+            if (a == b) return false;
+            if (tam[a] < tam[b]) {
+                int aux = a;
+                a = b;
+                b = aux;
+            }
+            padre[b] = a;
+            tam[a] += tam[b];
+            return true;
+        }
+    }
+
+    /**
+     * Método que implementa la operación <b>ordenar</b> de la interfaz <b>Algoritmo</b>
+     * utilizando la heurística de aristas voraces.
+     *
+     * Precondición:
+     *  - <b>listaProductos</b> tiene menos de 2^20 productos.
+     * Postcondición:
+     *  - Devuelve una nueva lista con los mismos productos, en el orden del ciclo construido.
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    @Override
+    public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        TablaAfinidad tabla = new TablaAfinidad(listaProductos, Matriz.getInstance().getInstantanea());
+        return tabla.aLista(construir(tabla));
+    }
+
+    /**
+     * Construye el ciclo de aristas voraces sobre una tabla de afinidades.
+     * <p>
+     * Es accesible desde el paquete para que otros algoritmos lo usen como solución inicial.
+     *
+     * @param tabla Tabla de afinidades de los productos.
+     * @return El orden de índices del ciclo construido.
+     */
+    static int[] construir(TablaAfinidad tabla) {
+        int n = tabla.size();
+        int[] orden = new int[n];
+        if (n <= 3) {
+            for (int i = 0; i < n; ++i) orden[i] = i;
+            return orden;
+        }
+
+        // Vecinos de cada producto en el camino (-1 si no tiene)
+        int[] adyacente = new int[2 * n];
+        Arrays.fill(adyacente, -1);
+        int[] grado = new int[n];
+        ConjuntosDisjuntos conjuntos = new ConjuntosDisjuntos(n);
+        int aristas = 0;
+
+        int[] vecinos = tabla.vecinos(CANDIDATOS);
+        int m = vecinos.length / n;
+        Monticulo monticulo = new Monticulo(n * m);
+        for (int i = 0; i < n; ++i) {
+            for (int c = 0; c < m; ++c) {
+                int j = vecinos[i * m + c];
+                if (i < j) monticulo.insertar(clave(tabla.get(i, j), i, j));
+            }
+        }
+        aristas += anadirAristas(monticulo, adyacente, grado, conjuntos, n - 1);
+
+        // Unir los caminos restantes entre sus extremos: con listas de candidatos entre extremos
+        // mientras haya muchos y, al final (o si una ronda no avanza), con todos los pares
+        while (aristas < n - 1) {
+            int[] extremos = new int[n];
+            int f = 0;
+            for (int i = 0; i < n; ++i) {
+                if (grado[i] < 2) extremos[f++] = i;
+            }
+            extremos = Arrays.copyOf(extremos, f);
+            int anadidas = 0;
+            if (f > MAX_EXTREMOS_COMPLETO) {
+                int[] candidatos = tabla.subtabla(extremos).vecinos(CANDIDATOS);
+                int mc = candidatos.length / f;
+                monticulo = new Monticulo(f * mc);
+                for (int a = 0; a < f; ++a) {
+                    for (int c = 0; c < mc; ++c) {
+                        int b = candidatos[a * mc + c];
+                        int i = extremos[a], j = extremos[b];
+                        if (a < b && conjuntos.buscar(i) != conjuntos.buscar(j)) {
+                            monticulo.insertar(clave(tabla.get(i, j), i, j));
+                        }
+                    }
+                }
+                anadidas = anadirAristas(monticulo, adyacente, grado, conjuntos, n - 1 - aristas);
+            }
+            if (anadidas == 0) {
+                monticulo = new Monticulo(f * (f - 1) / 2);
+                for (int a = 0; a < f; ++a) {
+                    for (int b = a + 1; b < f; ++b) {
+                        int i = extremos[a], j = extremos[b];
+                        if (conjuntos.buscar(i) != conjuntos.buscar(j)) {
+                            monticulo.insertar(clave(tabla.get(i, j), i, j));
+                        }
+                    }
+                }
+                anadidas = anadirAristas(monticulo, adyacente, grado, conjuntos, n - 1 - aristas);
+            }
+            aristas += anadidas;
+        }
+
+        // Recorrer el camino hamiltoniano desde uno de sus extremos
+        int actual = 0;
+        while (grado[actual] == 2) ++actual;
+        int anterior = -1;
+        for (int pos = 0; pos < n; ++pos) {
+            orden[pos] = actual;
+            int siguiente = adyacente[2 * actual] != anterior ? adyacente[2 * actual] : adyacente[2 * actual + 1];
+            anterior = actual;
+            actual = siguiente;
+        }
+        return orden;
+    }
+
+    /**
+     * Extrae aristas del montículo en orden de afinidad y añade las válidas.
+     *
+     * @param monticulo Montículo de aristas candidatas.
+     * @param adyacente Vecinos de cada producto en los caminos construidos.
+     * @param grado     Grado de cada producto.
+     * @param conjuntos Caminos a los que pertenece cada producto.
+     * @param maximo    Número máximo de aristas a añadir.
+     * @return El número de aristas añadidas.
+     */
+    private static int anadirAristas(Monticulo monticulo, int[] adyacente, int[] grado,
+                                     ConjuntosDisjuntos conjuntos, int maximo) {
+        int anadidas = 0;
+        while (anadidas < maximo && !monticulo.estaVacio()) {
+            long arista = monticulo.extraerMax();
+            int i = (int) (MASCARA - ((arista >>> BITS_INDICE) & MASCARA));
+            int j = (int) (MASCARA - (arista & MASCARA));
+            if (grado[i] < 2 && grado[j] < 2 && conjuntos.unir(i, j)) {
+                adyacente[2 * i + grado[i]++] = j;
+                adyacente[2 * j + grado[j]++] = i;
+                ++anadidas;
+            }
+        }
+        return anadidas;
+    }
+
+    /**
+     * Codifica una arista en un {@code long} que ordena por afinidad y, a igual afinidad, por índices
+     * crecientes: la afinidad ocupa los bits altos y los índices complementados los 40 bits bajos.
+     *
+     * @param afinidad Afinidad de la arista.
+     * @param i        Índice del primer producto.
+     * @param j        Índice del segundo producto.
+     * @return La clave de la arista.
+     */
+    private static long clave(int afinidad, int i, int j) {
+        return ((long) afinidad << (2 * BITS_INDICE)) | ((MASCARA - i) << BITS_INDICE) | (MASCARA - j);
+    }
+}
@@ -0,0 +1,133 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+
+/**
+ * Clase <b>AlgoritmoAutomatico</b> que implementa la interfaz <b>Algoritmo</b>.
+ * <p>
+ * Elige el algoritmo en función del número de productos y de una latencia objetivo, usando las
+ * medidas de {@link CalibracionAlgoritmos}:
+ * <ul>
+ *     <li>Si el cálculo exacto cabe en la mitad de la latencia, {@link AlgoritmoExacto}.</li>
+ *     <li>Si la búsqueda local cabe holgadamente (una cuarta parte de la latencia), {@link AlgoritmoTabu}
+ *     con la latencia como tiempo límite.</li>
+ *     <li>En otro caso, construcción con aristas voraces y búsqueda local ({@link AlgoritmoBusquedaLocal})
+ *     cortada a la latencia.</li>
+ * </ul>
+ * Así el usuario no necesita saber qué algoritmo conviene y nunca se lanza uno cuyo coste no se
+ * pueda asumir (como la fuerza bruta con 14 productos).
+ */
+public class AlgoritmoAutomatico implements Algoritmo {
+
+    /**
+     * Latencia objetivo por defecto, en milisegundos.
+     */
+    public static final long LATENCIA_DEFECTO_MS = 1000;
+
+    /**
+     * Latencia objetivo, en milisegundos.
+     */
+    private final long latenciaMs;
+
+    /**
+     * Nombre del último algoritmo elegido, o {@code null} si aún no se ha ordenado nada.
+     */
+    private volatile String elegido;
+
+    /**
+     * Brecha de optimalidad objetivo que se pasa al algoritmo elegido.
+     */
+    private volatile double brechaObjetivo;
+
+    /**
+     * Semilla que se pasa al algoritmo elegido.
+     */
+    private volatile long semilla;
+
+    /**
+     * Crea la estrategia automática con la latencia objetivo por defecto.
+     */
+    public AlgoritmoAutomatico() {
+        this(LATENCIA_DEFECTO_MS);
+    }
+
+    /**
+     * Crea la estrategia automática con una latencia objetivo.
+     *
+     * @param latenciaMs Latencia objetivo, en milisegundos.
+     */
+    public AlgoritmoAutomatico(long latenciaMs) {
+        this.latenciaMs = latenciaMs;
+    }
+
+    /**
+     * Elige el algoritmo adecuado para {@code n} productos.
+     *
+     * <p><b>Pre:</b> {@code n >= 0}.</p>
+     * <p><b>Post:</b> Si no se había calibrado, se calibra antes de elegir.</p>
+     *
+     * @param n Número de productos a ordenar.
+     * @return El algoritmo elegido.
+     */
+    public Algoritmo elegir(int n) {
+        CalibracionAlgoritmos calibracion = CalibracionAlgoritmos.getInstance();
+        calibracion.calibrar();
+        if (n <= AlgoritmoExacto.MAX_PRODUCTOS && calibracion.estimarExactoMs(n) <= latenciaMs / 2.0) {
+            return new AlgoritmoExacto();
+        }
+        if (n <= AlgoritmoTabu.MAX_PRODUCTOS && calibracion.estimarBusquedaLocalMs(n) <= latenciaMs / 4.0) {
+            return new AlgoritmoTabu(latenciaMs, AlgoritmoTabu.ITERACIONES_DEFECTO);
+        }
+        return new AlgoritmoBusquedaLocal(latenciaMs);
+    }
+
+    /**
+     * Método que implementa la operación <b>ordenar</b> de la interfaz <b>Algoritmo</b> delegando
+     * en el algoritmo elegido para el tamaño de la lista.
+     *
+     * Precondición:
+     *  - <b>listaProductos</b> tiene menos de 2^20 productos.
+     * Postcondición:
+     *  - Devuelve una nueva lista con los mismos productos ordenada por el algoritmo elegido.
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    @Override
+    public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        Algoritmo algoritmo = elegir(listaProductos.size());
+        elegido = algoritmo.getClass().getSimpleName();
+        algoritmo.setBrechaObjetivo(brechaObjetivo);
+        algoritmo.setSemilla(semilla);
+        return algoritmo.ordenar(listaProductos);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Se aplica al algoritmo que se elija en cada ordenación.
+     */
+    @Override
+    public void setBrechaObjetivo(double brecha) {
+        this.brechaObjetivo = brecha;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Se aplica al algoritmo que se elija en cada ordenación.
+     */
+    @Override
+    public void setSemilla(long semilla) {
+        this.semilla = semilla;
+    }
+
+    /**
+     * Obtiene el nombre del último algoritmo elegido.
+     *
+     * @return El nombre de la clase del algoritmo, o {@code null} si aún no se ha ordenado nada.
+     */
+    public String getElegido() {
+        return elegido;
+    }
+}
@@ -18,6 +18,10 @@ public class AlgoritmoBruto implements Algoritmo {
      * Valor máximo de afinidad encontrado.
      */
     private int afinidadTotal;
+    /**
+     * Instantánea de la matriz de afinidades capturada al empezar la ordenación.
+     */
+    private InstantaneaMatriz matriz;
 
     /**
      * Función recursiva de <i>backtracking</i> que explora todas las permutaciones de la lista de productos
@@ -45,13 +49,13 @@ public class AlgoritmoBruto implements Algoritmo {
             for (int j = 0; j < listaAux2.size() - 1; ++j) {
                 Producto p = listaAux2.get(j);
                 Producto p2 = listaAux2.get(j + 1);
-                Afinidad a = new Afinidad(p, p2);
+                Afinidad a = new Afinidad(p, p2, matriz);
                 afinidadTotalMax += a.getValor();
             }
             // Añadimos la afinidad entre el primer y el último producto (distribución circular)
             Producto primero = listaAux2.get(0);
             Producto ultimo = listaAux2.get(listaAux2.size() - 1);
-            Afinidad a = new Afinidad(primero, ultimo);
+            Afinidad a = new Afinidad(primero, ultimo, matriz);
             afinidadTotalMax += a.getValor();
 
             // Actualizamos la mejor afinidad y la mejor permutación si es necesario
@@ -89,6 +93,7 @@ public class AlgoritmoBruto implements Algoritmo {
     public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
         this.listaOrdenada = new ArrayList<>();
         this.afinidadTotal = 0;
+        this.matriz = Matriz.getInstance().getInstantanea();
 
         // Copia de la lista de productos
         ArrayList<Producto> listaAux = new ArrayList<>(listaProductos);
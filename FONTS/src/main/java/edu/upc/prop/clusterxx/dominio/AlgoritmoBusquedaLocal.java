@@ -0,0 +1,421 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+
+/**
+ * Clase <b>AlgoritmoBusquedaLocal</b> que implementa la interfaz <b>Algoritmo</b>.
+ * <p>
+ * Parte del ciclo construido por {@link AlgoritmoAristas} y lo mejora con una búsqueda local
+ * pensada para estanterías de cientos o miles de productos:
+ * <ul>
+ *     <li>Movimientos de profundidad variable al estilo de <i>Lin-Kernighan</i>: una cadena de
+ *     movimientos 2-opt que se sigue mientras la ganancia acumulada sea positiva y se deshace
+ *     hasta el mejor punto de la cadena.</li>
+ *     <li>Movimientos <i>Or-opt</i>: recolocar un tramo de 1 a 3 productos, en cualquier sentido,
+ *     junto a uno de sus vecinos candidatos.</li>
+ * </ul>
+ * Sólo se prueban los vecinos candidatos de cada producto ({@link TablaAfinidad#vecinos(int)}) y se
+ * usan <i>bits de no mirar</i>: un producto sólo se vuelve a examinar cuando cambia alguna de sus
+ * aristas. El recorrido se guarda en vectores de enteros (producto por posición y posición por
+ * producto) y las inversiones se hacen siempre sobre el lado más corto del ciclo.
+ * <p>
+ * Se asume que la afinidad es simétrica, como la matriz de afinidades del sistema.
+ */
+public class AlgoritmoBusquedaLocal implements Algoritmo {
+
+    /**
+     * Número de vecinos candidatos por producto.
+     */
+    private static final int CANDIDATOS = 8;
+
+    /**
+     * Profundidad máxima de una cadena de movimientos Lin-Kernighan.
+     */
+    private static final int PROFUNDIDAD = 6;
+
+    /**
+     * Candidatos que se prueban en el primer nivel de la cadena; en los siguientes sólo el mejor.
+     */
+    private static final int ANCHURA = 5;
+
+    /**
+     * Longitud máxima de los tramos que recoloca Or-opt.
+     */
+    private static final int TRAMO_MAX = 3;
+
+    /**
+     * Tiempo límite de la búsqueda en milisegundos, o {@code Long.MAX_VALUE} si no tiene límite.
+     */
+    private final long limiteMs;
+
+    /**
+     * Crea la búsqueda local sin límite de tiempo: termina al llegar a un óptimo local.
+     */
+    public AlgoritmoBusquedaLocal() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Crea la búsqueda local con un tiempo límite.
+     *
+     * @param limiteMs Tiempo límite de la búsqueda, en milisegundos.
+     */
+    public AlgoritmoBusquedaLocal(long limiteMs) {
+        this.limiteMs = limiteMs;
+    }
+
+    /**
+     * Recorrido cíclico sobre vectores de enteros con sentido lógico invertible, de modo que
+     * cada inversión se puede hacer sobre el lado más corto del ciclo.
+     */
+    private static final class Recorrido {
+        final int n;
+        final int[] producto;
+        final int[] posicion;
+        boolean invertido;
+
+        Recorrido(int[] orden) {
+            n = orden.length;
+            producto = orden.clone();
+            posicion = new int[n];
+            for (int i = 0; i < n; ++i) posicion[producto[i]] = i;
+        }
+
+        int sucesor(int c) {
+            int p = posicion[c] + (invertido ? n - 1 : 1);
+            return producto[p >= n ? p - n : p];
+        }
+
+        int predecesor(int c) {
+            int p = posicion[c] + (invertido ? 1 : n - 1);
+            return producto[p >= n ? p - n : p];
+        }
+
+        /**
+         * Invierte el camino que va de {@code a} a {@code b} siguiendo el sentido lógico.
+         */
+        void invertir(int a, int b) {
+            int i = invertido ? posicion[b] : posicion[a];
+            int j = invertido ? posicion[a] : posicion[b];
+            int longitud = j - i + 1;
+            if (longitud <= 0) longitud += n;
+            if (2 * longitud > n) {
+                // Invertir el complementario da el mismo ciclo con el sentido contrario
+                int aux = i;
+                i = j + 1 == n ? 0 : j + 1;
+                j = aux == 0 ? n - 1 : aux - 1;
+                longitud = n - longitud;
+                invertido = !invertido;
+            }
+            for (int t = 0; t < longitud / 2; ++t) {
+                int ci = producto[i];
+                int cj = producto[j];
+                producto[i] = cj;
+                posicion[cj] = i;
+                producto[j] = ci;
+                posicion[ci] = j;
+                if (++i == n) i = 0;
+                if (--j < 0) j = n - 1;
+            }
+        }
+
+        int[] aOrden() {
+            int[] orden = new int[n];
+            int c = producto[0];
+            for (int i = 0; i < n; ++i) {
+                orden[i] = c;
+                c = sucesor(c);
+            }
+            return orden;
+        }
+    }
+
+    /**
+     * Estado de una búsqueda local: tabla, recorrido, candidatos y cola de productos activos.
+     */
+    private static final class Busqueda {
+        final TablaAfinidad tabla;
+        final Recorrido recorrido;
+        final int[] vecinos;
+        final int m;
+        final int n;
+        final int[] cola;
+        final boolean[] enCola;
+        int cabeza;
+        int tam;
+        /**
+         * Productos revisados y mejoras aplicadas, para {@link Metricas}.
+         */
+        long revisados;
+        long mejoras;
+        /**
+         * Extremos de las inversiones aplicadas en la cadena actual, para poder deshacerlas.
+         */
+        final int[] deshacer = new int[2 * PROFUNDIDAD];
+
+        Busqueda(TablaAfinidad tabla, int[] orden) {
+            this(tabla, orden, orden);
+        }
+
+        Busqueda(TablaAfinidad tabla, int[] orden, int[] activos) {
+            this.tabla = tabla;
+            this.n = orden.length;
+            this.recorrido = new Recorrido(orden);
+            this.vecinos = tabla.vecinos(CANDIDATOS);
+            this.m = vecinos.length / n;
+            this.cola = new int[n];
+            this.enCola = new boolean[n];
+            for (int c : activos) activar(c);
+        }
+
+        void activar(int c) {
+            if (enCola[c]) return;
+            enCola[c] = true;
+            int p = cabeza + tam;
+            cola[p >= n ? p - n : p] = c;
+            ++tam;
+        }
+
+        int siguiente() {
+            int c = cola[cabeza];
+            if (++cabeza == n) cabeza = 0;
+            --tam;
+            enCola[c] = false;
+            return c;
+        }
+
+        int w(int a, int b) {
+            return tabla.get(a, b);
+        }
+
+        /**
+         * Ejecuta la búsqueda, publica sus medidas en {@link Metricas} y devuelve el ciclo resultante.
+         */
+        int[] ejecutarMidiendo(long fin) {
+            Metricas.Ejecucion ejecucion = Metricas.getInstance().iniciar("AlgoritmoBusquedaLocal");
+            ejecutar(fin);
+            ejecucion.probados(revisados);
+            ejecucion.aceptados(mejoras);
+            ejecucion.terminar();
+            return recorrido.aOrden();
+        }
+
+        void ejecutar(long fin) {
+            while (tam > 0) {
+                if (System.nanoTime() > fin) return;
+                int c = siguiente();
+                ++revisados;
+                if (linKernighan(c) || linKernighan(recorrido.predecesor(c)) || orOpt(c)) {
+                    ++mejoras;
+                    activar(c);
+                }
+            }
+        }
+
+        /**
+         * Cadena de movimientos 2-opt que rompe la arista (t1, sucesor(t1)). Devuelve si ha mejorado.
+         */
+        boolean linKernighan(int t1) {
+            int t2 = recorrido.sucesor(t1);
+            int abierta = -w(t1, t2);
+            int mejorGanancia = 0;
+            int mejorNivel = 0;
+            int nivel = 0;
+            for (int primero = 0; primero < ANCHURA && primero < m; ++primero) {
+                int t3 = vecinos[t2 * m + primero];
+                if (!valido(t1, t2, t3) || abierta + w(t2, t3) <= 0) continue;
+                int t4 = recorrido.predecesor(t3);
+                abierta += w(t2, t3) - w(t3, t4);
+                aplicar(t2, t4, nivel++);
+                int ganancia = abierta + w(t4, t1);
+                if (ganancia > mejorGanancia) {
+                    mejorGanancia = ganancia;
+                    mejorNivel = nivel;
+                }
+                t2 = t4;
+                while (nivel < PROFUNDIDAD) {
+                    int mejorT3 = -1;
+                    int mejorValor = Integer.MIN_VALUE;
+                    for (int c = 0; c < m; ++c) {
+                        int cand = vecinos[t2 * m + c];
+                        if (!valido(t1, t2, cand) || abierta + w(t2, cand) <= 0) continue;
+                        int valor = w(t2, cand) - w(cand, recorrido.predecesor(cand));
+                        if (valor > mejorValor) {
+                            mejorValor = valor;
+                            mejorT3 = cand;
+                        }
+                    }
+                    if (mejorT3 < 0) break;
+                    t4 = recorrido.predecesor(mejorT3);
+                    abierta += mejorValor;
+                    aplicar(t2, t4, nivel++);
+                    ganancia = abierta + w(t4, t1);
+                    if (ganancia > mejorGanancia) {
+                        mejorGanancia = ganancia;
+                        mejorNivel = nivel;
+                    }
+                    t2 = t4;
+                }
+                // Deshacer hasta el mejor punto de la cadena
+                while (nivel > mejorNivel) {
+                    --nivel;
+                    recorrido.invertir(deshacer[2 * nivel + 1], deshacer[2 * nivel]);
+                }
+                if (mejorNivel > 0) {
+                    for (int i = 0; i < 2 * mejorNivel; ++i) {
+                        int c = deshacer[i];
+                        activar(c);
+                        activar(recorrido.sucesor(c));
+                        activar(recorrido.predecesor(c));
+                    }
+                    activar(t1);
+                    return true;
+                }
+                t2 = recorrido.sucesor(t1);
+                abierta = -w(t1, t2);
+            }
+            return false;
+        }
+
+        /**
+         * Indica si se puede añadir la arista (t2, t3) en una cadena que empieza en t1.
+         */
+        boolean valido(int t1, int t2, int t3) {
+            return t3 != t1 && t3 != t2 && t3 != recorrido.sucesor(t2) && recorrido.predecesor(t3) != t2;
+        }
+
+        /**
+         * Aplica el movimiento 2-opt que invierte el camino de {@code a} a {@code b} y lo anota.
+         */
+        void aplicar(int a, int b, int nivel) {
+            recorrido.invertir(a, b);
+            deshacer[2 * nivel] = a;
+            deshacer[2 * nivel + 1] = b;
+        }
+
+        /**
+         * Intenta recolocar un tramo que empieza en {@code s1} junto a un vecino candidato.
+         * Devuelve si ha mejorado.
+         */
+        boolean orOpt(int s1) {
+            int s2 = s1;
+            for (int longitud = 1; longitud <= TRAMO_MAX && longitud + 2 < n; ++longitud) {
+                if (longitud > 1) s2 = recorrido.sucesor(s2);
+                int p = recorrido.predecesor(s1);
+                int nx = recorrido.sucesor(s2);
+                int quitado = w(p, s1) + w(s2, nx) - w(p, nx);
+                int mejorGanancia = 0;
+                int mejorX = -1;
+                boolean mejorInvertido = false;
+                for (int extremo = 0; extremo < 2; ++extremo) {
+                    int e = extremo == 0 ? s1 : s2;
+                    for (int c = 0; c < m; ++c) {
+                        int x = vecinos[e * m + c];
+                        if (x == p || enTramo(x, s1, longitud)) continue;
+                        int y = recorrido.sucesor(x);
+                        if (enTramo(y, s1, longitud)) continue;
+                        int directo = w(x, s1) + w(s2, y) - w(x, y) - quitado;
+                        int inverso = w(x, s2) + w(s1, y) - w(x, y) - quitado;
+                        if (directo > mejorGanancia) {
+                            mejorGanancia = directo;
+                            mejorX = x;
+                            mejorInvertido = false;
+                        }
+                        if (inverso > mejorGanancia) {
+                            mejorGanancia = inverso;
+                            mejorX = x;
+                            mejorInvertido = true;
+                        }
+                    }
+                }
+                if (mejorX >= 0) {
+                    int y = recorrido.sucesor(mejorX);
+                    // p [s1..s2] nx..x y  ->  p x..nx s2..s1 y  ->  p nx..x s2..s1 y
+                    recorrido.invertir(s1, mejorX);
+                    recorrido.invertir(mejorX, nx);
+                    if (!mejorInvertido) recorrido.invertir(s2, s1);
+                    for (int c : new int[]{p, nx, s1, s2, mejorX, y}) activar(c);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Indica si {@code c} pertenece al tramo de {@code longitud} productos que empieza en {@code s1}.
+         */
+        boolean enTramo(int c, int s1, int longitud) {
+            int d = s1;
+            for (int i = 0; i < longitud; ++i) {
+                if (d == c) return true;
+                d = recorrido.sucesor(d);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Método que implementa la operación <b>ordenar</b> de la interfaz <b>Algoritmo</b>: construye
+     * un ciclo con aristas voraces y lo mejora con búsqueda local.
+     *
+     * Precondición:
+     *  - <b>listaProductos</b> tiene menos de 2^20 productos.
+     * Postcondición:
+     *  - Devuelve una nueva lista con los mismos productos, en un orden que es un óptimo local
+     *    para los movimientos Lin-Kernighan y Or-opt (o la mejor mejora conseguida hasta el tiempo límite).
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    @Override
+    public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        long fin = limiteMs == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + limiteMs * 1_000_000L;
+        TablaAfinidad tabla = new TablaAfinidad(listaProductos, Matriz.getInstance().getInstantanea());
+        return tabla.aLista(mejorar(tabla, AlgoritmoAristas.construir(tabla), fin));
+    }
+
+    /**
+     * Mejora un ciclo con búsqueda local hasta llegar a un óptimo local o hasta el instante {@code fin}.
+     * <p>
+     * Es accesible desde el paquete para que otros algoritmos lo usen como paso de mejora. Con menos de
+     * 5 productos no hay movimientos de búsqueda local que probar, y se devuelve el ciclo óptimo de
+     * {@link AlgoritmoExacto}.
+     *
+     * <p><b>Pre:</b> {@code orden} es una permutación de los índices de {@code tabla}.</p>
+     * <p><b>Post:</b> Devuelve un orden nuevo con afinidad total mayor o igual que la de {@code orden};
+     * {@code orden} no se modifica.</p>
+     *
+     * @param tabla Tabla de afinidades de los productos.
+     * @param orden Ciclo inicial.
+     * @param fin   Instante límite, en el reloj de {@link System#nanoTime()}.
+     * @return El ciclo mejorado.
+     */
+    static int[] mejorar(TablaAfinidad tabla, int[] orden, long fin) {
+        if (orden.length < 5) return AlgoritmoExacto.resolver(tabla);
+        Busqueda busqueda = new Busqueda(tabla, orden);
+        return busqueda.ejecutarMidiendo(fin);
+    }
+
+    /**
+     * Mejora un ciclo con búsqueda local empezando sólo por los productos indicados: el resto se
+     * revisa únicamente si alguna mejora cambia sus aristas. Sirve para reoptimizar un ciclo que ya
+     * era bueno tras un cambio local. Con menos de 5 productos se devuelve el ciclo óptimo de
+     * {@link AlgoritmoExacto}.
+     *
+     * <p><b>Pre:</b> {@code orden} es una permutación de los índices de {@code tabla} y {@code activos}
+     * contiene índices de {@code tabla}.</p>
+     * <p><b>Post:</b> Devuelve un orden nuevo con afinidad total mayor o igual que la de {@code orden};
+     * {@code orden} no se modifica.</p>
+     *
+     * @param tabla   Tabla de afinidades de los productos.
+     * @param orden   Ciclo inicial.
+     * @param activos Productos por los que empieza la búsqueda.
+     * @param fin     Instante límite, en el reloj de {@link System#nanoTime()}.
+     * @return El ciclo mejorado.
+     */
+    static int[] mejorarAlrededor(TablaAfinidad tabla, int[] orden, int[] activos, long fin) {
+        if (orden.length < 5) return AlgoritmoExacto.resolver(tabla);
+        Busqueda busqueda = new Busqueda(tabla, orden, activos);
+        return busqueda.ejecutarMidiendo(fin);
+    }
+}
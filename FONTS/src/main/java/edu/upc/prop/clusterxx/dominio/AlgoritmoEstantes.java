@@ -0,0 +1,220 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+
+/**
+ * Clase <b>AlgoritmoEstantes</b> que implementa la interfaz <b>Algoritmo</b>.
+ * <p>
+ * Optimiza la disposición real de los productos en los estantes ({@link DisposicionEstantes}) en lugar
+ * de un único ciclo: la afinidad se cuenta entre productos contiguos de la misma fila y, si se pide,
+ * entre productos de la misma columna en filas contiguas.
+ * <p>
+ * Parte del ciclo de {@link AlgoritmoBusquedaLocal} repartido por filas y lo mejora con una búsqueda
+ * local de intercambios de dos posiciones: para cada producto se prueba llevarlo junto a cada uno de
+ * sus vecinos candidatos, intercambiándolo con el producto que ocupa una posición adyacente a ese
+ * vecino. Cada intercambio se evalúa en O(1) y se usan bits de no mirar.
+ * <p>
+ * Para que se pueda usar de forma interactiva con miles de productos, la búsqueda termina al agotar el
+ * tiempo límite o al alcanzar la brecha objetivo ({@link #setBrechaObjetivo(double)}), aunque no haya
+ * llegado a un óptimo local. Cada búsqueda se registra en {@link Metricas} con los intercambios probados
+ * y aplicados y la afinidad de la disposición al empezar y al terminar.
+ * <p>
+ * Con una sola fila equivale a {@link AlgoritmoBusquedaLocal}.
+ */
+public class AlgoritmoEstantes implements Algoritmo {
+
+    /**
+     * Tiempo límite por defecto, en milisegundos.
+     */
+    public static final long LIMITE_DEFECTO_MS = 1000;
+
+    /**
+     * Número de vecinos candidatos por producto.
+     */
+    private static final int CANDIDATOS = 8;
+
+    /**
+     * Número de filas de la estantería.
+     */
+    private final int filas;
+
+    /**
+     * Indica si se cuenta la afinidad vertical entre filas contiguas.
+     */
+    private final boolean vertical;
+
+    /**
+     * Tiempo límite de la búsqueda, en milisegundos.
+     */
+    private final long limiteMs;
+
+    /**
+     * Brecha de optimalidad objetivo (0 si no hay parada anticipada).
+     */
+    private volatile double brechaObjetivo;
+
+    /**
+     * Crea el algoritmo para una estantería con el número de filas indicado y el tiempo límite por defecto.
+     *
+     * @param filas    Número de filas (estantes) de la estantería.
+     * @param vertical Si es {@code true}, también cuenta la afinidad entre filas contiguas.
+     */
+    public AlgoritmoEstantes(int filas, boolean vertical) {
+        this(filas, vertical, LIMITE_DEFECTO_MS);
+    }
+
+    /**
+     * Crea el algoritmo para una estantería con el número de filas indicado y un tiempo límite.
+     *
+     * @param filas    Número de filas (estantes) de la estantería.
+     * @param vertical Si es {@code true}, también cuenta la afinidad entre filas contiguas.
+     * @param limiteMs Tiempo límite de la búsqueda, en milisegundos.
+     */
+    public AlgoritmoEstantes(int filas, boolean vertical, long limiteMs) {
+        this.filas = filas;
+        this.vertical = vertical;
+        this.limiteMs = limiteMs;
+    }
+
+    /**
+     * Indica si el algoritmo cuenta la afinidad vertical entre filas contiguas.
+     *
+     * @return {@code true} si se cuenta la afinidad vertical.
+     */
+    public boolean esVertical() {
+        return vertical;
+    }
+
+    /**
+     * Método que implementa la operación <b>ordenar</b> de la interfaz <b>Algoritmo</b> optimizando
+     * la disposición por estantes.
+     *
+     * Precondición:
+     *  - <b>listaProductos</b> tiene menos de 2^20 productos.
+     * Postcondición:
+     *  - Devuelve una nueva lista con los mismos productos, por filas de izquierda a derecha, en una
+     *    disposición que es un óptimo local para los intercambios de dos posiciones, salvo si antes se
+     *    agota el tiempo límite o se alcanza la brecha objetivo.
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    @Override
+    public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        if (filas <= 1) return new AlgoritmoBusquedaLocal(limiteMs).ordenar(listaProductos);
+        long fin = System.nanoTime() + limiteMs * 1_000_000L;
+        TablaAfinidad tabla = new TablaAfinidad(listaProductos, Matriz.getInstance().getInstantanea());
+        int[] orden = AlgoritmoBusquedaLocal.mejorar(tabla, AlgoritmoAristas.construir(tabla), fin);
+        DisposicionEstantes disposicion = new DisposicionEstantes(orden.length, filas, vertical);
+        int objetivo = brechaObjetivo <= 0 ? Integer.MAX_VALUE
+                : (int) Math.ceil(CotaSuperior.estantes(tabla, vertical, 0) * (1 - Math.min(brechaObjetivo, 1)));
+        mejorar(tabla, disposicion, orden, fin, objetivo);
+        return tabla.aLista(orden);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La búsqueda termina en cuanto la disposición alcanza la brecha objetivo respecto de
+     * {@link CotaSuperior#estantes(TablaAfinidad, boolean, int)}.
+     */
+    @Override
+    public void setBrechaObjetivo(double brecha) {
+        this.brechaObjetivo = brecha;
+    }
+
+    /**
+     * Búsqueda local de intercambios guiada por los vecinos candidatos.
+     * <p>
+     * Es accesible desde el paquete para reoptimizar una disposición tras añadir o quitar un producto
+     * ({@link Distribucion#reoptimizarAnadiendo(Producto)}).
+     *
+     * @param tabla       Tabla de afinidades de los productos.
+     * @param disposicion Disposición de las posiciones en filas.
+     * @param orden       Producto de cada posición; se modifica in situ.
+     * @param fin         Instante límite, en el reloj de {@link System#nanoTime()}.
+     */
+    static void mejorar(TablaAfinidad tabla, DisposicionEstantes disposicion, int[] orden, long fin) {
+        mejorar(tabla, disposicion, orden, fin, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Búsqueda local de intercambios que además termina al alcanzar una afinidad objetivo.
+     *
+     * @param tabla       Tabla de afinidades de los productos.
+     * @param disposicion Disposición de las posiciones en filas.
+     * @param orden       Producto de cada posición; se modifica in situ.
+     * @param fin         Instante límite, en el reloj de {@link System#nanoTime()}.
+     * @param objetivo    Afinidad de la disposición con la que se da la búsqueda por terminada.
+     */
+    private static void mejorar(TablaAfinidad tabla, DisposicionEstantes disposicion, int[] orden, long fin,
+                                int objetivo) {
+        int n = orden.length;
+        if (n < 3) return;
+        Metricas.Ejecucion ejecucion = Metricas.getInstance().iniciar("AlgoritmoEstantes");
+        int actual = disposicion.afinidad(tabla, orden);
+        ejecucion.mejora(actual);
+        int[] vecinos = tabla.vecinos(CANDIDATOS);
+        int m = vecinos.length / n;
+        int[] posicion = new int[n];
+        for (int p = 0; p < n; ++p) posicion[orden[p]] = p;
+
+        // Cola de productos activos (bits de no mirar)
+        int[] cola = new int[n];
+        boolean[] enCola = new boolean[n];
+        int cabeza = 0;
+        int tam = 0;
+        for (int c = 0; c < n; ++c) {
+            cola[tam++] = c;
+            enCola[c] = true;
+        }
+
+        while (tam > 0 && actual < objetivo) {
+            if (System.nanoTime() > fin) break;
+            int a = cola[cabeza];
+            cabeza = cabeza + 1 == n ? 0 : cabeza + 1;
+            --tam;
+            enCola[a] = false;
+
+            int p = posicion[a];
+            int mejorDelta = 0;
+            int mejorQ = -1;
+            for (int c = 0; c < m; ++c) {
+                int pu = posicion[vecinos[a * m + c]];
+                for (int k = 0; k < 4; ++k) {
+                    int q = disposicion.adyacente(pu, k);
+                    if (q < 0 || q == p) continue;
+                    ejecucion.probados(1);
+                    int delta = disposicion.deltaIntercambio(tabla, orden, p, q);
+                    if (delta > mejorDelta) {
+                        mejorDelta = delta;
+                        mejorQ = q;
+                    }
+                }
+            }
+            if (mejorQ < 0) continue;
+
+            actual += mejorDelta;
+            ejecucion.aceptado();
+            int b = orden[mejorQ];
+            orden[p] = b;
+            orden[mejorQ] = a;
+            posicion[a] = mejorQ;
+            posicion[b] = p;
+            // Reactivar los productos cuyas adyacencias han cambiado
+            for (int pos : new int[]{p, mejorQ}) {
+                for (int k = -1; k < 4; ++k) {
+                    int r = k < 0 ? pos : disposicion.adyacente(pos, k);
+                    if (r >= 0 && !enCola[orden[r]]) {
+                        enCola[orden[r]] = true;
+                        int ultimo = cabeza + tam;
+                        cola[ultimo >= n ? ultimo - n : ultimo] = orden[r];
+                        ++tam;
+                    }
+                }
+            }
+        }
+        ejecucion.mejora(actual);
+        ejecucion.terminar();
+    }
+}
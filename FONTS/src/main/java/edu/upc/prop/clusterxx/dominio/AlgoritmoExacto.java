@@ -0,0 +1,115 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Clase <b>AlgoritmoExacto</b> que implementa la interfaz <b>Algoritmo</b>.
+ * <p>
+ * Calcula el orden óptimo con programación dinámica sobre subconjuntos (algoritmo de
+ * <i>Held-Karp</i>): para cada subconjunto de productos y cada producto final guarda la mejor
+ * afinidad de un camino que empieza en el primer producto y recorre exactamente ese subconjunto.
+ * El coste es O(2^n · n²) en tiempo y O(2^n · n) en memoria, frente al O(n!) de
+ * {@link AlgoritmoBruto}, lo que permite resolver de forma exacta estanterías de hasta
+ * {@code MAX_PRODUCTOS} productos.
+ */
+public class AlgoritmoExacto implements Algoritmo {
+
+    /**
+     * Número máximo de productos que se resuelven de forma exacta.
+     */
+    public static final int MAX_PRODUCTOS = 18;
+
+    /**
+     * Método que implementa la operación <b>ordenar</b> de la interfaz <b>Algoritmo</b>
+     * calculando el orden óptimo.
+     *
+     * Precondición:
+     *  - Ninguna.
+     * Postcondición:
+     *  - Devuelve una nueva lista con los mismos productos en el orden de máxima afinidad total.
+     *    Con más de {@code MAX_PRODUCTOS} productos el cálculo exacto no es viable y se usa
+     *    {@link AlgoritmoBusquedaLocal}.
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    @Override
+    public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        if (listaProductos.size() > MAX_PRODUCTOS) {
+            return new AlgoritmoBusquedaLocal().ordenar(listaProductos);
+        }
+        TablaAfinidad tabla = new TablaAfinidad(listaProductos, Matriz.getInstance().getInstantanea());
+        return tabla.aLista(resolver(tabla));
+    }
+
+    /**
+     * Calcula el ciclo de máxima afinidad total.
+     * <p>
+     * Es accesible desde el paquete para poder medir su rendimiento ({@link CalibracionAlgoritmos}).
+     *
+     * <p><b>Pre:</b> {@code tabla.size() <= MAX_PRODUCTOS}.</p>
+     *
+     * @param tabla Tabla de afinidades de los productos.
+     * @return El orden de índices del ciclo óptimo, empezando por el producto 0.
+     */
+    static int[] resolver(TablaAfinidad tabla) {
+        int n = tabla.size();
+        int[] orden = new int[n];
+        if (n <= 3) {
+            for (int i = 0; i < n; ++i) orden[i] = i;
+            return orden;
+        }
+        // Los productos 1..n-1 se representan con los bits 0..n-2; el producto 0 es el inicio fijo
+        int m = n - 1;
+        int subconjuntos = 1 << m;
+        int[] mejor = new int[subconjuntos * m];
+        Arrays.fill(mejor, Integer.MIN_VALUE);
+        for (int j = 0; j < m; ++j) {
+            mejor[(1 << j) * m + j] = tabla.get(0, j + 1);
+        }
+        for (int s = 1; s < subconjuntos; ++s) {
+            for (int j = 0; j < m; ++j) {
+                int valor = mejor[s * m + j];
+                if (valor == Integer.MIN_VALUE) continue;
+                int libres = ~s & (subconjuntos - 1);
+                while (libres != 0) {
+                    int k = Integer.numberOfTrailingZeros(libres);
+                    libres &= libres - 1;
+                    int t = (s | (1 << k)) * m + k;
+                    int candidato = valor + tabla.get(j + 1, k + 1);
+                    if (candidato > mejor[t]) mejor[t] = candidato;
+                }
+            }
+        }
+
+        // Cerrar el ciclo y reconstruir el camino hacia atrás
+        int completo = subconjuntos - 1;
+        int ultimo = 0;
+        int mejorTotal = Integer.MIN_VALUE;
+        for (int j = 0; j < m; ++j) {
+            int total = mejor[completo * m + j] + tabla.get(j + 1, 0);
+            if (total > mejorTotal) {
+                mejorTotal = total;
+                ultimo = j;
+            }
+        }
+        int s = completo;
+        for (int pos = n - 1; pos >= 1; --pos) {
+            orden[pos] = ultimo + 1;
+            int anterior = s ^ (1 << ultimo);
+            if (anterior == 0) break;
+            int valor = mejor[s * m + ultimo];
+            for (int j = 0; j < m; ++j) {
+                if ((anterior & (1 << j)) != 0 && mejor[anterior * m + j] != Integer.MIN_VALUE
+                        && mejor[anterior * m + j] + tabla.get(j + 1, ultimo + 1) == valor) {
+                    ultimo = j;
+                    break;
+                }
+            }
+            s = anterior;
+        }
+        orden[0] = 0;
+        return orden;
+    }
+}
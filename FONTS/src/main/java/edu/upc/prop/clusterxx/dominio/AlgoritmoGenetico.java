@@ -0,0 +1,321 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Clase <b>AlgoritmoGenetico</b> que implementa la interfaz <b>Algoritmo</b>.
+ * <p>
+ * Algoritmo evolutivo (memético) para ordenar productos:
+ * <ul>
+ *     <li>Cada individuo es un ciclo de productos; su aptitud es la afinidad total.</li>
+ *     <li>Los padres se eligen por torneo y se cruzan con el cruce de orden (<i>OX</i>).</li>
+ *     <li>Los hijos se mutan con inversiones aleatorias (movimientos 2-opt) y se mejoran con la
+ *     búsqueda local de {@link AlgoritmoBusquedaLocal}.</li>
+ *     <li>Los hijos de cada generación se generan, mejoran y evalúan en paralelo.</li>
+ *     <li>Con elitismo: la nueva población son los mejores individuos distintos entre padres e hijos.</li>
+ * </ul>
+ * La búsqueda termina al agotar el tiempo límite, tras varias generaciones seguidas sin mejorar o al
+ * alcanzar la brecha objetivo ({@link #setBrechaObjetivo(double)}).
+ */
+public class AlgoritmoGenetico implements Algoritmo {
+
+    /**
+     * Tiempo límite por defecto, en milisegundos.
+     */
+    public static final long LIMITE_DEFECTO_MS = 1000;
+
+    /**
+     * Tamaño de población por defecto.
+     */
+    public static final int POBLACION_DEFECTO = 24;
+
+    /**
+     * Generaciones seguidas sin mejorar tras las que se detiene la búsqueda.
+     */
+    private static final int GENERACIONES_SIN_MEJORA = 30;
+
+    /**
+     * Participantes de cada torneo de selección.
+     */
+    private static final int TORNEO = 3;
+
+    /**
+     * Probabilidad de mutar un hijo.
+     */
+    private static final double PROB_MUTACION = 0.3;
+
+    /**
+     * Tiempo límite de la búsqueda, en milisegundos.
+     */
+    private final long limiteMs;
+
+    /**
+     * Número de individuos de la población.
+     */
+    private final int poblacion;
+
+    /**
+     * Brecha de optimalidad objetivo (0 si no hay parada anticipada).
+     */
+    private volatile double brechaObjetivo;
+
+    /**
+     * Semilla del generador principal.
+     */
+    private volatile long semilla;
+
+    /**
+     * Un individuo de la población: un ciclo y su afinidad total.
+     */
+    private static final class Individuo {
+        final int[] orden;
+        final int afinidad;
+
+        Individuo(int[] orden, int afinidad) {
+            this.orden = orden;
+            this.afinidad = afinidad;
+        }
+    }
+
+    /**
+     * Crea el algoritmo genético con el tiempo límite y la población por defecto.
+     */
+    public AlgoritmoGenetico() {
+        this(LIMITE_DEFECTO_MS, POBLACION_DEFECTO);
+    }
+
+    /**
+     * Crea el algoritmo genético con un tiempo límite y un tamaño de población.
+     *
+     * @param limiteMs  Tiempo límite de la búsqueda, en milisegundos.
+     * @param poblacion Número de individuos de la población (al menos 2).
+     */
+    public AlgoritmoGenetico(long limiteMs, int poblacion) {
+        this.limiteMs = limiteMs;
+        this.poblacion = Math.max(2, poblacion);
+    }
+
+    /**
+     * Método que implementa la operación <b>ordenar</b> de la interfaz <b>Algoritmo</b>
+     * utilizando el algoritmo memético.
+     *
+     * Precondición:
+     *  - <b>listaProductos</b> tiene menos de 2^20 productos.
+     * Postcondición:
+     *  - Devuelve una nueva lista con los mismos productos, en el orden del mejor individuo encontrado.
+     *    Con menos de 5 productos se devuelve el orden óptimo de {@link AlgoritmoExacto}.
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    @Override
+    public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        long fin = System.nanoTime() + limiteMs * 1_000_000L;
+        TablaAfinidad tabla = new TablaAfinidad(listaProductos, Matriz.getInstance().getInstantanea());
+        int n = tabla.size();
+        if (n < 5) return tabla.aLista(AlgoritmoExacto.resolver(tabla));
+
+        // Cada tarea paralela recibe su propio generador, separado del principal en un orden fijo, de
+        // modo que el resultado no depende de qué hilo ejecuta cada tarea
+        SplittableRandom azar = new SplittableRandom(semilla);
+
+        // Población inicial: la solución de aristas voraces y permutaciones aleatorias, todas mejoradas
+        SplittableRandom[] azares = repartir(azar, poblacion);
+        Individuo[] actual = IntStream.range(0, poblacion).parallel()
+                .mapToObj(i -> {
+                    int[] orden = i == 0 ? AlgoritmoAristas.construir(tabla) : aleatorio(n, azares[i]);
+                    return evaluar(tabla, AlgoritmoBusquedaLocal.mejorar(tabla, orden, fin));
+                })
+                .toArray(Individuo[]::new);
+        Arrays.sort(actual, Comparator.comparingInt((Individuo ind) -> ind.afinidad).reversed());
+
+        int objetivo = CotaSuperior.objetivo(tabla, brechaObjetivo, actual[0].afinidad);
+        Metricas.Ejecucion ejecucion = Metricas.getInstance().iniciar("AlgoritmoGenetico");
+        ejecucion.mejora(actual[0].afinidad);
+        int sinMejora = 0;
+        while (System.nanoTime() < fin && sinMejora < GENERACIONES_SIN_MEJORA && actual[0].afinidad < objetivo) {
+            Individuo[] padres = actual;
+            SplittableRandom[] azaresHijos = repartir(azar, poblacion);
+            Individuo[] hijos = IntStream.range(0, poblacion).parallel()
+                    .mapToObj(i -> {
+                        SplittableRandom r = azaresHijos[i];
+                        int[] hijo = cruzar(torneo(padres, r).orden, torneo(padres, r).orden, r);
+                        if (r.nextDouble() < PROB_MUTACION) mutar(hijo, r);
+                        return evaluar(tabla, AlgoritmoBusquedaLocal.mejorar(tabla, hijo, fin));
+                    })
+                    .toArray(Individuo[]::new);
+            actual = seleccionar(padres, hijos);
+            // Cada generación cuenta como un reinicio y cada hijo como un movimiento probado
+            ejecucion.reinicio();
+            ejecucion.probados(hijos.length);
+            if (actual[0].afinidad > padres[0].afinidad) {
+                ejecucion.aceptado();
+                ejecucion.mejora(actual[0].afinidad);
+                sinMejora = 0;
+            } else {
+                ++sinMejora;
+            }
+        }
+        ejecucion.terminar();
+        return tabla.aLista(actual[0].orden);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * No se generan más generaciones en cuanto el mejor individuo alcanza la brecha objetivo.
+     */
+    @Override
+    public void setBrechaObjetivo(double brecha) {
+        this.brechaObjetivo = brecha;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Con la misma semilla el resultado es el mismo siempre que la búsqueda no se corte por el tiempo límite.
+     */
+    @Override
+    public void setSemilla(long semilla) {
+        this.semilla = semilla;
+    }
+
+    /**
+     * Crea un generador independiente para cada tarea paralela a partir del generador principal.
+     */
+    private static SplittableRandom[] repartir(SplittableRandom azar, int k) {
+        SplittableRandom[] r = new SplittableRandom[k];
+        for (int i = 0; i < k; ++i) r[i] = azar.split();
+        return r;
+    }
+
+    /**
+     * Evalúa un orden y crea el individuo correspondiente.
+     */
+    private static Individuo evaluar(TablaAfinidad tabla, int[] orden) {
+        return new Individuo(orden, tabla.afinidadCircular(orden));
+    }
+
+    /**
+     * Devuelve la permutación identidad de {@code n} elementos.
+     */
+    private static int[] identidad(int n) {
+        int[] orden = new int[n];
+        for (int i = 0; i < n; ++i) orden[i] = i;
+        return orden;
+    }
+
+    /**
+     * Devuelve una permutación aleatoria de {@code n} elementos.
+     */
+    private static int[] aleatorio(int n, SplittableRandom r) {
+        int[] orden = identidad(n);
+        for (int i = n - 1; i > 0; --i) {
+            int j = r.nextInt(i + 1);
+            int aux = orden[i];
+            orden[i] = orden[j];
+            orden[j] = aux;
+        }
+        return orden;
+    }
+
+    /**
+     * Selección por torneo: devuelve el mejor de {@code TORNEO} individuos al azar.
+     */
+    private static Individuo torneo(Individuo[] poblacion, SplittableRandom r) {
+        Individuo mejor = poblacion[r.nextInt(poblacion.length)];
+        for (int i = 1; i < TORNEO; ++i) {
+            Individuo otro = poblacion[r.nextInt(poblacion.length)];
+            if (otro.afinidad > mejor.afinidad) mejor = otro;
+        }
+        return mejor;
+    }
+
+    /**
+     * Cruce de orden (OX): copia un tramo aleatorio del primer padre y completa con el resto de
+     * productos en el orden en que aparecen en el segundo padre, empezando tras el tramo.
+     */
+    private static int[] cruzar(int[] a, int[] b, SplittableRandom r) {
+        int n = a.length;
+        int i = r.nextInt(n);
+        int j = r.nextInt(n);
+        if (i > j) {
+            int aux = i;
+            i = j;
+            j = aux;
+        }
+        int[] hijo = new int[n];
+        boolean[] usado = new boolean[n];
+        for (int k = i; k <= j; ++k) {
+            hijo[k] = a[k];
+            usado[a[k]] = true;
+        }
+        int pos = (j + 1) % n;
+        for (int t = 0; t < n; ++t) {
+            int c = b[(j + 1 + t) % n];
+            if (!usado[c]) {
+                hijo[pos] = c;
+                pos = (pos + 1) % n;
+            }
+        }
+        return hijo;
+    }
+
+    /**
+     * Mutación 2-opt: invierte un tramo aleatorio del ciclo.
+     */
+    private static void mutar(int[] orden, SplittableRandom r) {
+        int i = r.nextInt(orden.length);
+        int j = r.nextInt(orden.length);
+        for (int x = Math.min(i, j), y = Math.max(i, j); x < y; ++x, --y) {
+            int aux = orden[x];
+            orden[x] = orden[y];
+            orden[y] = aux;
+        }
+    }
+
+    /**
+     * Elitismo: la nueva población son los mejores individuos de padres e hijos, descartando los
+     * que tienen la misma afinidad y el mismo ciclo que otro ya elegido.
+     */
+    private Individuo[] seleccionar(Individuo[] padres, Individuo[] hijos) {
+        Individuo[] todos = Arrays.copyOf(padres, padres.length + hijos.length);
+        System.arraycopy(hijos, 0, todos, padres.length, hijos.length);
+        Arrays.sort(todos, Comparator.comparingInt((Individuo ind) -> ind.afinidad).reversed());
+        ArrayList<Individuo> elegidos = new ArrayList<>(poblacion);
+        for (Individuo ind : todos) {
+            if (elegidos.size() == poblacion) break;
+            boolean repetido = false;
+            for (Individuo e : elegidos) {
+                if (e.afinidad == ind.afinidad && mismoCiclo(e.orden, ind.orden)) {
+                    repetido = true;
+                    break;
+                }
+            }
+            if (!repetido) elegidos.add(ind);
+        }
+        // Si no hay bastantes individuos distintos, se completa con los mejores repetidos
+        for (int i = 0; elegidos.size() < poblacion; ++i) elegidos.add(todos[i]);
+        return elegidos.toArray(new Individuo[0]);
+    }
+
+    /**
+     * Indica si dos órdenes representan el mismo ciclo, en cualquier sentido y desde cualquier punto.
+     */
+    private static boolean mismoCiclo(int[] a, int[] b) {
+        int n = a.length;
+        int inicio = 0;
+        while (b[inicio] != a[0]) ++inicio;
+        boolean directo = true;
+        boolean inverso = true;
+        for (int i = 0; i < n && (directo || inverso); ++i) {
+            if (a[i] != b[(inicio + i) % n]) directo = false;
+            if (a[i] != b[(inicio - i + n) % n]) inverso = false;
+        }
+        return directo || inverso;
+    }
+}
@@ -1,15 +1,77 @@
 package edu.upc.prop.clusterxx.dominio;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 /**
  * Clase <b>AlgoritmoGreedy</b> que implementa la interfaz <b>Algoritmo</b>.
  * <p>
  * Ordena una lista de productos siguiendo un enfoque <i>greedy</i> para maximizar 
  * la afinidad entre ellos.
+ * <p>
+ * En modo <i>multiarranque</i> construye el recorrido del vecino más afín empezando desde cada
+ * uno de los productos, en paralelo y sobre una {@link TablaAfinidad} precalculada, y se queda con
+ * el mejor. Opcionalmente, cada recorrido se cierra de forma óptima invirtiendo el tramo final
+ * mientras eso mejore la afinidad entre el último y el primer producto.
+ * El coste total es O(n³), pero cada arranque es independiente. Cada ejecución multiarranque se
+ * registra en {@link Metricas}: un reinicio por arranque, los candidatos evaluados, las inversiones
+ * del cierre aplicadas y la afinidad del mejor recorrido.
  */
 public class AlgoritmoGreedy implements Algoritmo {
 
+    /**
+     * Indica si se construye un recorrido desde cada producto en lugar de sólo desde el primero.
+     */
+    private final boolean multiarranque;
+    /**
+     * Indica si, en modo multiarranque, se mejora el cierre del ciclo de cada recorrido.
+     */
+    private final boolean cerrarCiclo;
+
+    /**
+     * Resultado de un arranque: el orden obtenido y su afinidad total.
+     */
+    private static final class Candidato {
+        final int inicio;
+        final int[] orden;
+        final int afinidad;
+
+        Candidato(int inicio, int[] orden, int afinidad) {
+            this.inicio = inicio;
+            this.orden = orden;
+            this.afinidad = afinidad;
+        }
+    }
+
+    /**
+     * Crea el algoritmo <i>greedy</i> clásico, que empieza siempre por el primer producto de la lista.
+     */
+    public AlgoritmoGreedy() {
+        this(false, false);
+    }
+
+    /**
+     * Crea el algoritmo <i>greedy</i> indicando el modo de funcionamiento.
+     *
+     * @param multiarranque Si es {@code true}, se prueba cada producto como punto de partida.
+     * @param cerrarCiclo   Si es {@code true}, se optimiza el cierre del ciclo de cada recorrido
+     *                      (sólo en modo multiarranque).
+     */
+    public AlgoritmoGreedy(boolean multiarranque, boolean cerrarCiclo) {
+        this.multiarranque = multiarranque;
+        this.cerrarCiclo = cerrarCiclo;
+    }
+
+    /**
+     * Indica si el algoritmo está en modo multiarranque.
+     *
+     * @return {@code true} si se construye un recorrido desde cada producto.
+     */
+    public boolean esMultiarranque() {
+        return multiarranque;
+    }
+
     /**
      * Aplica una estrategia <i>greedy</i> para ordenar la lista de productos.
      * 
@@ -23,6 +85,7 @@ public class AlgoritmoGreedy implements Algoritmo {
      * @return Lista de productos ordenada utilizando el criterio <i>greedy</i>.
      */
     private ArrayList<Producto> greedy(ArrayList<Producto> listaProductos) {
+        InstantaneaMatriz matriz = Matriz.getInstance().getInstantanea();
         ArrayList<Producto> listaOrdenada = new ArrayList<>();
         ArrayList<Producto> listaAux = new ArrayList<>(listaProductos);
         // Suponiendo que getFirst() es un método definido en la estructura de listaAux
@@ -34,7 +97,7 @@ public class AlgoritmoGreedy implements Algoritmo {
             int pos = 0;
             for (int j = 0; j < listaAux.size(); ++j) {
                 Producto p2 = listaAux.get(j);
-                Afinidad a = new Afinidad(p, p2);
+                Afinidad a = new Afinidad(p, p2, matriz);
                 if (a.getValor() > afinidadMax && !p.equals(p2)) {
                     afinidadMax = a.getValor();
                     pos = j;
@@ -49,7 +112,7 @@ public class AlgoritmoGreedy implements Algoritmo {
         // Ajusta si necesitas usar get(0) y get(size()-1) en lugar de getFirst()/getLast()
         Producto primero = listaOrdenada.get(0);
         Producto ultimo = listaOrdenada.get(listaOrdenada.size() - 1);
-        Afinidad a = new Afinidad(primero, ultimo);
+        Afinidad a = new Afinidad(primero, ultimo, matriz);
 
         return listaOrdenada;
     }
@@ -69,6 +132,128 @@ public class AlgoritmoGreedy implements Algoritmo {
      */
     @Override
     public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        if (multiarranque) return greedyMultiarranque(listaProductos);
         return greedy(listaProductos);
     }
+
+    /**
+     * Aplica la estrategia <i>greedy</i> desde cada producto en paralelo y devuelve el mejor recorrido.
+     * <p>
+     * Precondición: <b>listaProductos</b> no está vacía.
+     * Postcondición: Devuelve el recorrido de mayor afinidad total entre todos los arranques.
+     * En caso de empate gana el arranque con menor índice, de modo que el resultado no depende
+     * del número de hilos.
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    private ArrayList<Producto> greedyMultiarranque(ArrayList<Producto> listaProductos) {
+        TablaAfinidad tabla = new TablaAfinidad(listaProductos, Matriz.getInstance().getInstantanea());
+        int n = tabla.size();
+        if (n == 0) return new ArrayList<>();
+        Metricas.Ejecucion ejecucion = Metricas.getInstance().iniciar("AlgoritmoGreedy");
+        // Ejecucion no es segura entre hilos: los arranques acumulan aquí y se publica al final
+        LongAdder probados = new LongAdder();
+        LongAdder aceptados = new LongAdder();
+        Candidato mejor = IntStream.range(0, n).parallel()
+                .mapToObj(inicio -> {
+                    int[] orden = vecinoMasAfin(tabla, inicio);
+                    probados.add((long) n * (n - 1) / 2);
+                    if (cerrarCiclo) {
+                        int inversiones = cerrar(tabla, orden);
+                        // Cada pasada de cerrar evalúa los n-3 cortes posibles
+                        probados.add((long) Math.min(inversiones + 1, n) * Math.max(0, n - 3));
+                        aceptados.add(inversiones);
+                    }
+                    return new Candidato(inicio, orden, tabla.afinidadCircular(orden));
+                })
+                .reduce((a, b) -> {
+                    if (a.afinidad != b.afinidad) return a.afinidad > b.afinidad ? a : b;
+                    return a.inicio < b.inicio ? a : b;
+                })
+                .orElseThrow();
+        ejecucion.reinicios(n);
+        ejecucion.probados(probados.sum());
+        ejecucion.aceptados(aceptados.sum());
+        ejecucion.mejora(mejor.afinidad);
+        ejecucion.terminar();
+        return tabla.aLista(mejor.orden);
+    }
+
+    /**
+     * Construye el recorrido del vecino más afín empezando por el producto {@code inicio}.
+     *
+     * @param tabla  Tabla de afinidades de los productos.
+     * @param inicio Índice del producto inicial.
+     * @return Orden de índices obtenido.
+     */
+    private static int[] vecinoMasAfin(TablaAfinidad tabla, int inicio) {
+        int n = tabla.size();
+        int[] orden = new int[n];
+        boolean[] usado = new boolean[n];
+        int actual = inicio;
+        orden[0] = actual;
+        usado[actual] = true;
+        for (int paso = 1; paso < n; ++paso) {
+            int siguiente = -1;
+            int afinidadMax = Integer.MIN_VALUE;
+            for (int j = 0; j < n; ++j) {
+                if (!usado[j]) {
+                    int v = tabla.get(actual, j);
+                    if (v > afinidadMax) {
+                        afinidadMax = v;
+                        siguiente = j;
+                    }
+                }
+            }
+            orden[paso] = siguiente;
+            usado[siguiente] = true;
+            actual = siguiente;
+        }
+        return orden;
+    }
+
+    /**
+     * Mejora localmente el cierre del ciclo con movimientos 2-opt sobre la arista de cierre: mientras
+     * exista un {@code k} tal que invertir el tramo {@code orden[k..n-1]} aumente la afinidad total,
+     * aplica la mejor de esas inversiones. No garantiza el cierre óptimo.
+     * <p>
+     * La ganancia se calcula con el mismo criterio que {@link TablaAfinidad#afinidadCircular}, teniendo
+     * en cuenta el sentido de cada arista: al invertir el tramo cambian las aristas (k-1, k) y (0, n-1)
+     * por (k-1, n-1) y (0, k), y las aristas internas del tramo pasan a recorrerse al revés. Así el
+     * movimiento es correcto también si la matriz de afinidades no es simétrica.
+     *
+     * @param tabla Tabla de afinidades de los productos.
+     * @param orden Recorrido a mejorar; se modifica in situ.
+     * @return Número de inversiones aplicadas.
+     */
+    private static int cerrar(TablaAfinidad tabla, int[] orden) {
+        int n = orden.length;
+        // inversion[k]: cambio de afinidad de las aristas internas de orden[k..n-1] al invertirlas
+        int[] inversion = new int[n];
+        for (int iter = 0; iter < n; ++iter) {
+            for (int k = n - 2; k >= 0; --k) {
+                inversion[k] = inversion[k + 1]
+                        + tabla.get(orden[k + 1], orden[k]) - tabla.get(orden[k], orden[k + 1]);
+            }
+            int mejorK = -1;
+            int mejorGanancia = 0;
+            for (int k = 2; k < n - 1; ++k) {
+                int ganancia = tabla.get(orden[k - 1], orden[n - 1]) + tabla.get(orden[0], orden[k])
+                        - tabla.get(orden[k - 1], orden[k]) - tabla.get(orden[0], orden[n - 1])
+                        + inversion[k];
+                if (ganancia > mejorGanancia) {
+                    mejorGanancia = ganancia;
+                    mejorK = k;
+                }
+            }
+            if (mejorK < 0) return iter;
+            for (int i = mejorK, j = n - 1; i < j; ++i, --j) {
+                int aux = orden[i];
+                orden[i] = orden[j];
+                orden[j] = aux;
+            }
+        }
+        return n;
+    }
 }
@@ -0,0 +1,340 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+
+/**
+ * Clase <b>AlgoritmoTabu</b> que implementa la interfaz <b>Algoritmo</b>.
+ * <p>
+ * Búsqueda tabú sobre el ciclo de productos. Parte del óptimo local que obtiene
+ * {@link AlgoritmoBusquedaLocal} desde la solución de {@link AlgoritmoAristas} y en
+ * cada iteración aplica el mejor movimiento no tabú, aunque empeore, de modo que sale de los óptimos
+ * locales sin volver a empezar desde cero:
+ * <ul>
+ *     <li><i>Intercambio</i>: intercambiar los productos de dos posiciones (todos los pares).</li>
+ *     <li><i>Inserción</i>: sacar un producto y colocarlo junto a uno de sus vecinos candidatos
+ *     ({@link TablaAfinidad#vecinos(int)}), a cualquiera de sus lados.</li>
+ * </ul>
+ * Cada movimiento se evalúa en O(1) con la diferencia de afinidad de las aristas que cambian.
+ * Las aristas que se quitan pasan a ser tabú durante unas iteraciones (matriz de tenencia n×n):
+ * un movimiento que las vuelva a crear sólo se acepta si mejora la mejor solución encontrada
+ * (criterio de aspiración). La búsqueda termina al agotar el tiempo o las iteraciones, tras
+ * demasiadas iteraciones seguidas sin mejorar la mejor solución o al alcanzar la brecha objetivo
+ * ({@link #setBrechaObjetivo(double)}).
+ * <p>
+ * Se asume que la afinidad es simétrica, como la matriz de afinidades del sistema.
+ */
+public class AlgoritmoTabu implements Algoritmo {
+
+    /**
+     * Tiempo límite por defecto, en milisegundos.
+     */
+    public static final long LIMITE_DEFECTO_MS = 1000;
+
+    /**
+     * Número máximo de iteraciones por defecto.
+     */
+    public static final int ITERACIONES_DEFECTO = 100_000;
+
+    /**
+     * Número de productos a partir del cual la matriz de tenencia ocuparía demasiada memoria y sólo
+     * se aplica la búsqueda local.
+     */
+    public static final int MAX_PRODUCTOS = 3000;
+
+    /**
+     * Número de vecinos candidatos por producto para las inserciones.
+     */
+    private static final int CANDIDATOS = 10;
+
+    /**
+     * Tiempo límite de la búsqueda, en milisegundos.
+     */
+    private final long limiteMs;
+
+    /**
+     * Número máximo de iteraciones.
+     */
+    private final int maxIteraciones;
+
+    /**
+     * Brecha de optimalidad objetivo (0 si no hay parada anticipada).
+     */
+    private volatile double brechaObjetivo;
+
+    /**
+     * Crea la búsqueda tabú con el presupuesto por defecto.
+     */
+    public AlgoritmoTabu() {
+        this(LIMITE_DEFECTO_MS, ITERACIONES_DEFECTO);
+    }
+
+    /**
+     * Crea la búsqueda tabú con un presupuesto de tiempo e iteraciones.
+     *
+     * @param limiteMs       Tiempo límite de la búsqueda, en milisegundos.
+     * @param maxIteraciones Número máximo de iteraciones.
+     */
+    public AlgoritmoTabu(long limiteMs, int maxIteraciones) {
+        this.limiteMs = limiteMs;
+        this.maxIteraciones = maxIteraciones;
+    }
+
+    /**
+     * Método que implementa la operación <b>ordenar</b> de la interfaz <b>Algoritmo</b>
+     * utilizando búsqueda tabú.
+     *
+     * Precondición:
+     *  - <b>listaProductos</b> tiene menos de 2^20 productos.
+     * Postcondición:
+     *  - Devuelve una nueva lista con los mismos productos, en el mejor orden encontrado. Con menos de
+     *    5 productos se devuelve el orden óptimo de {@link AlgoritmoExacto}, y con más de
+     *    {@code MAX_PRODUCTOS} productos sólo se aplica la búsqueda local de {@link AlgoritmoBusquedaLocal}.
+     *
+     * @param listaProductos Lista de productos a ordenar.
+     * @return Lista de productos ordenada.
+     */
+    @Override
+    public ArrayList<Producto> ordenar(ArrayList<Producto> listaProductos) {
+        long fin = System.nanoTime() + limiteMs * 1_000_000L;
+        TablaAfinidad tabla = new TablaAfinidad(listaProductos, Matriz.getInstance().getInstantanea());
+        if (tabla.size() < 5) return tabla.aLista(AlgoritmoExacto.resolver(tabla));
+        int[] inicial = AlgoritmoBusquedaLocal.mejorar(tabla, AlgoritmoAristas.construir(tabla), fin);
+        if (tabla.size() > MAX_PRODUCTOS) return tabla.aLista(inicial);
+        int objetivo = CotaSuperior.objetivo(tabla, brechaObjetivo, tabla.afinidadCircular(inicial));
+        return tabla.aLista(buscar(tabla, inicial, fin, objetivo));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * La búsqueda termina en cuanto la mejor solución alcanza la brecha objetivo.
+     */
+    @Override
+    public void setBrechaObjetivo(double brecha) {
+        this.brechaObjetivo = brecha;
+    }
+
+    /**
+     * Ejecuta la búsqueda tabú desde un ciclo inicial.
+     *
+     * @param tabla   Tabla de afinidades de los productos.
+     * @param inicial Ciclo inicial.
+     * @param fin      Instante límite, en el reloj de {@link System#nanoTime()}.
+     * @param objetivo Afinidad con la que se da la búsqueda por terminada.
+     * @return El mejor ciclo encontrado.
+     */
+    private int[] buscar(TablaAfinidad tabla, int[] inicial, long fin, int objetivo) {
+        int n = inicial.length;
+        int[] orden = inicial.clone();
+        int actual = tabla.afinidadCircular(orden);
+        int[] mejor = orden.clone();
+        int mejorAfinidad = actual;
+
+        int[] vecinos = tabla.vecinos(CANDIDATOS);
+        int m = vecinos.length / n;
+        int[] posicion = new int[n];
+        for (int i = 0; i < n; ++i) posicion[orden[i]] = i;
+        // Iteración hasta la que cada arista (par de productos) es tabú
+        int[] tabuHasta = new int[n * n];
+        int tenencia = Math.max(5, Math.min(n / 4, 20));
+        int maxSinMejora = Math.max(2000, 20 * n);
+        Metricas.Ejecucion ejecucion = Metricas.getInstance().iniciar("AlgoritmoTabu");
+        ejecucion.mejora(mejorAfinidad);
+        long intercambios = (long) n * (n - 1) / 2;
+        long inserciones = 0;
+
+        int sinMejora = 0;
+        for (int it = 1; it <= maxIteraciones && sinMejora < maxSinMejora && mejorAfinidad < objetivo; ++it) {
+            // Mejor movimiento admisible: tipo 0 = intercambio (i, j), tipo 1 = inserción de orden[i] tras orden[j]
+            int mejorDelta = Integer.MIN_VALUE;
+            int mejorTipo = -1, mejorI = -1, mejorJ = -1;
+
+            // Una iteración recorre O(n^2) intercambios (más de 100 ms con miles de productos), así que el
+            // límite se comprueba en cada fila del recorrido y no sólo entre iteraciones
+            boolean agotado = false;
+            ejecucion.probados(intercambios);
+            for (int i = 0; i < n - 1; ++i) {
+                if (System.nanoTime() > fin) {
+                    agotado = true;
+                    break;
+                }
+                for (int j = i + 1; j < n; ++j) {
+                    int delta = deltaIntercambio(tabla, orden, i, j);
+                    if (delta > mejorDelta
+                            && (actual + delta > mejorAfinidad || !intercambioTabu(orden, i, j, tabuHasta, it))) {
+                        mejorDelta = delta;
+                        mejorTipo = 0;
+                        mejorI = i;
+                        mejorJ = j;
+                    }
+                }
+            }
+            if (agotado) break;
+            for (int x = 0; x < n; ++x) {
+                int i = posicion[x];
+                for (int c = 0; c < m; ++c) {
+                    int u = vecinos[x * m + c];
+                    // Insertar x después de u o antes de u (después de su anterior)
+                    for (int lado = 0; lado < 2; ++lado) {
+                        int j = lado == 0 ? posicion[u] : (posicion[u] + n - 1) % n;
+                        if (j == i || j == (i + n - 1) % n) continue;
+                        ++inserciones;
+                        int delta = deltaInsercion(tabla, orden, i, j);
+                        if (delta > mejorDelta
+                                && (actual + delta > mejorAfinidad || !insercionTabu(orden, i, j, tabuHasta, it))) {
+                            mejorDelta = delta;
+                            mejorTipo = 1;
+                            mejorI = i;
+                            mejorJ = j;
+                        }
+                    }
+                }
+            }
+            if (mejorTipo < 0) break;
+
+            if (mejorTipo == 0) {
+                marcarIntercambio(orden, mejorI, mejorJ, tabuHasta, it + tenencia);
+                int aux = orden[mejorI];
+                orden[mejorI] = orden[mejorJ];
+                orden[mejorJ] = aux;
+                posicion[orden[mejorI]] = mejorI;
+                posicion[orden[mejorJ]] = mejorJ;
+            } else {
+                marcarInsercion(orden, mejorI, mejorJ, tabuHasta, it + tenencia);
+                insertar(orden, posicion, mejorI, mejorJ);
+            }
+            actual += mejorDelta;
+            ejecucion.aceptado();
+
+            if (actual > mejorAfinidad) {
+                mejorAfinidad = actual;
+                System.arraycopy(orden, 0, mejor, 0, n);
+                ejecucion.mejora(mejorAfinidad);
+                sinMejora = 0;
+            } else {
+                ++sinMejora;
+            }
+        }
+        ejecucion.probados(inserciones);
+        ejecucion.terminar();
+        return mejor;
+    }
+
+    /**
+     * Diferencia de afinidad al intercambiar los productos de las posiciones {@code i < j}.
+     */
+    private static int deltaIntercambio(TablaAfinidad t, int[] o, int i, int j) {
+        int n = o.length;
+        int a = o[i], b = o[j];
+        int pi = o[(i + n - 1) % n], ni = o[i + 1];
+        int pj = o[j - 1], nj = o[(j + 1) % n];
+        if (j == i + 1) {
+            return t.get(pi, b) + t.get(a, nj) - t.get(pi, a) - t.get(b, nj);
+        }
+        if (i == 0 && j == n - 1) {
+            return t.get(pj, a) + t.get(b, ni) - t.get(pj, b) - t.get(a, ni);
+        }
+        return t.get(pi, b) + t.get(b, ni) + t.get(pj, a) + t.get(a, nj)
+                - t.get(pi, a) - t.get(a, ni) - t.get(pj, b) - t.get(b, nj);
+    }
+
+    /**
+     * Diferencia de afinidad al sacar el producto de la posición {@code i} e insertarlo entre los de las
+     * posiciones {@code j} y {@code j + 1}, con {@code j} distinto de {@code i} y de {@code i - 1}.
+     */
+    private static int deltaInsercion(TablaAfinidad t, int[] o, int i, int j) {
+        int n = o.length;
+        int x = o[i], p = o[(i + n - 1) % n], s = o[(i + 1) % n];
+        int u = o[j], v = o[(j + 1) % n];
+        return t.get(p, s) + t.get(u, x) + t.get(x, v) - t.get(p, x) - t.get(x, s) - t.get(u, v);
+    }
+
+    /**
+     * Indica si la arista entre los productos {@code a} y {@code b} es tabú en la iteración {@code it}.
+     */
+    private static boolean esTabu(int[] tabuHasta, int n, int a, int b, int it) {
+        return tabuHasta[a * n + b] > it;
+    }
+
+    /**
+     * Marca como tabú la arista entre {@code a} y {@code b} hasta la iteración {@code hasta}.
+     */
+    private static void marcar(int[] tabuHasta, int n, int a, int b, int hasta) {
+        tabuHasta[a * n + b] = hasta;
+        tabuHasta[b * n + a] = hasta;
+    }
+
+    /**
+     * Indica si un intercambio crea alguna arista tabú.
+     */
+    private static boolean intercambioTabu(int[] o, int i, int j, int[] tabu, int it) {
+        int n = o.length;
+        int a = o[i], b = o[j];
+        int pi = o[(i + n - 1) % n], ni = o[i + 1];
+        int pj = o[j - 1], nj = o[(j + 1) % n];
+        if (j == i + 1) return esTabu(tabu, n, pi, b, it) || esTabu(tabu, n, a, nj, it);
+        if (i == 0 && j == n - 1) return esTabu(tabu, n, pj, a, it) || esTabu(tabu, n, b, ni, it);
+        return esTabu(tabu, n, pi, b, it) || esTabu(tabu, n, b, ni, it)
+                || esTabu(tabu, n, pj, a, it) || esTabu(tabu, n, a, nj, it);
+    }
+
+    /**
+     * Indica si una inserción crea alguna arista tabú.
+     */
+    private static boolean insercionTabu(int[] o, int i, int j, int[] tabu, int it) {
+        int n = o.length;
+        int x = o[i], p = o[(i + n - 1) % n], s = o[(i + 1) % n];
+        int u = o[j], v = o[(j + 1) % n];
+        return esTabu(tabu, n, p, s, it) || esTabu(tabu, n, u, x, it) || esTabu(tabu, n, x, v, it);
+    }
+
+    /**
+     * Marca como tabú las aristas que quita un intercambio.
+     */
+    private static void marcarIntercambio(int[] o, int i, int j, int[] tabu, int hasta) {
+        int n = o.length;
+        int a = o[i], b = o[j];
+        int pi = o[(i + n - 1) % n], ni = o[i + 1];
+        int pj = o[j - 1], nj = o[(j + 1) % n];
+        if (j == i + 1) {
+            marcar(tabu, n, pi, a, hasta);
+            marcar(tabu, n, b, nj, hasta);
+        } else if (i == 0 && j == n - 1) {
+            marcar(tabu, n, pj, b, hasta);
+            marcar(tabu, n, a, ni, hasta);
+        } else {
+            marcar(tabu, n, pi, a, hasta);
+            marcar(tabu, n, a, ni, hasta);
+            marcar(tabu, n, pj, b, hasta);
+            marcar(tabu, n, b, nj, hasta);
+        }
+    }
+
+    /**
+     * Marca como tabú las aristas que quita una inserción.
+     */
+    private static void marcarInsercion(int[] o, int i, int j, int[] tabu, int hasta) {
+        int n = o.length;
+        int x = o[i], p = o[(i + n - 1) % n], s = o[(i + 1) % n];
+        int u = o[j], v = o[(j + 1) % n];
+        marcar(tabu, n, p, x, hasta);
+        marcar(tabu, n, x, s, hasta);
+        marcar(tabu, n, u, v, hasta);
+    }
+
+    /**
+     * Saca el producto de la posición {@code i} y lo coloca justo después del de la posición {@code j}.
+     */
+    private static void insertar(int[] o, int[] posicion, int i, int j) {
+        int x = o[i];
+        if (j > i) {
+            System.arraycopy(o, i + 1, o, i, j - i);
+            o[j] = x;
+            for (int k = i; k <= j; ++k) posicion[o[k]] = k;
+        } else {
+            System.arraycopy(o, j + 1, o, j + 2, i - j - 1);
+            o[j + 1] = x;
+            for (int k = j + 1; k <= i; ++k) posicion[o[k]] = k;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Clase <b>BancoGenetico</b>.
+ * <p>
+ * Pequeño banco de pruebas que compara {@link AlgoritmoGenetico} con {@link AlgoritmoAproximacion} en
+ * estanterías sintéticas: para cada tamaño genera una matriz de afinidades entre {@code TIPOS} tipos y
+ * una lista de productos con uno o dos tipos y hasta dos contextos, y mide la afinidad del ciclo y el
+ * tiempo de cada algoritmo. La matriz, los productos y los algoritmos usan una semilla fija, así que
+ * dos ejecuciones comparan las mismas estanterías; como el genético se detiene por tiempo, su afinidad
+ * puede variar un poco según la máquina.
+ * <p>
+ * El banco sustituye la matriz de afinidades de {@link Matriz}, así que debe ejecutarse en su propia JVM.
+ * La aproximación es mucho más lenta que el genético: con 60 productos tarda más de un minuto.
+ * <p>
+ * Uso: {@code java -cp ... edu.upc.prop.clusterxx.dominio.BancoGenetico [tamaño...]}
+ */
+public final class BancoGenetico {
+    /**
+     * Tamaños de estantería por defecto.
+     */
+    private static final int[] TAMANOS = {30, 60};
+
+    /**
+     * Número de tipos de la matriz sintética.
+     */
+    private static final int TIPOS = 40;
+
+    /**
+     * Número de contextos sintéticos.
+     */
+    private static final int CONTEXTOS = 5;
+
+    /**
+     * Semilla de la matriz, los productos y los algoritmos.
+     */
+    private static final long SEMILLA = 1;
+
+    /**
+     * Clase de utilidades: no se instancia.
+     */
+    private BancoGenetico() {
+    }
+
+    /**
+     * Ejecuta el banco de pruebas y escribe los resultados por la salida estándar.
+     *
+     * @param args Opcionalmente, los tamaños de estantería que se comparan.
+     * @throws Exception Si no se pueden crear los productos sintéticos.
+     */
+    public static void main(String[] args) throws Exception {
+        int[] tamanos = TAMANOS;
+        if (args.length > 0) {
+            tamanos = new int[args.length];
+            for (int i = 0; i < args.length; ++i) tamanos[i] = Integer.parseInt(args[i]);
+        }
+        System.out.println(medir(tamanos));
+    }
+
+    /**
+     * Compara el algoritmo genético con la aproximación en estanterías sintéticas de los tamaños indicados.
+     *
+     * Precondición: Los tamaños son mayores que 0.
+     * Postcondición: La matriz de afinidades de {@link Matriz} es la sintética.
+     *
+     * @param tamanos Número de productos de cada estantería.
+     * @return Una tabla con los resultados.
+     * @throws Exception Si no se pueden crear los productos sintéticos.
+     */
+    public static String medir(int[] tamanos) throws Exception {
+        SplittableRandom azar = new SplittableRandom(SEMILLA);
+        int[][] matriz = new int[TIPOS][TIPOS];
+        for (int i = 0; i < TIPOS; ++i) {
+            for (int j = i; j < TIPOS; ++j) matriz[i][j] = matriz[j][i] = azar.nextInt(101);
+        }
+        Matriz.getInstance().setMatriz(matriz);
+        ArrayList<Tipo> tipos = new ArrayList<>();
+        for (int i = 0; i < TIPOS; ++i) tipos.add(new Tipo("Tipo" + i, i));
+        ArrayList<Contexto> contextos = new ArrayList<>();
+        for (int i = 0; i < CONTEXTOS; ++i) contextos.add(new Contexto("Contexto" + i));
+
+        StringBuilder sb = new StringBuilder(String.format("%-10s %-14s %10s %10s%n", "Productos", "Algoritmo", "Afinidad", "ms"));
+        for (int n : tamanos) {
+            ArrayList<Producto> productos = new ArrayList<>();
+            for (int i = 0; i < n; ++i) {
+                ArrayList<Atributo> atributos = new ArrayList<>();
+                int numTipos = 1 + azar.nextInt(2);
+                while (atributos.size() < numTipos) {
+                    Tipo t = tipos.get(azar.nextInt(TIPOS));
+                    if (!atributos.contains(t)) atributos.add(t);
+                }
+                int numContextos = azar.nextInt(3);
+                while (atributos.size() < numTipos + numContextos) {
+                    Contexto c = contextos.get(azar.nextInt(CONTEXTOS));
+                    if (!atributos.contains(c)) atributos.add(c);
+                }
+                productos.add(new Producto("Producto" + i, atributos));
+            }
+            Algoritmo[] algoritmos = {new AlgoritmoGenetico(), new AlgoritmoAproximacion()};
+            String[] nombres = {"Genético", "Aproximación"};
+            for (int a = 0; a < algoritmos.length; ++a) {
+                algoritmos[a].setSemilla(SEMILLA);
+                long t = System.nanoTime();
+                ArrayList<Producto> ordenados = algoritmos[a].ordenar(productos);
+                long ms = (System.nanoTime() - t) / 1_000_000L;
+                sb.append(String.format("%-10d %-14s %10d %10d%n", n, nombres[a], afinidad(ordenados), ms));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Calcula la afinidad del ciclo formado por una lista de productos, en su orden.
+     */
+    private static int afinidad(ArrayList<Producto> ordenados) {
+        TablaAfinidad tabla = new TablaAfinidad(ordenados, Matriz.getInstance().getInstantanea());
+        int[] orden = new int[tabla.size()];
+        for (int i = 0; i < orden.length; ++i) orden[i] = i;
+        return tabla.afinidadCircular(orden);
+    }
+}
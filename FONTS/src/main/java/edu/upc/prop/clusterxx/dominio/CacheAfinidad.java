@@ -0,0 +1,146 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase <b>CacheAfinidad</b>.
+ * <p>
+ * Se trata de una clase singleton que memoiza la afinidad entre productos según su <i>firma de atributos</i>.
+ * Todos los productos con la misma combinación de tipos y contextos puntúan igual frente a cualquier otro
+ * producto, así que basta con calcular la afinidad una vez por par de firmas en lugar de una vez por par
+ * de productos. En catálogos grandes el número de firmas distintas es muy pequeño comparado con n².
+ * <p>
+ * Las entradas guardadas corresponden a una versión concreta de la matriz de afinidades. Cuando se pide
+ * una afinidad con una versión más nueva, la caché se vacía; las peticiones con versiones antiguas
+ * (algoritmos que empezaron antes del cambio) se calculan sin guardarse.
+ */
+public class CacheAfinidad {
+    /**
+     * Tabla de firmas: clave canónica de atributos → firma numérica.
+     */
+    private final ConcurrentHashMap<String, Integer> firmas = new ConcurrentHashMap<>();
+    /**
+     * Siguiente firma a asignar. Las firmas empiezan en 1; el 0 indica "sin calcular".
+     */
+    private final AtomicInteger siguienteFirma = new AtomicInteger(1);
+    /**
+     * Afinidades memoizadas para la versión de matriz actual.
+     */
+    private volatile Entradas entradas = new Entradas(0);
+    /**
+     * Afinidades pedidas y afinidades calculadas de verdad (no memoizadas), en el registro de {@link Metricas}.
+     */
+    private final LongAdder evaluaciones = Metricas.getInstance().contador("afinidad.evaluaciones");
+    private final LongAdder calculos = Metricas.getInstance().contador("afinidad.calculos");
+
+    /**
+     * Instancia única de la caché.
+     */
+    private static final CacheAfinidad instance = new CacheAfinidad();
+
+    /**
+     * Afinidades memoizadas para una versión de la matriz.
+     */
+    private static final class Entradas {
+        /**
+         * Versión de la matriz a la que corresponden los valores.
+         */
+        final long version;
+        /**
+         * Valores memoizados, indexados por el par de firmas (firmaA en los 32 bits altos).
+         */
+        final ConcurrentHashMap<Long, Integer> valores = new ConcurrentHashMap<>();
+
+        Entradas(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Obtiene la instancia única de la clase {@code CacheAfinidad}.
+     *
+     * @return La instancia única de {@code CacheAfinidad}.
+     */
+    public static CacheAfinidad getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registra una clave de atributos y devuelve su firma.
+     *
+     * <p><b>Pre:</b> {@code clave} es la clave canónica de los atributos de un producto.</p>
+     * <p><b>Post:</b> Devuelve la firma asociada a la clave, asignando una nueva si es la primera vez.</p>
+     *
+     * @param clave Clave canónica de atributos.
+     * @return La firma (entero positivo) de la clave.
+     */
+    int registrarFirma(String clave) {
+        return firmas.computeIfAbsent(clave, k -> siguienteFirma.getAndIncrement());
+    }
+
+    /**
+     * Obtiene la afinidad entre dos productos, calculándola sólo si su par de firmas no se ha visto antes.
+     *
+     * <p><b>Pre:</b> {@code matriz} no es null.</p>
+     * <p><b>Post:</b> Devuelve el mismo valor que el cálculo directo de {@link Afinidad}.</p>
+     *
+     * @param a      Primer producto.
+     * @param b      Segundo producto.
+     * @param matriz Instantánea de la matriz de afinidades.
+     * @return La afinidad entre {@code a} y {@code b}.
+     */
+    public int obtener(Producto a, Producto b, InstantaneaMatriz matriz) {
+        evaluaciones.increment();
+        Entradas actual = entradasPara(matriz.getVersion());
+        if (actual == null) {
+            calculos.increment();
+            return Afinidad.calcular(a, b, matriz);
+        }
+        long clave = ((long) a.getFirma() << 32) | (b.getFirma() & 0xffffffffL);
+        Integer valor = actual.valores.get(clave);
+        if (valor == null) {
+            calculos.increment();
+            valor = Afinidad.calcular(a, b, matriz);
+            actual.valores.putIfAbsent(clave, valor);
+        }
+        return valor;
+    }
+
+    /**
+     * Devuelve las entradas que corresponden a la versión indicada, vaciando la caché si la versión es nueva.
+     *
+     * @param version Versión de la matriz.
+     * @return Las entradas de esa versión, o {@code null} si la versión es anterior a la actual.
+     */
+    private Entradas entradasPara(long version) {
+        Entradas actual = this.entradas;
+        if (actual.version == version) return actual;
+        if (version < actual.version) return null;
+        synchronized (this) {
+            if (this.entradas.version < version) {
+                this.entradas = new Entradas(version);
+            }
+            return this.entradas.version == version ? this.entradas : null;
+        }
+    }
+
+    /**
+     * Obtiene el número de firmas distintas registradas.
+     *
+     * @return El número de combinaciones de atributos distintas vistas hasta ahora.
+     */
+    public int getNumFirmas() {
+        return firmas.size();
+    }
+
+    /**
+     * Obtiene el número de pares de firmas memoizados para la versión actual de la matriz.
+     *
+     * @return El número de afinidades guardadas.
+     */
+    public int getNumEntradas() {
+        return entradas.valores.size();
+    }
+}
@@ -0,0 +1,248 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Clase <b>CacheDistribuciones</b>.
+ * <p>
+ * Se trata de una clase singleton que guarda el resultado de las últimas ordenaciones para que repetir
+ * una distribución con los mismos productos y el mismo algoritmo (por ejemplo, al volver a crearla tras
+ * cambiar de estantería) no vuelva a ejecutar la optimización.
+ * <p>
+ * La clave está formada por el conjunto ordenado de productos (nombre y firma de atributos, de modo que
+ * un producto modificado no reutiliza resultados antiguos), el algoritmo y sus parámetros, y la versión
+ * de la matriz de afinidades. Se guarda el orden como lista de nombres y la afinidad total.
+ * <p>
+ * La caché es LRU y está acotada tanto por número de entradas ({@code MAX_ENTRADAS}) como por el total de
+ * productos guardados ({@code MAX_PRODUCTOS}), para que unas pocas distribuciones enormes no ocupen
+ * demasiada memoria. Cuando la matriz cambia de versión, las entradas de versiones anteriores se descartan.
+ */
+public class CacheDistribuciones {
+    /**
+     * Número máximo de distribuciones guardadas.
+     */
+    public static final int MAX_ENTRADAS = 64;
+
+    /**
+     * Número máximo de productos sumando todas las distribuciones guardadas.
+     */
+    public static final int MAX_PRODUCTOS = 100_000;
+
+    /**
+     * Instancia única de la caché.
+     */
+    private static final CacheDistribuciones instance = new CacheDistribuciones();
+
+    /**
+     * Entradas en orden de acceso (la primera es la usada hace más tiempo).
+     */
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Total de productos de las entradas guardadas.
+     */
+    private int productosGuardados;
+
+    /**
+     * Versión de matriz más reciente vista.
+     */
+    private long version;
+
+    private long aciertos;
+    private long fallos;
+    private long expulsiones;
+    private long invalidaciones;
+
+    /**
+     * Resultado guardado de una ordenación.
+     */
+    private static final class Entrada {
+        final String[] orden;
+        final int afinidadTotal;
+
+        Entrada(String[] orden, int afinidadTotal) {
+            this.orden = orden;
+            this.afinidadTotal = afinidadTotal;
+        }
+    }
+
+    /**
+     * Resultado de una ordenación recuperado de la caché.
+     */
+    static final class Resultado {
+        final ArrayList<Producto> listaOrdenada;
+        final int afinidadTotal;
+
+        Resultado(ArrayList<Producto> listaOrdenada, int afinidadTotal) {
+            this.listaOrdenada = listaOrdenada;
+            this.afinidadTotal = afinidadTotal;
+        }
+    }
+
+    /**
+     * Constructor privado (singleton).
+     */
+    private CacheDistribuciones() {
+    }
+
+    /**
+     * Obtiene la instancia única de la clase {@code CacheDistribuciones}.
+     *
+     * @return La instancia única de {@code CacheDistribuciones}.
+     */
+    public static CacheDistribuciones getInstance() {
+        return instance;
+    }
+
+    /**
+     * Construye la clave de una ordenación.
+     *
+     * <p><b>Pre:</b> Los nombres de {@code productos} son distintos.</p>
+     * <p><b>Post:</b> Dos llamadas devuelven la misma clave si y sólo si coinciden el conjunto de productos
+     * (en cualquier orden), sus atributos, los parámetros y la versión de la matriz.</p>
+     *
+     * @param productos  Productos a ordenar.
+     * @param parametros Algoritmo y parámetros que influyen en el resultado, ya codificados.
+     * @param version    Versión de la matriz de afinidades.
+     * @return La clave.
+     */
+    public String clave(ArrayList<Producto> productos, String parametros, long version) {
+        String[] ids = new String[productos.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            Producto p = productos.get(i);
+            ids[i] = p.getNombre() + '#' + p.getFirma();
+        }
+        Arrays.sort(ids);
+        StringBuilder sb = new StringBuilder(parametros).append('|').append(version);
+        for (String id : ids) sb.append('|').append(id);
+        return sb.toString();
+    }
+
+    /**
+     * Busca el resultado de una ordenación.
+     *
+     * <p><b>Pre:</b> {@code clave} se ha construido con {@link #clave} a partir de {@code productos}.</p>
+     * <p><b>Post:</b> Si hay un resultado guardado, se marca como usado recientemente.</p>
+     *
+     * @param clave     Clave de la ordenación.
+     * @param productos Productos a ordenar; el resultado se construye con estos objetos.
+     * @return La lista ordenada y su afinidad total, o {@code null} si no estaba guardada.
+     */
+    synchronized Resultado obtener(String clave, ArrayList<Producto> productos) {
+        Entrada e = entradas.get(clave);
+        if (e == null) {
+            ++fallos;
+            return null;
+        }
+        ++aciertos;
+        HashMap<String, Producto> porNombre = new HashMap<>();
+        for (Producto p : productos) porNombre.put(p.getNombre(), p);
+        ArrayList<Producto> ordenada = new ArrayList<>(e.orden.length);
+        for (String nombre : e.orden) ordenada.add(porNombre.get(nombre));
+        return new Resultado(ordenada, e.afinidadTotal);
+    }
+
+    /**
+     * Guarda el resultado de una ordenación.
+     *
+     * <p><b>Pre:</b> {@code clave} se ha construido con {@link #clave} con la versión {@code version}.</p>
+     * <p><b>Post:</b> Se guarda el resultado, descartando las entradas de versiones de matriz anteriores y,
+     * si se superan los límites, las usadas hace más tiempo.</p>
+     *
+     * @param clave         Clave de la ordenación.
+     * @param version       Versión de la matriz con la que se ha ordenado.
+     * @param ordenada      Lista ordenada.
+     * @param afinidadTotal Afinidad total de la lista ordenada.
+     */
+    public synchronized void guardar(String clave, long version, ArrayList<Producto> ordenada, int afinidadTotal) {
+        if (version < this.version || ordenada.size() > MAX_PRODUCTOS) return;
+        if (version > this.version) {
+            invalidaciones += entradas.size();
+            entradas.clear();
+            productosGuardados = 0;
+            this.version = version;
+        }
+        String[] orden = new String[ordenada.size()];
+        for (int i = 0; i < orden.length; ++i) orden[i] = ordenada.get(i).getNombre();
+        Entrada anterior = entradas.put(clave, new Entrada(orden, afinidadTotal));
+        if (anterior != null) productosGuardados -= anterior.orden.length;
+        productosGuardados += orden.length;
+
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while ((entradas.size() > MAX_ENTRADAS || productosGuardados > MAX_PRODUCTOS) && it.hasNext()) {
+            Map.Entry<String, Entrada> masAntigua = it.next();
+            if (masAntigua.getKey().equals(clave)) continue;
+            productosGuardados -= masAntigua.getValue().orden.length;
+            it.remove();
+            ++expulsiones;
+        }
+    }
+
+    /**
+     * Vacía la caché sin reiniciar las estadísticas.
+     */
+    public synchronized void vaciar() {
+        invalidaciones += entradas.size();
+        entradas.clear();
+        productosGuardados = 0;
+    }
+
+    /**
+     * Obtiene el número de búsquedas que han encontrado un resultado guardado.
+     *
+     * @return El número de aciertos.
+     */
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    /**
+     * Obtiene el número de búsquedas que no han encontrado ningún resultado.
+     *
+     * @return El número de fallos.
+     */
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    /**
+     * Obtiene el número de entradas descartadas por superar los límites de tamaño.
+     *
+     * @return El número de expulsiones.
+     */
+    public synchronized long getExpulsiones() {
+        return expulsiones;
+    }
+
+    /**
+     * Obtiene el número de entradas descartadas por un cambio de versión de la matriz o al vaciar la caché.
+     *
+     * @return El número de invalidaciones.
+     */
+    public synchronized long getInvalidaciones() {
+        return invalidaciones;
+    }
+
+    /**
+     * Obtiene el número de distribuciones guardadas.
+     *
+     * @return El número de entradas.
+     */
+    public synchronized int getNumEntradas() {
+        return entradas.size();
+    }
+
+    /**
+     * Obtiene el total de productos de las distribuciones guardadas.
+     *
+     * @return El número de productos guardados.
+     */
+    public synchronized int getProductosGuardados() {
+        return productosGuardados;
+    }
+}
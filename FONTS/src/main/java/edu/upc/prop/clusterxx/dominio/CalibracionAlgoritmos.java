@@ -0,0 +1,156 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.SplittableRandom;
+
+/**
+ * Clase <b>CalibracionAlgoritmos</b>.
+ * <p>
+ * Se trata de una clase singleton que mide, en la máquina donde se ejecuta la aplicación, el coste de
+ * los algoritmos que usa {@link AlgoritmoAutomatico} para elegir estrategia:
+ * <ul>
+ *     <li>{@link AlgoritmoExacto}: nanosegundos por unidad de trabajo 2^n · n².</li>
+ *     <li>{@link AlgoritmoBusquedaLocal} (con su construcción inicial): nanosegundos por unidad
+ *     de trabajo n · log2(n).</li>
+ * </ul>
+ * Las medidas se hacen sobre tablas de afinidad aleatorias, se repiten para descartar el
+ * calentamiento de la máquina virtual y se guarda la mejor. Mientras no se ha calibrado se usan
+ * valores por defecto conservadores.
+ */
+public class CalibracionAlgoritmos {
+    /**
+     * Productos de la tabla con la que se mide el algoritmo exacto.
+     */
+    private static final int N_EXACTO = 12;
+    /**
+     * Productos de la tabla con la que se mide la búsqueda local.
+     */
+    private static final int N_BUSQUEDA = 150;
+    /**
+     * Repeticiones de cada medida.
+     */
+    private static final int REPETICIONES = 3;
+
+    /**
+     * Nanosegundos por unidad de trabajo del algoritmo exacto.
+     */
+    private volatile double nsExacto = 20;
+    /**
+     * Nanosegundos por unidad de trabajo de la búsqueda local.
+     */
+    private volatile double nsBusquedaLocal = 2000;
+    /**
+     * Indica si ya se ha calibrado.
+     */
+    private volatile boolean calibrada = false;
+
+    /**
+     * Instancia única de la calibración.
+     */
+    private static final CalibracionAlgoritmos instance = new CalibracionAlgoritmos();
+
+    /**
+     * Obtiene la instancia única de la clase {@code CalibracionAlgoritmos}.
+     *
+     * @return La instancia única de {@code CalibracionAlgoritmos}.
+     */
+    public static CalibracionAlgoritmos getInstance() {
+        return instance;
+    }
+
+    /**
+     * Lanza la calibración en un hilo en segundo plano, para no retrasar el arranque de la aplicación.
+     *
+     * <p><b>Post:</b> Si la calibración no se había hecho, se hará en un hilo <i>daemon</i>.</p>
+     */
+    public void calibrarEnSegundoPlano() {
+        if (calibrada) return;
+        Thread hilo = new Thread(this::calibrar, "calibracion-algoritmos");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Mide el coste de los algoritmos, si no se ha hecho ya.
+     *
+     * <p><b>Post:</b> Las estimaciones de tiempo pasan a usar las medidas de esta máquina.</p>
+     */
+    public synchronized void calibrar() {
+        if (calibrada) return;
+        SplittableRandom azar = new SplittableRandom(N_BUSQUEDA);
+
+        TablaAfinidad pequena = new TablaAfinidad(afinidadesAleatorias(N_EXACTO, azar));
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICIONES; ++i) {
+            long t = System.nanoTime();
+            AlgoritmoExacto.resolver(pequena);
+            mejor = Math.min(mejor, System.nanoTime() - t);
+        }
+        nsExacto = mejor / unidadesExacto(N_EXACTO);
+
+        TablaAfinidad grande = new TablaAfinidad(afinidadesAleatorias(N_BUSQUEDA, azar));
+        mejor = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICIONES; ++i) {
+            long t = System.nanoTime();
+            AlgoritmoBusquedaLocal.mejorar(grande, AlgoritmoAristas.construir(grande), Long.MAX_VALUE);
+            mejor = Math.min(mejor, System.nanoTime() - t);
+        }
+        nsBusquedaLocal = mejor / unidadesBusquedaLocal(N_BUSQUEDA);
+        calibrada = true;
+    }
+
+    /**
+     * Indica si ya se ha calibrado.
+     *
+     * @return {@code true} si las estimaciones usan medidas de esta máquina.
+     */
+    public boolean estaCalibrada() {
+        return calibrada;
+    }
+
+    /**
+     * Estima el tiempo del algoritmo exacto para {@code n} productos.
+     *
+     * @param n Número de productos.
+     * @return El tiempo estimado, en milisegundos.
+     */
+    public double estimarExactoMs(int n) {
+        return nsExacto * unidadesExacto(n) / 1e6;
+    }
+
+    /**
+     * Estima el tiempo de la búsqueda local (con su construcción inicial) para {@code n} productos.
+     *
+     * @param n Número de productos.
+     * @return El tiempo estimado, en milisegundos.
+     */
+    public double estimarBusquedaLocalMs(int n) {
+        return nsBusquedaLocal * unidadesBusquedaLocal(n) / 1e6;
+    }
+
+    /**
+     * Unidades de trabajo del algoritmo exacto: 2^n · n².
+     */
+    private static double unidadesExacto(int n) {
+        return Math.pow(2, n) * n * n;
+    }
+
+    /**
+     * Unidades de trabajo de la búsqueda local: n · log2(n).
+     */
+    private static double unidadesBusquedaLocal(int n) {
+        return n * Math.max(1, Math.log(n) / Math.log(2));
+    }
+
+    /**
+     * Genera una matriz simétrica de afinidades aleatorias entre 0 y 100.
+     */
+    private static int[][] afinidadesAleatorias(int n, SplittableRandom azar) {
+        int[][] m = new int[n][n];
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < i; ++j) {
+                m[i][j] = m[j][i] = azar.nextInt(101);
+            }
+        }
+        return m;
+    }
+}
@@ -0,0 +1,21 @@
+package edu.upc.prop.clusterxx.dominio;
+
+/**
+ * Interfaz <b>CargadorDistribucion</b>.
+ * <p>
+ * Permite que una {@link Estanteria} cargada sólo con su cabecera (identificador, número de estantes
+ * y afinidad) obtenga la distribución completa la primera vez que se necesita. La implementa la capa
+ * de persistencia, que es la que sabe dónde está guardada.
+ */
+@FunctionalInterface
+public interface CargadorDistribucion {
+
+    /**
+     * Carga la distribución guardada de una estantería.
+     *
+     * @param id Identificador de la estantería.
+     * @return La distribución de la estantería, o {@code null} si no tiene.
+     * @throws Exception Si no se puede leer la distribución guardada.
+     */
+    Distribucion cargar(String id) throws Exception;
+}
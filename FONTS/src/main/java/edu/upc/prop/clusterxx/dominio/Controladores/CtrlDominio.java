@@ -5,12 +5,30 @@ import edu.upc.prop.clusterxx.persistencia.controladores.CtrlPersistencia;
 
 import java.util.ArrayList;
 import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Clase <b>CtrlDominio</b> que actúa como controlador de la lógica de dominio.
  * Se encarga de recibir las solicitudes del <b>CtrlPresentacion</b>, implementar
  * las operaciones principales, y comunicarse con las clases de dominio y el
  * <b>CtrlPersistencia</b>.
+ * <p>
+ * Modelo de concurrencia: las listas de productos y estanterías se tratan como
+ * instantáneas <i>copy-on-write</i>. Las lecturas no bloquean y trabajan sobre la
+ * última instantánea publicada; las modificaciones se serializan con un único
+ * escritor ({@code escritura}) que crea una copia nueva y la publica al terminar.
+ * Las operaciones sobre la distribución de una estantería (crear, mover productos,
+ * cambiar estantes) toman además el cerrojo propio de esa estantería, de forma que
+ * una optimización larga sólo bloquea a otras operaciones sobre la misma estantería
+ * y nunca a la edición interactiva del resto del sistema.
+ * <p>
+ * Orden de adquisición de cerrojos: primero el de la estantería y después
+ * {@code escritura}, nunca al revés.
  */
 public class CtrlDominio {
     /**
@@ -18,17 +36,17 @@ public class CtrlDominio {
      */
     private final CtrlPersistencia persistencia;
     /**
-     * Lista de todas las estanterías del sistema.
+     * Lista de todas las estanterías del sistema (instantánea, no se modifica una vez publicada).
      */
-    private ArrayList<Estanteria> estanterias;
+    private volatile ArrayList<Estanteria> estanterias;
     /**
      * La estantería actual que se encuentra cargada en el sistema.
      */
-    private Estanteria estanteria_actual;
+    private volatile Estanteria estanteria_actual;
     /**
-     * Lista de todos los productos del sistema.
+     * Lista de todos los productos del sistema (instantánea, no se modifica una vez publicada).
      */
-    private ArrayList<Producto> productos;
+    private volatile ArrayList<Producto> productos;
     /**
      * Lista de todos los atributos (tipos y contextos) disponibles.
      */
@@ -51,6 +69,26 @@ public class CtrlDominio {
      * y así gestionar su persistencia (true para guardar, false para eliminar).
      */
     private final ArrayList<AbstractMap.SimpleEntry<Estanteria, Boolean>> EstanteriasModificadas;
+    /**
+     * Cerrojo del único escritor: protege la publicación de nuevas instantáneas de
+     * <b>productos</b> y <b>estanterias</b> y las listas de modificaciones pendientes.
+     */
+    private final ReentrantLock escritura = new ReentrantLock();
+    /**
+     * Cerrojos por estantería (identificada por su id) para serializar las operaciones
+     * sobre su distribución sin bloquear al resto del sistema.
+     */
+    private final ConcurrentHashMap<String, ReentrantLock> cerrojosEstanterias = new ConcurrentHashMap<>();
+    /**
+     * Propiedad del sistema con la brecha de optimalidad objetivo inicial de las ordenaciones.
+     */
+    public static final String PROPIEDAD_BRECHA = "ordenacion.brechaObjetivo";
+    /**
+     * Brecha de optimalidad objetivo con la que se crean las distribuciones: los algoritmos que lo
+     * admiten se detienen en cuanto la afinidad está a esa fracción o menos de la cota superior
+     * (0 si no hay parada anticipada).
+     */
+    private volatile double brechaObjetivo;
 
     /**
      * Instancia única de <b>CtrlDominio</b> (patrón singleton).
@@ -77,12 +115,15 @@ public class CtrlDominio {
      * Constructor de <b>CtrlDominio</b>.
      * Inicializa el controlador de persistencia, carga la lista de estanterías,
      * la estantería actual, la lista de productos y los atributos (tipos y contextos).
-     * También configura la matriz de afinidad en la clase <b>Matriz</b>.
+     * También configura la matriz de afinidad en la clase <b>Matriz</b> y lanza en segundo plano
+     * la calibración de los algoritmos que usa la estrategia automática.
      * 
      * @throws Exception si ocurre un error al obtener los datos de persistencia.
      */
     public CtrlDominio() throws Exception {
         this.persistencia = CtrlPersistencia.getInstance();
+        // Las distribuciones se cargan al acceder a ellas, enlazando sus productos con los del sistema
+        persistencia.setProductosCargados(() -> this.productos);
         this.estanterias = persistencia.getEstanterias();
         // Asumimos que getFirst() es un método de ArrayList en tu código real, 
         // pero en Java no existe. Quizá uses LinkedList o un método personalizado. 
@@ -97,6 +138,42 @@ public class CtrlDominio {
         EstanteriasModificadas = new ArrayList<>();
         Matriz mat = Matriz.getInstance();
         mat.setMatriz(matriz);
+        System.err.println(persistencia.getResumenEstadisticas());
+        this.brechaObjetivo = brechaInicial();
+        CalibracionAlgoritmos.getInstance().calibrarEnSegundoPlano();
+        try {
+            persistencia.vigilarProductos(this::aplicarCambiosExternos);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Lee la brecha objetivo inicial de la propiedad del sistema {@code ordenacion.brechaObjetivo}.
+     *
+     * @return La brecha indicada, o 0 si no se ha indicado o no es válida.
+     */
+    private static double brechaInicial() {
+        String valor = System.getProperty(PROPIEDAD_BRECHA);
+        if (valor == null) return 0;
+        try {
+            double brecha = Double.parseDouble(valor.trim());
+            if (brecha >= 0 && brecha < 1) return brecha;
+        } catch (NumberFormatException e) {
+            // Se avisa abajo
+        }
+        System.err.println("Valor no válido para " + PROPIEDAD_BRECHA + ": " + valor);
+        return 0;
+    }
+
+    /**
+     * Devuelve el cerrojo asociado a la estantería con el id indicado, creándolo si no existe.
+     *
+     * @param id Identificador de la estantería.
+     * @return Cerrojo de la estantería.
+     */
+    private ReentrantLock cerrojoEstanteria(String id) {
+        return cerrojosEstanterias.computeIfAbsent(id, k -> new ReentrantLock());
     }
 
     /**
@@ -170,15 +247,115 @@ public class CtrlDominio {
      * @throws Exception Si la posición es inválida o el producto ya está en esa posición.
      */
     public void MoverProd(String productoMovido, int posicion) throws Exception {
-        int size = this.estanteria_actual.getListaProductos().size();
-        if (posicion - 1 < 0 || posicion - 1 > size - 1) {
-            throw new Exception("La posición indicada no es correcta. Debe estar entre 1 y " + size);
-        } else {
-            if (estanteria_actual.getListaOrdenada().get(posicion - 1).getNombre().equals(productoMovido)) {
-                throw new Exception("El producto ya se encuentra en la posición " + posicion);
+        Estanteria estanteria = this.estanteria_actual;
+        ReentrantLock cerrojo = cerrojoEstanteria(estanteria.getId());
+        cerrojo.lock();
+        try {
+            int size = estanteria.getListaProductos().size();
+            if (posicion - 1 < 0 || posicion - 1 > size - 1) {
+                throw new Exception("La posición indicada no es correcta. Debe estar entre 1 y " + size);
+            } else {
+                if (estanteria.getListaOrdenada().get(posicion - 1).getNombre().equals(productoMovido)) {
+                    throw new Exception("El producto ya se encuentra en la posición " + posicion);
+                }
+                estanteria.moverProducto(productoMovido, posicion - 1);
+                marcarEstanteria(estanteria, true);
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Añade un producto a la distribución de la estantería actual sin volver a crearla: se inserta en
+     * la mejor posición del orden actual y se reoptimiza sólo a su alrededor.
+     * 
+     * Precondición: La estantería actual tiene una distribución y <b>nombre</b> es un producto existente
+     *               que no está en ella.
+     * Postcondición: El producto forma parte de la distribución y la estantería se marca para persistencia.
+     * <p>
+     * La reoptimización se calcula sólo con el cerrojo de la estantería, sin bloquear las modificaciones
+     * del catálogo. Después se toma un momento el cerrojo de escritura para comprobar que el producto no
+     * se ha eliminado ni modificado entretanto y publicar el resultado.
+     * 
+     * @param nombre Nombre del producto a añadir.
+     * @throws Exception Si no hay distribución, el producto no existe, ya está en la distribución o ha
+     *                   cambiado mientras se reoptimizaba.
+     */
+    public void anadirProductoDistribucion(String nombre) throws Exception {
+        Estanteria estanteria = this.estanteria_actual;
+        ReentrantLock cerrojo = cerrojoEstanteria(estanteria.getId());
+        cerrojo.lock();
+        try {
+            if (!estanteria.existeDistribucion()) {
+                throw new Exception("La estantería " + estanteria.getId() + " no tiene ninguna distribución.");
+            }
+            Producto p = this.obtenerProducto(nombre);
+            if (p == null) {
+                throw new Exception("No existe ningún producto con el nombre " + nombre + ".");
+            } else if (estanteria.getListaProductos().contains(p)) {
+                throw new Exception("El producto " + nombre + " ya está en la distribución.");
             }
-            this.estanteria_actual.moverProducto(productoMovido, posicion - 1);
-            EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria_actual, true));
+            int firma = p.getFirma();
+            Distribucion.Reoptimizacion r = estanteria.prepararAnadido(p);
+            escritura.lock();
+            try {
+                if (this.obtenerProducto(nombre) != p || p.getFirma() != firma) {
+                    throw new Exception("El producto " + nombre + " se ha modificado o eliminado mientras se "
+                            + "añadía a la distribución. Inténtalo de nuevo.");
+                }
+                estanteria.aplicarReoptimizacion(r);
+                EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria, true));
+            } finally {
+                escritura.unlock();
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Elimina un producto de la distribución de la estantería actual sin volver a crearla: se quita del
+     * orden actual y se reoptimiza sólo alrededor del hueco.
+     * 
+     * Precondición: La estantería actual tiene una distribución que contiene <b>nombre</b>.
+     * Postcondición: El producto deja de estar en la distribución y la estantería se marca para persistencia.
+     * <p>
+     * Igual que al añadir, la reoptimización se calcula sólo con el cerrojo de la estantería. Mientras
+     * tanto el producto sigue en la distribución, así que no se puede eliminar ni modificar; el resultado
+     * se publica con el cerrojo de escritura, de modo que las comprobaciones de pertenencia de otras
+     * operaciones ven el cambio entero o nada.
+     * 
+     * @param nombre Nombre del producto a eliminar.
+     * @throws Exception Si no hay distribución, el producto no está en ella o es el último que queda.
+     */
+    public void eliminarProductoDistribucion(String nombre) throws Exception {
+        Estanteria estanteria = this.estanteria_actual;
+        ReentrantLock cerrojo = cerrojoEstanteria(estanteria.getId());
+        cerrojo.lock();
+        try {
+            if (!estanteria.existeDistribucion()) {
+                throw new Exception("La estantería " + estanteria.getId() + " no tiene ninguna distribución.");
+            }
+            Producto p = null;
+            for (Producto producto : estanteria.getListaProductos()) {
+                if (producto.getNombre().equals(nombre)) p = producto;
+            }
+            if (p == null) {
+                throw new Exception("El producto " + nombre + " no está en la distribución.");
+            } else if (estanteria.getListaProductos().size() == 1) {
+                throw new Exception("No se puede eliminar el último producto de la distribución.");
+            }
+            Distribucion.Reoptimizacion r = estanteria.prepararEliminado(p);
+            escritura.lock();
+            try {
+                estanteria.aplicarReoptimizacion(r);
+                EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria, true));
+            } finally {
+                escritura.unlock();
+            }
+        } finally {
+            cerrojo.unlock();
         }
     }
 
@@ -197,8 +374,30 @@ public class CtrlDominio {
         } else if (filas > 10) {
             throw new Exception("El número de filas no puede ser mayor que 10.");
         } else {
-            this.estanteria_actual.setNumPrestatges(filas);
-            EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria_actual, true));
+            Estanteria estanteria = this.estanteria_actual;
+            ReentrantLock cerrojo = cerrojoEstanteria(estanteria.getId());
+            cerrojo.lock();
+            try {
+                estanteria.setNumPrestatges(filas);
+                marcarEstanteria(estanteria, true);
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    /**
+     * Registra una estantería en la lista de modificaciones pendientes de persistir.
+     *
+     * @param estanteria Estantería modificada.
+     * @param guardar    true si se ha de guardar, false si se ha de eliminar.
+     */
+    private void marcarEstanteria(Estanteria estanteria, boolean guardar) {
+        escritura.lock();
+        try {
+            EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria, guardar));
+        } finally {
+            escritura.unlock();
         }
     }
 
@@ -211,10 +410,15 @@ public class CtrlDominio {
      * @param id Identificador de la estantería a cargar.
      */
     public void cargarEstanteria(String id) {
-        for (Estanteria estanteria : this.estanterias) {
-            if (estanteria.getId().equals(id)) {
-                this.estanteria_actual = estanteria;
+        escritura.lock();
+        try {
+            for (Estanteria estanteria : this.estanterias) {
+                if (estanteria.getId().equals(id)) {
+                    this.estanteria_actual = estanteria;
+                }
             }
+        } finally {
+            escritura.unlock();
         }
     }
 
@@ -228,19 +432,26 @@ public class CtrlDominio {
      * @throws Exception Si ya existe una estantería con <b>id_new</b>.
      */
     public void crearEstanteria(String id_new) throws Exception {
-        boolean found = false;
-        for (Estanteria estanteria : this.estanterias) {
-            if (estanteria.getId().equals(id_new)) {
-                found = true;
-                break;
+        escritura.lock();
+        try {
+            boolean found = false;
+            for (Estanteria estanteria : this.estanterias) {
+                if (estanteria.getId().equals(id_new)) {
+                    found = true;
+                    break;
+                }
             }
-        }
-        if (found) {
-            throw new Exception("Error: ya hay una estantería con ese nombre.");
-        } else {
-            Estanteria estanteria_new = new Estanteria(id_new, 1);
-            this.estanterias.add(estanteria_new);
-            EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria_new, true));
+            if (found) {
+                throw new Exception("Error: ya hay una estantería con ese nombre.");
+            } else {
+                Estanteria estanteria_new = new Estanteria(id_new, 1);
+                ArrayList<Estanteria> copia = new ArrayList<>(this.estanterias);
+                copia.add(estanteria_new);
+                this.estanterias = copia;
+                EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria_new, true));
+            }
+        } finally {
+            escritura.unlock();
         }
     }
 
@@ -254,26 +465,33 @@ public class CtrlDominio {
      * @throws Exception Si la estantería no existe, si es la estantería actual o si solo queda una.
      */
     public void eliminarEstanteria(String id_new) throws Exception {
-        if (this.estanterias.size() > 1) {
-            if (!this.estanteria_actual.getId().equals(id_new)) {
-                Estanteria estEliminar = null;
-                for (Estanteria estanteria : this.estanterias) {
-                    if (estanteria.getId().equals(id_new)) {
-                        estEliminar = estanteria;
-                        break;
+        escritura.lock();
+        try {
+            if (this.estanterias.size() > 1) {
+                if (!this.estanteria_actual.getId().equals(id_new)) {
+                    Estanteria estEliminar = null;
+                    for (Estanteria estanteria : this.estanterias) {
+                        if (estanteria.getId().equals(id_new)) {
+                            estEliminar = estanteria;
+                            break;
+                        }
+                    }
+                    if (estEliminar != null) {
+                        ArrayList<Estanteria> copia = new ArrayList<>(this.estanterias);
+                        copia.remove(estEliminar);
+                        this.estanterias = copia;
+                        EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estEliminar, false));
+                    } else {
+                        throw new Exception("No existe ninguna estantería con id " + id_new);
                     }
-                }
-                if (estEliminar != null) {
-                    this.estanterias.remove(estEliminar);
-                    EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estEliminar, false));
                 } else {
-                    throw new Exception("No existe ninguna estantería con id " + id_new);
+                    throw new Exception("Error: no puedes eliminar la estantería actualmente cargada.");
                 }
             } else {
-                throw new Exception("Error: no puedes eliminar la estantería actualmente cargada.");
+                throw new Exception("Error: solo queda una estantería, no se puede eliminar.");
             }
-        } else {
-            throw new Exception("Error: solo queda una estantería, no se puede eliminar.");
+        } finally {
+            escritura.unlock();
         }
     }
 
@@ -283,6 +501,10 @@ public class CtrlDominio {
      * 
      * Precondición: <b>listaDistribucion</b> no está vacía, <b>algoritmo</b> es un identificador válido.
      * Postcondición: Se genera una distribución en la estantería actual con dichos productos.
+     * <p>
+     * La ordenación se ejecuta sobre una copia de la lista y sólo con el cerrojo de la estantería,
+     * por lo que puede lanzarse desde un hilo en segundo plano sin bloquear la edición del catálogo.
+     * Si durante la optimización se ha eliminado alguno de los productos, la distribución se descarta.
      * 
      * @param listaDistribucion Lista de productos seleccionados para la distribución.
      * @param algoritmo Identificador del algoritmo a usar (1, 2, 3, ...).
@@ -290,8 +512,28 @@ public class CtrlDominio {
      */
     public void crearDistribucion(ArrayList<Producto> listaDistribucion, int algoritmo) throws Exception {
         if (!listaDistribucion.isEmpty()) {
-            this.estanteria_actual.crearDistribucion(listaDistribucion, algoritmo);
-            EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria_actual, true));
+            Estanteria estanteria = this.estanteria_actual;
+            ReentrantLock cerrojo = cerrojoEstanteria(estanteria.getId());
+            cerrojo.lock();
+            try {
+                Distribucion nueva = estanteria.prepararDistribucion(new ArrayList<>(listaDistribucion), algoritmo,
+                        brechaObjetivo);
+                escritura.lock();
+                try {
+                    for (Producto p : nueva.getListaProductos()) {
+                        if (!this.productos.contains(p)) {
+                            throw new Exception("El producto " + p.getNombre()
+                                    + " se ha eliminado mientras se creaba la distribución.");
+                        }
+                    }
+                    estanteria.setDistribucion(nueva);
+                    EstanteriasModificadas.add(new AbstractMap.SimpleEntry<>(estanteria, true));
+                } finally {
+                    escritura.unlock();
+                }
+            } finally {
+                cerrojo.unlock();
+            }
         } else {
             throw new Exception("La lista de productos está vacía.");
         }
@@ -309,20 +551,89 @@ public class CtrlDominio {
      *                   o si la lista de atributos es vacía o excede 4.
      */
     public void crearProducto(String nombre, ArrayList<String> listaAtr) throws Exception {
-        if (this.buscarProducto(nombre)) {
-            throw new Exception("Ya existe un producto con el nombre " + nombre + ".");
-        } else if (listaAtr.isEmpty()) {
-            throw new Exception("El producto debe tener como mínimo un atributo.");
-        } else if (listaAtr.size() > 4) {
-            throw new Exception("El producto no puede tener más de 4 atributos.");
-        } else {
-            ArrayList<Atributo> atributosProducto = this.seleccionarAtributos(listaAtr);
-            Producto p = new Producto(nombre, atributosProducto);
-            this.productos.add(p);
-            ProductosModificados.add(new AbstractMap.SimpleEntry<>(p, true));
+        escritura.lock();
+        try {
+            if (this.buscarProducto(nombre)) {
+                throw new Exception("Ya existe un producto con el nombre " + nombre + ".");
+            } else if (listaAtr.isEmpty()) {
+                throw new Exception("El producto debe tener como mínimo un atributo.");
+            } else if (listaAtr.size() > 4) {
+                throw new Exception("El producto no puede tener más de 4 atributos.");
+            } else {
+                ArrayList<Atributo> atributosProducto = this.seleccionarAtributos(listaAtr);
+                Producto p = new Producto(nombre, atributosProducto);
+                ArrayList<Producto> copia = new ArrayList<>(this.productos);
+                copia.add(p);
+                this.productos = copia;
+                ProductosModificados.add(new AbstractMap.SimpleEntry<>(p, true));
+            }
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /**
+     * Importa los productos de un fichero JSON Lines (un producto por línea, con el formato de los
+     * ficheros de productos).
+     * <p>
+     * Es una única transacción: los productos se validan contra el catálogo y con las mismas reglas que
+     * {@link #crearProducto}, se reciben en lotes y sólo se publican, junto con sus ficheros, si todo el
+     * fichero es válido. Los productos importados ya quedan guardados, así que no se marcan para persistencia.
+     * 
+     * Precondición: <b>ruta</b> es un fichero legible.
+     * Postcondición: Si todos los productos son válidos, se añaden a la lista de productos y se guardan;
+     *                si no, no cambia nada.
+     * 
+     * @param ruta Ruta del fichero a importar.
+     * @return Número de productos importados.
+     * @throws Exception Si algún producto no es válido, ya existe, o no se puede leer o guardar el fichero.
+     */
+    public long importarProductos(String ruta) throws Exception {
+        escritura.lock();
+        try {
+            ArrayList<Producto> copia = new ArrayList<>(this.productos);
+            HashSet<String> existentes = new HashSet<>();
+            for (Producto p : copia) existentes.add(p.getNombre());
+            HashSet<String> importados = new HashSet<>();
+            long n = persistencia.importarProductos(ruta, lote -> {
+                for (Producto p : lote) {
+                    int numAtributos = p.getAtributosT().size() + p.getAtributosC().size();
+                    if (numAtributos == 0) {
+                        throw new Exception("El producto " + p.getNombre() + " debe tener como mínimo un atributo.");
+                    } else if (numAtributos > 4) {
+                        throw new Exception("El producto " + p.getNombre() + " no puede tener más de 4 atributos.");
+                    } else if (existentes.contains(p.getNombre()) || !importados.add(p.getNombre())) {
+                        throw new Exception("Ya existe un producto con el nombre " + p.getNombre() + ".");
+                    }
+                    copia.add(p);
+                }
+            });
+            // Cualquier cambio pendiente de un producto con el mismo nombre (un borrado, o el guardado de un
+            // producto anterior ya eliminado) sobrescribiría o borraría el fichero recién importado al guardar
+            ProductosModificados.removeIf(e -> importados.contains(e.getKey().getNombre()));
+            this.productos = copia;
+            return n;
+        } finally {
+            escritura.unlock();
         }
     }
 
+    /**
+     * Exporta todos los productos a un fichero JSON Lines (un producto por línea).
+     * <p>
+     * Se exporta la instantánea actual de la lista de productos, sin bloquear al resto del sistema.
+     * 
+     * Precondición: -
+     * Postcondición: El fichero <b>ruta</b> contiene todos los productos.
+     * 
+     * @param ruta Ruta del fichero de destino.
+     * @return Número de productos exportados.
+     * @throws Exception Si no se puede escribir el fichero.
+     */
+    public long exportarProductos(String ruta) throws Exception {
+        return persistencia.exportarProductos(this.productos, ruta);
+    }
+
     /**
      * Elimina el producto con el nombre indicado.
      * 
@@ -333,22 +644,134 @@ public class CtrlDominio {
      * @throws Exception Si solo queda un producto o si el producto está en una distribución.
      */
     public void eliminarProd(String nombre) throws Exception {
-        if (this.productos.size() > 1) {
-            // Comprobamos si el producto está en alguna distribución
-            for (Estanteria estanteria : this.estanterias) {
-                if (estanteria.existeDistribucion()) {
-                    if (estanteria.getListaProductos().contains(this.obtenerProducto(nombre))) {
+        escritura.lock();
+        try {
+            if (this.productos.size() > 1) {
+                // Comprobamos si el producto está en alguna distribución
+                for (Estanteria estanteria : this.estanterias) {
+                    if (estanteria.contieneProducto(nombre)) {
                         throw new Exception("No se puede eliminar el producto " + nombre
                                 + " mientras esté en la distribución de la estantería " + estanteria.getId() + ".");
                     }
                 }
+                Producto p = this.obtenerProducto(nombre);
+                ArrayList<Producto> copia = new ArrayList<>(this.productos);
+                copia.remove(p);
+                this.productos = copia;
+                ProductosModificados.add(new AbstractMap.SimpleEntry<>(p, false));
+            } else {
+                throw new Exception("Solo queda un producto en el sistema, no se puede eliminar.");
+            }
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /**
+     * Aplica al catálogo los cambios que otras herramientas han hecho en la carpeta de productos.
+     * <p>
+     * Sólo se reciben los productos cuyos ficheros han cambiado. Un producto que coincide con el de memoria
+     * (por ejemplo, porque lo acaba de guardar la propia aplicación) no cambia, y los productos con cambios
+     * locales pendientes de guardar tampoco: el cambio local tiene prioridad. Igual que desde la interfaz,
+     * un producto que está en una distribución no se modifica ni se elimina, y un producto nuevo o modificado
+     * debe tener entre 1 y 4 atributos; si no, se avisa y se ignora. Los tipos y contextos ya llegan
+     * validados contra el catálogo (ver {@code VigilanteProductos}).
+     * <p>
+     * Las cachés de afinidades y de distribuciones se indexan por la firma de atributos de los productos,
+     * así que al cambiar los atributos de un producto dejan de usarse sus entradas antiguas sin vaciarlas.
+     * 
+     * Precondición: -
+     * Postcondición: La lista de productos refleja los ficheros cambiados.
+     * 
+     * @param cambios    Productos leídos por nombre; null si su fichero se ha borrado.
+     * @param existentes Nombres de todos los ficheros de productos si se ha releído la carpeta entera, o null.
+     */
+    private void aplicarCambiosExternos(Map<String, Producto> cambios, Set<String> existentes) {
+        escritura.lock();
+        try {
+            HashSet<String> pendientes = new HashSet<>();
+            for (AbstractMap.SimpleEntry<Producto, Boolean> entry : ProductosModificados) {
+                pendientes.add(entry.getKey().getNombre());
+            }
+            HashMap<String, Producto> actuales = new HashMap<>();
+            for (Producto p : this.productos) actuales.put(p.getNombre(), p);
+            HashMap<String, Producto> efectivos = new HashMap<>(cambios);
+            if (existentes != null) {
+                for (String nombre : actuales.keySet()) {
+                    if (!existentes.contains(nombre)) efectivos.put(nombre, null);
+                }
+            }
+
+            HashSet<Producto> eliminados = new HashSet<>();
+            ArrayList<Producto> anadidos = new ArrayList<>();
+            int modificados = 0;
+            for (Map.Entry<String, Producto> e : efectivos.entrySet()) {
+                String nombre = e.getKey();
+                Producto leido = e.getValue();
+                Producto actual = actuales.get(nombre);
+                if (pendientes.contains(nombre)) continue;
+                if (leido == null) {
+                    if (actual == null || enDistribucion(actual)) continue;
+                    eliminados.add(actual);
+                } else if (!numAtributosValido(leido)) {
+                    continue;
+                } else if (actual == null) {
+                    anadidos.add(leido);
+                } else if (actual.getFirma() != leido.getFirma() && !enDistribucion(actual)) {
+                    ArrayList<Atributo> atributos = new ArrayList<>(leido.getAtributosT());
+                    atributos.addAll(leido.getAtributosC());
+                    actual.changeAtr(atributos);
+                    ++modificados;
+                }
+            }
+            if (!eliminados.isEmpty() || !anadidos.isEmpty()) {
+                ArrayList<Producto> copia = new ArrayList<>(this.productos);
+                copia.removeIf(eliminados::contains);
+                copia.addAll(anadidos);
+                this.productos = copia;
+            }
+            if (!eliminados.isEmpty() || !anadidos.isEmpty() || modificados > 0) {
+                System.err.println("Productos actualizados desde la carpeta: " + anadidos.size() + " añadidos, "
+                        + modificados + " modificados, " + eliminados.size() + " eliminados.");
+            }
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /**
+     * Indica si un producto leído de la carpeta tiene entre 1 y 4 atributos, como se exige desde la
+     * interfaz, avisando de que se ignora si no es así.
+     *
+     * @param leido Producto leído.
+     * @return true si el número de atributos es válido.
+     */
+    private boolean numAtributosValido(Producto leido) {
+        int numAtributos = leido.getAtributosT().size() + leido.getAtributosC().size();
+        if (numAtributos == 0 || numAtributos > 4) {
+            System.err.println("Se ignora el cambio externo del producto " + leido.getNombre()
+                    + ": debe tener entre 1 y 4 atributos.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Indica si un producto está en la distribución de alguna estantería, avisando de que no se puede
+     * aplicar un cambio externo sobre él.
+     *
+     * @param producto Producto a comprobar.
+     * @return true si el producto está en alguna distribución.
+     */
+    private boolean enDistribucion(Producto producto) {
+        for (Estanteria estanteria : this.estanterias) {
+            if (estanteria.contieneProducto(producto.getNombre())) {
+                System.err.println("Se ignora el cambio externo del producto " + producto.getNombre()
+                        + " mientras esté en la distribución de la estantería " + estanteria.getId() + ".");
+                return true;
             }
-            Producto p = this.obtenerProducto(nombre);
-            this.productos.remove(p);
-            ProductosModificados.add(new AbstractMap.SimpleEntry<>(p, false));
-        } else {
-            throw new Exception("Solo queda un producto en el sistema, no se puede eliminar.");
         }
+        return false;
     }
 
     /**
@@ -361,12 +784,17 @@ public class CtrlDominio {
      * @throws Exception Si ocurre un error en la persistencia.
      */
     public void persistenciaProductos() throws Exception {
-        for (AbstractMap.SimpleEntry<Producto, Boolean> entry : ProductosModificados) {
-            if (entry.getValue()) {
-                persistencia.guardarProducto(entry.getKey());
-            } else {
-                persistencia.eliminarProducto(entry.getKey().getNombre());
+        escritura.lock();
+        try {
+            for (AbstractMap.SimpleEntry<Producto, Boolean> entry : ProductosModificados) {
+                if (entry.getValue()) {
+                    persistencia.guardarProducto(entry.getKey());
+                } else {
+                    persistencia.eliminarProducto(entry.getKey().getNombre());
+                }
             }
+        } finally {
+            escritura.unlock();
         }
     }
 
@@ -380,12 +808,17 @@ public class CtrlDominio {
      * @throws Exception Si ocurre un error en la persistencia.
      */
     public void persistenciaEstanterias() throws Exception {
-        for (AbstractMap.SimpleEntry<Estanteria, Boolean> entry : EstanteriasModificadas) {
-            if (entry.getValue()) {
-                persistencia.guardarEstanteria(entry.getKey());
-            } else {
-                persistencia.eliminarEstanteria(entry.getKey().getId());
+        escritura.lock();
+        try {
+            for (AbstractMap.SimpleEntry<Estanteria, Boolean> entry : EstanteriasModificadas) {
+                if (entry.getValue()) {
+                    persistencia.guardarEstanteria(entry.getKey());
+                } else {
+                    persistencia.eliminarEstanteria(entry.getKey().getId());
+                }
             }
+        } finally {
+            escritura.unlock();
         }
     }
 
@@ -403,25 +836,28 @@ public class CtrlDominio {
      *                   o si está en una distribución.
      */
     public void modificarNombreProducto(String prodACambiar, String newName) throws Exception {
-        Producto producto = this.obtenerProducto(prodACambiar);
-        if (this.buscarProducto(newName) && !newName.equals(prodACambiar)) {
-            throw new Exception("Ya existe un producto con el nombre " + newName + ".");
-        } else {
-            // Verificamos si el producto está en alguna distribución
-            for (Estanteria estanteria : this.estanterias) {
-                if (estanteria.existeDistribucion()) {
-                    if (estanteria.getListaProductos().contains(producto)) {
+        escritura.lock();
+        try {
+            Producto producto = this.obtenerProducto(prodACambiar);
+            if (this.buscarProducto(newName) && !newName.equals(prodACambiar)) {
+                throw new Exception("Ya existe un producto con el nombre " + newName + ".");
+            } else {
+                // Verificamos si el producto está en alguna distribución
+                for (Estanteria estanteria : this.estanterias) {
+                    if (estanteria.contieneProducto(prodACambiar)) {
                         throw new Exception("No se puede modificar el producto " + prodACambiar
                                 + " mientras esté en la distribución de la estantería " + estanteria.getId() + ".");
                     }
                 }
+                producto.cambiarNombre(newName);
+                // Añadimos el producto con el nuevo nombre a la lista de modificaciones
+                ProductosModificados.add(new AbstractMap.SimpleEntry<>(obtenerProducto(newName), true));
+                // Creamos un objeto temporal para representar la eliminación del producto antiguo
+                Producto p = new Producto(prodACambiar, new ArrayList<>());
+                ProductosModificados.add(new AbstractMap.SimpleEntry<>(p, false));
             }
-            producto.cambiarNombre(newName);
-            // Añadimos el producto con el nuevo nombre a la lista de modificaciones
-            ProductosModificados.add(new AbstractMap.SimpleEntry<>(obtenerProducto(newName), true));
-            // Creamos un objeto temporal para representar la eliminación del producto antiguo
-            Producto p = new Producto(prodACambiar, new ArrayList<>());
-            ProductosModificados.add(new AbstractMap.SimpleEntry<>(p, false));
+        } finally {
+            escritura.unlock();
         }
     }
 
@@ -442,19 +878,22 @@ public class CtrlDominio {
         } else if (listaAtr.size() > 4) {
             throw new Exception("El producto no puede tener más de 4 atributos.");
         }
-        Producto producto = this.obtenerProducto(prodACambiar);
-        ArrayList<Atributo> nuevosAtributos = this.seleccionarAtributos(listaAtr);
+        escritura.lock();
+        try {
+            Producto producto = this.obtenerProducto(prodACambiar);
+            ArrayList<Atributo> nuevosAtributos = this.seleccionarAtributos(listaAtr);
 
-        // Verificar si el producto está en alguna distribución
-        for (Estanteria estanteria : this.estanterias) {
-            if (estanteria.existeDistribucion()) {
-                if (estanteria.getListaProductos().contains(producto)) {
+            // Verificar si el producto está en alguna distribución
+            for (Estanteria estanteria : this.estanterias) {
+                if (estanteria.contieneProducto(prodACambiar)) {
                     throw new Exception("No se puede modificar el producto " + prodACambiar
                             + " mientras esté en la distribución de la estantería " + estanteria.getId() + ".");
                 }
             }
+            producto.changeAtr(nuevosAtributos);
+        } finally {
+            escritura.unlock();
         }
-        producto.changeAtr(nuevosAtributos);
     }
 
     /**
@@ -471,11 +910,14 @@ public class CtrlDominio {
 
     /**
      * Retorna la lista de todos los productos del sistema.
+     * <p>
+     * Se devuelve una copia de la instantánea actual, de modo que el llamante puede
+     * recorrerla mientras otro hilo modifica el catálogo.
      * 
      * @return Lista de <b>Producto</b>.
      */
     public ArrayList<Producto> getProductos() {
-        return this.productos;
+        return new ArrayList<>(this.productos);
     }
 
     /**
@@ -500,6 +942,71 @@ public class CtrlDominio {
         return this.estanteria_actual.getAfinidadTotal();
     }
 
+    /**
+     * Cambia la brecha de optimalidad objetivo de las siguientes distribuciones que se creen.
+     * 
+     * Precondición: -
+     * Postcondición: Las siguientes llamadas a {@link #crearDistribucion} ordenan con la brecha indicada;
+     *                0 desactiva la parada anticipada.
+     * 
+     * @param brecha Brecha objetivo, como fracción de la cota superior.
+     * @throws Exception Si <b>brecha</b> no está entre 0 (incluido) y 1 (excluido).
+     */
+    public void setBrechaObjetivo(double brecha) throws Exception {
+        if (!(brecha >= 0 && brecha < 1)) {
+            throw new Exception("La brecha objetivo debe estar entre 0 y 1.");
+        }
+        this.brechaObjetivo = brecha;
+    }
+
+    /**
+     * Devuelve la brecha de optimalidad objetivo con la que se crean las distribuciones.
+     * 
+     * @return Brecha objetivo, como fracción de la cota superior (0 si no hay parada anticipada).
+     */
+    public double getBrechaObjetivo() {
+        return this.brechaObjetivo;
+    }
+
+    /**
+     * Devuelve una cota superior de la afinidad total que puede alcanzar la distribución de la
+     * estantería actual, para conocer a qué distancia del óptimo está.
+     * 
+     * @return Valor numérico de la cota superior.
+     */
+    public int getCotaSuperior() {
+        return this.estanteria_actual.getCotaSuperior();
+    }
+
+    /**
+     * Devuelve el volcado JSON de las métricas de las ordenaciones (tiempos, evaluaciones de afinidad,
+     * movimientos, reinicios y evolución de la mejor afinidad).
+     * 
+     * @return JSON con las métricas registradas (ver {@link Metricas}).
+     */
+    public String getMetricasJson() {
+        return Metricas.getInstance().aJson();
+    }
+
+    /**
+     * Escribe el volcado JSON de las métricas en un fichero.
+     * 
+     * @param ruta Ruta del fichero.
+     * @throws Exception Si no se puede escribir el fichero.
+     */
+    public void volcarMetricas(String ruta) throws Exception {
+        Metricas.getInstance().volcar(ruta);
+    }
+
+    /**
+     * Obtiene el resumen de las operaciones de lectura y escritura de la persistencia.
+     *
+     * @return Resumen con el número, el tiempo y los bytes de cada tipo de operación.
+     */
+    public String getResumenPersistencia() {
+        return persistencia.getResumenEstadisticas();
+    }
+
     /**
      * Devuelve el número de estantes de la estantería actual.
      * 
@@ -548,10 +1055,10 @@ public class CtrlDominio {
     /**
      * Obtiene la lista ordenada de productos en la estantería actual.
      * 
-     * @return Lista de <b>Producto</b> que representa la distribución ordenada.
+     * @return Copia de la lista de <b>Producto</b> que representa la distribución ordenada.
      */
     public ArrayList<Producto> getListaOrdenada() {
-        return this.estanteria_actual.getListaOrdenada();
+        return new ArrayList<>(this.estanteria_actual.getListaOrdenada());
     }
 
     /**
@@ -580,9 +1087,10 @@ public class CtrlDominio {
 
     /**
      * Resetea el sistema a su estado inicial.
-     * <p>Elimina los JSON de la carpeta productos y estanterías, y carga los de las
-     * carpetas productosIniciales y estanteriasIniciales. También borra los registros
-     * de modificaciones para persistencia.
+     * <p>Sustituye las carpetas productos y estanterías por una copia de las carpetas
+     * productosIniciales y estanteriasIniciales y las vuelve a cargar como al arrancar
+     * (las distribuciones, al acceder a ellas). También borra los registros de
+     * modificaciones para persistencia.
      * 
      * Precondición: -
      * Postcondición: La lista de productos, estanterías y la estantería actual 
@@ -591,12 +1099,17 @@ public class CtrlDominio {
      * @throws Exception Si ocurre algún error durante el proceso de reseteo.
      */
     public void resetear() throws Exception {
-        this.persistencia.reset();
-        this.productos = persistencia.getProductosIniciales();
-        this.estanterias = persistencia.getEstanteriasIniciales();
-        // Ajustar si usas LinkedList u otro método para getFirst().
-        this.estanteria_actual = estanterias.get(0);
-        ProductosModificados.clear();
-        EstanteriasModificadas.clear();
+        escritura.lock();
+        try {
+            this.persistencia.reset();
+            this.productos = persistencia.getProductos();
+            this.estanterias = persistencia.getEstanterias();
+            // Ajustar si usas LinkedList u otro método para getFirst().
+            this.estanteria_actual = estanterias.get(0);
+            ProductosModificados.clear();
+            EstanteriasModificadas.clear();
+        } finally {
+            escritura.unlock();
+        }
     }
 }
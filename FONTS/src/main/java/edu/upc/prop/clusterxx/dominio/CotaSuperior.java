@@ -0,0 +1,206 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.Arrays;
+
+/**
+ * Clase <b>CotaSuperior</b>.
+ * <p>
+ * Calcula cotas superiores de la afinidad total que puede alcanzar cualquier orden de un conjunto de
+ * productos, para saber a qué distancia del óptimo está el resultado de un algoritmo heurístico
+ * (la <i>brecha</i>) y poder detener la búsqueda cuando ya es suficientemente pequeña.
+ * <ul>
+ *     <li><i>Cota por grado</i>: en el ciclo cada producto tiene dos vecinos, así que la afinidad
+ *     total no supera la mitad de la suma, para cada producto, de sus dos mayores afinidades.
+ *     Cuesta O(n·k) con la tabla por clases.</li>
+ *     <li><i>Cota del 1-árbol con relajación lagrangiana</i> (Held-Karp): un ciclo es un 1-árbol en el
+ *     que todos los productos tienen grado 2, así que el 1-árbol de máxima afinidad es una cota. Las
+ *     penalizaciones por producto se ajustan por subgradiente para acercar los grados a 2 y bajar la
+ *     cota. Cada iteración es un árbol de expansión de Prim en O(n²), por lo que sólo se usa hasta
+ *     {@code MAX_PRODUCTOS_LAGRANGIANA} productos.</li>
+ * </ul>
+ * Se asume que las afinidades son simétricas y no negativas, como las de la matriz del sistema.
+ */
+public final class CotaSuperior {
+    /**
+     * Número máximo de productos para los que se calcula la cota lagrangiana.
+     */
+    public static final int MAX_PRODUCTOS_LAGRANGIANA = 1000;
+
+    /**
+     * Iteraciones del subgradiente.
+     */
+    private static final int ITERACIONES = 40;
+
+    /**
+     * Clase de utilidades: no se instancia.
+     */
+    private CotaSuperior() {
+    }
+
+    /**
+     * Calcula una cota superior de la afinidad total del ciclo, con el mismo criterio que {@link Distribucion}.
+     *
+     * <p><b>Pre:</b> Las afinidades de {@code tabla} son simétricas y no negativas.</p>
+     * <p><b>Post:</b> Ningún orden de los productos de la tabla tiene una afinidad circular mayor que el valor devuelto.</p>
+     *
+     * @param tabla    Tabla de afinidades de los productos.
+     * @param inferior Afinidad de una solución conocida (o 0); sólo se usa para ajustar el paso del subgradiente.
+     * @return La cota superior.
+     */
+    public static int ciclo(TablaAfinidad tabla, int inferior) {
+        int n = tabla.size();
+        if (n <= 1) return 0;
+        if (n <= 3) {
+            int[] orden = new int[n];
+            for (int i = 0; i < n; ++i) orden[i] = i;
+            return tabla.afinidadCircular(orden);
+        }
+        int cota = porGrado(tabla, 2);
+        if (n <= MAX_PRODUCTOS_LAGRANGIANA) {
+            cota = Math.min(cota, lagrangiana(tabla, inferior));
+        }
+        return cota;
+    }
+
+    /**
+     * Calcula una cota superior de la afinidad de la disposición por estantes ({@link DisposicionEstantes}).
+     * <p>
+     * Sin afinidad vertical cada fila es un camino, así que la cota del ciclo también sirve. Con afinidad
+     * vertical las filas y las columnas son dos conjuntos de caminos, cada uno acotado por la cota del
+     * ciclo, y además cada producto tiene como mucho cuatro vecinos.
+     *
+     * @param tabla    Tabla de afinidades de los productos.
+     * @param vertical Si se cuenta la afinidad vertical entre filas contiguas.
+     * @param inferior Afinidad de una solución conocida (o 0).
+     * @return La cota superior.
+     */
+    public static int estantes(TablaAfinidad tabla, boolean vertical, int inferior) {
+        int ciclo = ciclo(tabla, 0);
+        if (!vertical) return ciclo;
+        return (int) Math.min(2L * ciclo, porGrado(tabla, 4));
+    }
+
+    /**
+     * Calcula la afinidad a partir de la cual una solución está dentro de la brecha objetivo.
+     *
+     * <p><b>Pre:</b> Las afinidades de {@code tabla} son simétricas y no negativas.</p>
+     * <p><b>Post:</b> Si {@code brecha <= 0} no se calcula ninguna cota.</p>
+     *
+     * @param tabla    Tabla de afinidades de los productos.
+     * @param brecha   Brecha objetivo, entre 0 y 1.
+     * @param inferior Afinidad de una solución conocida (o 0).
+     * @return La afinidad objetivo, o {@link Integer#MAX_VALUE} si la parada anticipada está desactivada.
+     */
+    public static int objetivo(TablaAfinidad tabla, double brecha, int inferior) {
+        if (brecha <= 0) return Integer.MAX_VALUE;
+        return (int) Math.ceil(ciclo(tabla, inferior) * (1 - Math.min(brecha, 1)));
+    }
+
+    /**
+     * Cota por grado: la mitad de la suma, para cada producto, de sus {@code grado} mayores afinidades.
+     *
+     * @param tabla Tabla de afinidades de los productos.
+     * @param grado Número máximo de vecinos de cada producto.
+     * @return La cota superior.
+     */
+    static int porGrado(TablaAfinidad tabla, int grado) {
+        int n = tabla.size();
+        int[] vecinos = tabla.vecinos(grado);
+        int m = vecinos.length / n;
+        long suma = 0;
+        for (int i = 0; i < n; ++i) {
+            for (int c = 0; c < m; ++c) {
+                suma += Math.max(0, tabla.get(i, vecinos[i * m + c]));
+            }
+        }
+        return (int) (suma / 2);
+    }
+
+    /**
+     * Cota del 1-árbol de máxima afinidad con penalizaciones lagrangianas ajustadas por subgradiente.
+     *
+     * @param tabla    Tabla de afinidades de los productos.
+     * @param inferior Afinidad de una solución conocida.
+     * @return La menor cota obtenida.
+     */
+    private static int lagrangiana(TablaAfinidad tabla, int inferior) {
+        int n = tabla.size();
+        double[] pi = new double[n];
+        int[] grado = new int[n];
+        double[] clave = new double[n];
+        int[] padre = new int[n];
+        boolean[] enArbol = new boolean[n];
+
+        double mejor = Double.POSITIVE_INFINITY;
+        double lambda = 2.0;
+        int sinMejora = 0;
+        for (int it = 0; it < ITERACIONES; ++it) {
+            // Árbol de expansión máximo (Prim) sobre los productos 1..n-1 con pesos penalizados
+            Arrays.fill(grado, 0);
+            Arrays.fill(enArbol, false);
+            Arrays.fill(clave, Double.NEGATIVE_INFINITY);
+            double total = 0;
+            clave[1] = 0;
+            padre[1] = -1;
+            for (int paso = 1; paso < n; ++paso) {
+                int u = -1;
+                for (int v = 1; v < n; ++v) {
+                    if (!enArbol[v] && (u < 0 || clave[v] > clave[u])) u = v;
+                }
+                enArbol[u] = true;
+                if (padre[u] >= 0) {
+                    total += clave[u];
+                    ++grado[u];
+                    ++grado[padre[u]];
+                }
+                for (int v = 1; v < n; ++v) {
+                    if (!enArbol[v]) {
+                        double w = tabla.get(u, v) + pi[u] + pi[v];
+                        if (w > clave[v]) {
+                            clave[v] = w;
+                            padre[v] = u;
+                        }
+                    }
+                }
+            }
+            // Las dos aristas de mayor peso penalizado del producto 0
+            int a = -1, b = -1;
+            double wa = Double.NEGATIVE_INFINITY, wb = Double.NEGATIVE_INFINITY;
+            for (int v = 1; v < n; ++v) {
+                double w = tabla.get(0, v) + pi[0] + pi[v];
+                if (w > wa) {
+                    b = a;
+                    wb = wa;
+                    a = v;
+                    wa = w;
+                } else if (w > wb) {
+                    b = v;
+                    wb = w;
+                }
+            }
+            total += wa + wb;
+            grado[0] = 2;
+            ++grado[a];
+            ++grado[b];
+
+            double sumaPi = 0;
+            for (double p : pi) sumaPi += p;
+            double cota = total - 2 * sumaPi;
+            if (cota < mejor - 1e-9) {
+                mejor = cota;
+                sinMejora = 0;
+            } else if (++sinMejora >= 5) {
+                lambda /= 2;
+                sinMejora = 0;
+            }
+
+            // Subgradiente: grado - 2 en cada producto
+            long norma = 0;
+            for (int v = 0; v < n; ++v) norma += (long) (grado[v] - 2) * (grado[v] - 2);
+            if (norma == 0 || mejor < inferior + 1) break;
+            double paso = lambda * Math.max(1.0, cota - inferior) / norma;
+            for (int v = 0; v < n; ++v) pi[v] -= paso * (grado[v] - 2);
+        }
+        return (int) Math.floor(mejor + 1e-9);
+    }
+}
@@ -0,0 +1,162 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.Arrays;
+
+/**
+ * Clase <b>DisposicionEstantes</b>.
+ * <p>
+ * Describe cómo se reparten n productos en las filas (estantes) de una estantería, con el mismo
+ * criterio que usa la vista principal para mostrar la distribución: los productos se colocan por
+ * filas de izquierda a derecha, cada fila tiene n / filas productos y las primeras n % filas
+ * filas tienen uno más.
+ * <p>
+ * Cada posición es adyacente a sus vecinas de la misma fila y, opcionalmente, a las posiciones de la
+ * misma columna en las filas de arriba y de abajo. La afinidad de una disposición es la suma de las
+ * afinidades entre productos en posiciones adyacentes; a diferencia del ciclo de
+ * {@link Distribucion}, no se cuenta la afinidad entre el final de una fila y el principio de la siguiente.
+ */
+public final class DisposicionEstantes {
+    /**
+     * Número de posiciones (productos).
+     */
+    private final int n;
+    /**
+     * Número de filas.
+     */
+    private final int filas;
+    /**
+     * Indica si se cuenta la afinidad vertical entre filas contiguas.
+     */
+    private final boolean vertical;
+    /**
+     * Posición inicial de cada fila; {@code inicio[filas] == n}.
+     */
+    private final int[] inicio;
+    /**
+     * Posiciones adyacentes a cada posición (izquierda, derecha, arriba, abajo), -1 si no existe.
+     */
+    private final int[] adyacentes;
+
+    /**
+     * Crea la disposición de {@code n} productos en {@code filas} filas.
+     *
+     * <p><b>Pre:</b> {@code n >= 0} y {@code filas >= 1}.</p>
+     *
+     * @param n        Número de productos.
+     * @param filas    Número de filas de la estantería.
+     * @param vertical Si es {@code true}, también son adyacentes las posiciones de la misma columna
+     *                 en filas contiguas.
+     */
+    public DisposicionEstantes(int n, int filas, boolean vertical) {
+        this.n = n;
+        this.filas = filas;
+        this.vertical = vertical;
+        this.inicio = new int[filas + 1];
+        int div = n / filas;
+        int resto = n % filas;
+        for (int f = 0; f < filas; ++f) {
+            inicio[f + 1] = inicio[f] + div + (f < resto ? 1 : 0);
+        }
+
+        this.adyacentes = new int[4 * n];
+        Arrays.fill(adyacentes, -1);
+        for (int f = 0; f < filas; ++f) {
+            for (int p = inicio[f]; p < inicio[f + 1]; ++p) {
+                if (p > inicio[f]) adyacentes[4 * p] = p - 1;
+                if (p + 1 < inicio[f + 1]) adyacentes[4 * p + 1] = p + 1;
+                if (vertical) {
+                    int columna = p - inicio[f];
+                    if (f > 0 && columna < inicio[f] - inicio[f - 1]) adyacentes[4 * p + 2] = inicio[f - 1] + columna;
+                    if (f + 1 < filas && columna < inicio[f + 2] - inicio[f + 1]) {
+                        adyacentes[4 * p + 3] = inicio[f + 1] + columna;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene la {@code k}-ésima posición adyacente a {@code p}.
+     *
+     * <p><b>Pre:</b> {@code 0 <= p < getNumPosiciones()} y {@code 0 <= k < 4}.</p>
+     *
+     * @param p Posición.
+     * @param k Índice de la adyacencia (0: izquierda, 1: derecha, 2: arriba, 3: abajo).
+     * @return La posición adyacente, o -1 si no existe.
+     */
+    public int adyacente(int p, int k) {
+        return adyacentes[4 * p + k];
+    }
+
+    /**
+     * Calcula la afinidad de un orden de productos colocado según esta disposición.
+     *
+     * <p><b>Pre:</b> {@code orden} tiene {@code getNumPosiciones()} índices válidos de {@code tabla}.</p>
+     *
+     * @param tabla Tabla de afinidades de los productos.
+     * @param orden Producto de cada posición.
+     * @return La suma de las afinidades entre productos en posiciones adyacentes.
+     */
+    public int afinidad(TablaAfinidad tabla, int[] orden) {
+        int total = 0;
+        for (int p = 0; p < n; ++p) {
+            // Cada adyacencia se cuenta una vez: hacia la derecha y hacia abajo
+            int derecha = adyacentes[4 * p + 1];
+            int abajo = adyacentes[4 * p + 3];
+            if (derecha >= 0) total += tabla.get(orden[p], orden[derecha]);
+            if (abajo >= 0) total += tabla.get(orden[p], orden[abajo]);
+        }
+        return total;
+    }
+
+    /**
+     * Diferencia de afinidad al intercambiar los productos de las posiciones {@code p} y {@code q}.
+     *
+     * <p><b>Pre:</b> {@code p != q}; la afinidad es simétrica.</p>
+     *
+     * @param tabla Tabla de afinidades de los productos.
+     * @param orden Producto de cada posición.
+     * @param p     Primera posición.
+     * @param q     Segunda posición.
+     * @return La afinidad después del intercambio menos la afinidad antes.
+     */
+    public int deltaIntercambio(TablaAfinidad tabla, int[] orden, int p, int q) {
+        int a = orden[p];
+        int b = orden[q];
+        int delta = 0;
+        for (int k = 0; k < 4; ++k) {
+            int r = adyacentes[4 * p + k];
+            if (r >= 0 && r != q) delta += tabla.get(b, orden[r]) - tabla.get(a, orden[r]);
+            r = adyacentes[4 * q + k];
+            if (r >= 0 && r != p) delta += tabla.get(a, orden[r]) - tabla.get(b, orden[r]);
+        }
+        return delta;
+    }
+
+    /**
+     * Obtiene el número de posiciones de la disposición.
+     *
+     * @return El número de productos.
+     */
+    public int getNumPosiciones() {
+        return n;
+    }
+
+    /**
+     * Obtiene el número de filas de la disposición.
+     *
+     * @return El número de filas.
+     */
+    public int getFilas() {
+        return filas;
+    }
+
+    /**
+     * Indica si se cuenta la afinidad vertical entre filas contiguas.
+     *
+     * @return {@code true} si las posiciones de la misma columna en filas contiguas son adyacentes.
+     */
+    public boolean esVertical() {
+        return vertical;
+    }
+}
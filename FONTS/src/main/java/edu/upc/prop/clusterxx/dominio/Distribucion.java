@@ -18,48 +18,119 @@ import java.util.ArrayList;
  * </ul>
  */
 public class Distribucion {
+    /**
+     * Número de algoritmos de ordenación disponibles, identificados del 1 a {@code NUM_ALGORITMOS}
+     * (ver {@link #setEstrategia(int)}).
+     */
+    public static final int NUM_ALGORITMOS = 12;
+    /**
+     * Algoritmo que optimiza la disposición por estantes ({@link AlgoritmoEstantes}).
+     */
+    public static final int ALGORITMO_ESTANTES = 11;
+    /**
+     * Algoritmo que optimiza la disposición por estantes contando la afinidad vertical.
+     */
+    public static final int ALGORITMO_ESTANTES_VERTICAL = 12;
+    /**
+     * Tiempo máximo de la búsqueda local al reoptimizar tras añadir o quitar un producto, en milisegundos.
+     */
+    public static final long LIMITE_REOPTIMIZACION_MS = 100;
+    /**
+     * Posiciones a cada lado del cambio por las que empieza la búsqueda local al reoptimizar.
+     */
+    private static final int RADIO_REOPTIMIZACION = 8;
+
     private final String id;
-    private int afinidadTotal;
-    private final ArrayList<Producto> listaProductos;
-    private ArrayList<Producto> listaOrdenada;
+    private volatile int afinidadTotal;
+    /**
+     * Productos de la distribución (instantánea, no se modifica una vez publicada: los cambios publican
+     * una lista nueva).
+     */
+    private volatile ArrayList<Producto> listaProductos;
+    private volatile ArrayList<Producto> listaOrdenada;
+    /**
+     * Número de estantes con los que se puntúa la distribución. Con 0 o 1 la afinidad es la del ciclo
+     * completo; con más, la de la disposición por filas ({@link DisposicionEstantes}).
+     */
+    private volatile int numEstantes;
+    /**
+     * Indica si, al puntuar por estantes, se cuenta la afinidad vertical entre filas contiguas.
+     */
+    private volatile boolean afinidadVertical;
+    /**
+     * Semilla de los algoritmos aleatorios, para poder reproducir la ordenación. Las distribuciones
+     * guardadas antes de que existiera se cargan con semilla 0, que es también la semilla por defecto.
+     */
+    private volatile long semilla;
     private transient Algoritmo estrategia;
+    /**
+     * Brecha de optimalidad objetivo con la que se ordena (0 si no hay parada anticipada).
+     */
+    private transient volatile double brechaObjetivo;
+    /**
+     * Cota superior calculada por última vez y la versión de la matriz, número de productos y
+     * disposición con que se calculó ({@code null} si no se ha calculado).
+     */
+    private transient volatile int[] cotaCalculada;
+    private transient volatile long versionCota;
 
     /**
      * Coloca un producto en una posición específica de la lista ordenada.
      *
      * <p><b>Pre:</b> Un entero {@code i} que representa la posición donde mover un producto y el producto {@code p} en cuestión.</p>
-     * <p><b>Post:</b> La listaOrdenada tendrá el producto {@code p} en la posición {@code i} indicada.</p>
+     * <p><b>Post:</b> La listaOrdenada tendrá el producto {@code p} en la posición {@code i} indicada.
+     * Si el producto ya estaba en la lista, se retira de su posición anterior. La lista se sustituye
+     * por una copia para que los lectores concurrentes no vean estados intermedios.</p>
      *
      * @param i La posición donde se moverá el producto (0-based index).
      * @param p El producto que se colocará en la posición indicada.
      */
     private void colocarProd(int i, Producto p) {
-        listaOrdenada.add(i, p);
+        ArrayList<Producto> copia = new ArrayList<>(listaOrdenada);
+        copia.remove(p);
+        copia.add(i, p);
+        listaOrdenada = copia;
     }
 
     /**
      * Calcula la afinidad total de los productos en la lista ordenada.
      *
      * <p><b>Pre:</b> La listaOrdenada no está vacía.</p>
-     * <p><b>Post:</b> Calcula y actualiza el valor de afinidad total basado en las relaciones entre productos.</p>
+     * <p><b>Post:</b> Calcula y actualiza el valor de afinidad total basado en las relaciones entre productos.
+     * Si la distribución se puntúa por estantes, sólo cuentan las adyacencias de la disposición por filas.</p>
      */
     private void calAfinidadTotal() {
+        ArrayList<Producto> lista = this.listaOrdenada;
+        if (lista.isEmpty()) {
+            this.afinidadTotal = 0;
+            return;
+        }
+        InstantaneaMatriz matriz = Matriz.getInstance().getInstantanea();
+        if (numEstantes > 1) {
+            TablaAfinidad tabla = new TablaAfinidad(lista, matriz);
+            int[] orden = new int[lista.size()];
+            for (int i = 0; i < orden.length; ++i) orden[i] = i;
+            this.afinidadTotal = new DisposicionEstantes(orden.length, numEstantes, afinidadVertical).afinidad(tabla, orden);
+            return;
+        }
+        int total = 0;
         Afinidad a;
-        for (int i = 0; i < listaOrdenada.size() - 1; ++i) {
-            Producto p1 = listaOrdenada.get(i);
-            Producto p2 = listaOrdenada.get(i + 1);
-            a = new Afinidad(p1, p2);
-            this.afinidadTotal += a.getValor();
+        for (int i = 0; i < lista.size() - 1; ++i) {
+            Producto p1 = lista.get(i);
+            Producto p2 = lista.get(i + 1);
+            a = new Afinidad(p1, p2, matriz);
+            total += a.getValor();
         }
-        a = new Afinidad(this.listaOrdenada.get(0), this.listaOrdenada.get(listaOrdenada.size() - 1));
-        this.afinidadTotal += a.getValor();
+        a = new Afinidad(lista.get(0), lista.get(lista.size() - 1), matriz);
+        total += a.getValor();
+        this.afinidadTotal = total;
     }
 
     /**
      * Determina el tipo de algoritmo asociado a la distribución.
      *
      * <p><b>Pre:</b> Ninguna.</p>
-     * <p><b>Post:</b> Devuelve un entero diferente (1, 2, 3) en función del algoritmo asociado a la distribución.
+     * <p><b>Post:</b> Devuelve un entero diferente (de 1 a {@code NUM_ALGORITMOS}) en función del algoritmo asociado a la distribución.
      * Si no se ha definido un algoritmo, devuelve 0.</p>
      *
      * @return Un entero que representa el algoritmo:
@@ -67,12 +138,30 @@ public class Distribucion {
      *             <li>1: AlgoritmoBruto</li>
      *             <li>2: AlgoritmoAproximacion</li>
      *             <li>3: AlgoritmoGreedy</li>
+     *             <li>4: AlgoritmoGreedy multiarranque</li>
+     *             <li>5: AlgoritmoAristas</li>
+     *             <li>6: AlgoritmoBusquedaLocal</li>
+     *             <li>7: AlgoritmoGenetico</li>
+     *             <li>8: AlgoritmoTabu</li>
+     *             <li>9: AlgoritmoExacto</li>
+     *             <li>10: AlgoritmoAutomatico</li>
+     *             <li>11: AlgoritmoEstantes</li>
+     *             <li>12: AlgoritmoEstantes con afinidad vertical</li>
      *         </ul>
      */
     private int esAlgoritmo() {
         if (estrategia instanceof AlgoritmoBruto) return 1;
         else if (estrategia instanceof AlgoritmoAproximacion) return 2;
-        else if (estrategia instanceof AlgoritmoGreedy) return 3;
+        else if (estrategia instanceof AlgoritmoGreedy && !((AlgoritmoGreedy) estrategia).esMultiarranque()) return 3;
+        else if (estrategia instanceof AlgoritmoGreedy) return 4;
+        else if (estrategia instanceof AlgoritmoAristas) return 5;
+        else if (estrategia instanceof AlgoritmoBusquedaLocal) return 6;
+        else if (estrategia instanceof AlgoritmoGenetico) return 7;
+        else if (estrategia instanceof AlgoritmoTabu) return 8;
+        else if (estrategia instanceof AlgoritmoExacto) return 9;
+        else if (estrategia instanceof AlgoritmoAutomatico) return 10;
+        else if (estrategia instanceof AlgoritmoEstantes && !((AlgoritmoEstantes) estrategia).esVertical()) return 11;
+        else if (estrategia instanceof AlgoritmoEstantes) return 12;
         else return 0;
     }
 
@@ -104,7 +193,10 @@ public class Distribucion {
      */
     public void anadirProductoDist(Producto p) {
         if (!this.listaProductos.contains(p)) {
-            this.listaProductos.add(p);
+            ArrayList<Producto> copia = new ArrayList<>(this.listaProductos);
+            copia.add(p);
+            this.listaProductos = copia;
+            this.cotaCalculada = null;
         } else {
             System.out.println("El producto ya está en la distribución");
         }
@@ -120,12 +212,190 @@ public class Distribucion {
      */
     public void eliminarProductoDist(Producto p) {
         if (this.listaProductos.contains(p)) {
-            this.listaProductos.remove(p);
+            ArrayList<Producto> copia = new ArrayList<>(this.listaProductos);
+            copia.remove(p);
+            this.listaProductos = copia;
+            this.cotaCalculada = null;
         } else {
             System.out.println("El producto no está en la distribución");
         }
     }
 
+    /**
+     * Resultado de reoptimizar la distribución tras añadir o quitar un producto. Se calcula sin modificar
+     * la distribución ({@link #prepararAnadido(Producto)}, {@link #prepararEliminado(Producto)}) y se
+     * publica después con {@link #aplicar(Reoptimizacion)}, de modo que la parte lenta puede hacerse sin
+     * bloquear al resto del sistema.
+     */
+    public static final class Reoptimizacion {
+        private final ArrayList<Producto> base;
+        private final ArrayList<Producto> listaProductos;
+        private final ArrayList<Producto> listaOrdenada;
+        private final int afinidadTotal;
+
+        private Reoptimizacion(ArrayList<Producto> base, ArrayList<Producto> listaProductos,
+                               ArrayList<Producto> listaOrdenada, int afinidadTotal) {
+            this.base = base;
+            this.listaProductos = listaProductos;
+            this.listaOrdenada = listaOrdenada;
+            this.afinidadTotal = afinidadTotal;
+        }
+    }
+
+    /**
+     * Añade un producto a la distribución sin volver a ordenarla desde cero: lo inserta en la posición
+     * del orden actual donde más aumenta la afinidad y después aplica una búsqueda local acotada
+     * ({@code LIMITE_REOPTIMIZACION_MS}) alrededor de la inserción.
+     *
+     * <p><b>Pre:</b> Recibe un producto {@code p}.</p>
+     * <p><b>Post:</b> Si el producto no estaba en la distribución, se añade a la lista de productos y a la
+     * lista ordenada y se recalcula la afinidad total; si ya estaba, se imprime un mensaje.</p>
+     *
+     * @param p El producto a añadir.
+     */
+    public void reoptimizarAnadiendo(Producto p) {
+        Reoptimizacion r = prepararAnadido(p);
+        if (r != null) aplicar(r);
+    }
+
+    /**
+     * Calcula, sin modificar la distribución, el resultado de añadirle un producto como en
+     * {@link #reoptimizarAnadiendo(Producto)}.
+     *
+     * <p><b>Pre:</b> Recibe un producto {@code p}.</p>
+     * <p><b>Post:</b> La distribución no cambia. Si el producto ya estaba en ella, se imprime un mensaje
+     * y se devuelve {@code null}.</p>
+     *
+     * @param p El producto a añadir.
+     * @return La reoptimización a aplicar, o {@code null} si el producto ya estaba.
+     */
+    public Reoptimizacion prepararAnadido(Producto p) {
+        ArrayList<Producto> base = this.listaOrdenada;
+        if (this.listaProductos.contains(p)) {
+            System.out.println("El producto ya está en la distribución");
+            return null;
+        }
+        ArrayList<Producto> lista = new ArrayList<>(base);
+        lista.add(p);
+        TablaAfinidad tabla = new TablaAfinidad(lista, Matriz.getInstance().getInstantanea());
+        int n = tabla.size();
+        int nuevo = n - 1;
+        // Mejor hueco del ciclo anterior (entre i e i + 1) para el nuevo producto
+        int hueco = n - 2;
+        int mejorDelta = Integer.MIN_VALUE;
+        for (int i = 0; i < n - 1; ++i) {
+            int j = (i + 1) % (n - 1);
+            int delta = tabla.get(i, nuevo) + tabla.get(nuevo, j) - tabla.get(i, j);
+            if (delta > mejorDelta) {
+                mejorDelta = delta;
+                hueco = i;
+            }
+        }
+        int[] orden = new int[n];
+        for (int k = 0, j = 0; k < n; ++k) {
+            orden[k] = k == hueco + 1 ? nuevo : j++;
+        }
+        ArrayList<Producto> productos = new ArrayList<>(this.listaProductos);
+        productos.add(p);
+        return reoptimizar(base, productos, tabla, orden, hueco + 1);
+    }
+
+    /**
+     * Elimina un producto de la distribución sin volver a ordenarla desde cero: lo quita del orden
+     * actual, uniendo sus dos vecinos, y aplica una búsqueda local acotada alrededor del hueco.
+     *
+     * <p><b>Pre:</b> Recibe un producto {@code p}.</p>
+     * <p><b>Post:</b> Si el producto estaba en la distribución, se elimina de la lista de productos y de la
+     * lista ordenada y se recalcula la afinidad total; si no estaba, se imprime un mensaje.</p>
+     *
+     * @param p El producto a eliminar.
+     */
+    public void reoptimizarEliminando(Producto p) {
+        Reoptimizacion r = prepararEliminado(p);
+        if (r != null) aplicar(r);
+    }
+
+    /**
+     * Calcula, sin modificar la distribución, el resultado de quitarle un producto como en
+     * {@link #reoptimizarEliminando(Producto)}.
+     *
+     * <p><b>Pre:</b> Recibe un producto {@code p}.</p>
+     * <p><b>Post:</b> La distribución no cambia. Si el producto no estaba en ella, se imprime un mensaje
+     * y se devuelve {@code null}.</p>
+     *
+     * @param p El producto a eliminar.
+     * @return La reoptimización a aplicar, o {@code null} si el producto no estaba.
+     */
+    public Reoptimizacion prepararEliminado(Producto p) {
+        ArrayList<Producto> base = this.listaOrdenada;
+        ArrayList<Producto> lista = new ArrayList<>(base);
+        int posicion = lista.indexOf(p);
+        if (!this.listaProductos.contains(p) || posicion < 0) {
+            System.out.println("El producto no está en la distribución");
+            return null;
+        }
+        lista.remove(posicion);
+        TablaAfinidad tabla = new TablaAfinidad(lista, Matriz.getInstance().getInstantanea());
+        int[] orden = new int[tabla.size()];
+        for (int i = 0; i < orden.length; ++i) orden[i] = i;
+        ArrayList<Producto> productos = new ArrayList<>(this.listaProductos);
+        productos.remove(p);
+        return reoptimizar(base, productos, tabla, orden, posicion);
+    }
+
+    /**
+     * Publica una reoptimización preparada: sustituye la lista de productos, la lista ordenada y la
+     * afinidad total.
+     *
+     * <p><b>Pre:</b> {@code r} se ha preparado sobre esta distribución y la lista ordenada no ha cambiado
+     * desde entonces.</p>
+     * <p><b>Post:</b> La distribución refleja el producto añadido o quitado.</p>
+     *
+     * @param r La reoptimización a aplicar.
+     * @throws IllegalStateException Si la lista ordenada ha cambiado desde que se preparó.
+     */
+    public void aplicar(Reoptimizacion r) {
+        if (r.base != this.listaOrdenada) {
+            throw new IllegalStateException("La distribución ha cambiado desde que se preparó la reoptimización.");
+        }
+        this.listaOrdenada = r.listaOrdenada;
+        this.afinidadTotal = r.afinidadTotal;
+        this.listaProductos = r.listaProductos;
+        this.cotaCalculada = null;
+    }
+
+    /**
+     * Aplica la búsqueda local acotada tras un cambio en la posición {@code cambio} del orden.
+     *
+     * @param base      Lista ordenada de la que se parte.
+     * @param productos Lista de productos resultante.
+     * @param tabla     Tabla de afinidades de los productos.
+     * @param orden     Orden de partida.
+     * @param cambio    Posición alrededor de la que empieza la búsqueda.
+     * @return La reoptimización con el nuevo orden y su afinidad.
+     */
+    private Reoptimizacion reoptimizar(ArrayList<Producto> base, ArrayList<Producto> productos,
+                                       TablaAfinidad tabla, int[] orden, int cambio) {
+        long fin = System.nanoTime() + LIMITE_REOPTIMIZACION_MS * 1_000_000L;
+        int n = orden.length;
+        int afinidad = 0;
+        if (numEstantes > 1 && n > 0) {
+            // Al desplazarse las posiciones cambian las filas a partir del cambio: se revisa todo
+            DisposicionEstantes disposicion = new DisposicionEstantes(n, numEstantes, afinidadVertical);
+            AlgoritmoEstantes.mejorar(tabla, disposicion, orden, fin);
+            afinidad = disposicion.afinidad(tabla, orden);
+        } else if (n > 0) {
+            int radio = Math.min(RADIO_REOPTIMIZACION, n / 2);
+            int[] activos = new int[2 * radio + 1];
+            for (int d = -radio; d <= radio; ++d) {
+                activos[d + radio] = orden[((cambio + d) % n + n) % n];
+            }
+            orden = AlgoritmoBusquedaLocal.mejorarAlrededor(tabla, orden, activos, fin);
+            afinidad = tabla.afinidadCircular(orden);
+        }
+        return new Reoptimizacion(base, productos, tabla.aLista(orden), afinidad);
+    }
+
     /**
      * Elimina un producto de la lista ordenada de la distribución.
      *
@@ -135,31 +405,81 @@ public class Distribucion {
      * @param p El producto a eliminar de la lista ordenada.
      */
     public void eliminarProductoDistOrdenada(Producto p) {
-        this.listaOrdenada.remove(p);
+        ArrayList<Producto> copia = new ArrayList<>(this.listaOrdenada);
+        copia.remove(p);
+        this.listaOrdenada = copia;
     }
 
     /**
      * Ordena la distribución utilizando el algoritmo especificado.
      *
-     * <p><b>Pre:</b> Un entero {@code algoritmo} que representa el algoritmo: 1, 2 o 3.</p>
+     * <p><b>Pre:</b> Un entero {@code algoritmo} que representa el algoritmo, entre 1 y {@code NUM_ALGORITMOS}.</p>
      * <p><b>Post:</b> Cambia el algoritmo asociado a la distribución por el indicado por el entero
-     * y ordena la distribución según este.</p>
+     * y ordena la distribución según este. Si ya se había ordenado el mismo conjunto de productos con
+     * el mismo algoritmo y la misma matriz, se reutiliza el resultado ({@link CacheDistribuciones}).</p>
      *
-     * @param algoritmo Un entero que representa el algoritmo a utilizar:
-     *                  <ul>
-     *                      <li>1: AlgoritmoBruto</li>
-     *                      <li>2: AlgoritmoAproximacion</li>
-     *                      <li>3: AlgoritmoGreedy</li>
-     *                  </ul>
+     * @param algoritmo Un entero que representa el algoritmo a utilizar (ver {@link #setEstrategia(int)}).
      */
     public void ordenar(int algoritmo) {
         if (esAlgoritmo() != algoritmo) setEstrategia(algoritmo);
         if (estrategia != null) {
+            EventoOrdenacion evento = new EventoOrdenacion();
+            evento.begin();
+            CacheDistribuciones cache = CacheDistribuciones.getInstance();
+            long version = Matriz.getInstance().getInstantanea().getVersion();
+            String clave = cache.clave(listaProductos, parametrosOrdenacion(algoritmo), version);
+            CacheDistribuciones.Resultado guardado = cache.obtener(clave, listaProductos);
+            Metricas metricas = Metricas.getInstance();
+            if (guardado != null) {
+                listaOrdenada = guardado.listaOrdenada;
+                afinidadTotal = guardado.afinidadTotal;
+                metricas.contar("ordenar.aciertosCache", 1);
+                emitir(evento, true);
+                return;
+            }
+            estrategia.setBrechaObjetivo(brechaObjetivo);
+            estrategia.setSemilla(semilla);
+            String nombre = "ordenar." + estrategia.getClass().getSimpleName();
+            long bytes = Metricas.bytesAsignadosHilo();
+            long inicio = System.nanoTime();
             listaOrdenada = estrategia.ordenar(listaProductos);
+            metricas.registrar(nombre + ".tiempoUs", (System.nanoTime() - inicio) / 1000);
+            if (bytes >= 0) metricas.registrar(nombre + ".bytesAsignados", Metricas.bytesAsignadosHilo() - bytes);
+            metricas.registrar(nombre + ".productos", listaProductos.size());
             calAfinidadTotal();
+            cache.guardar(clave, version, listaOrdenada, afinidadTotal);
+            emitir(evento, false);
+        }
+    }
+
+    /**
+     * Termina el evento de JFR de una ordenación y lo emite si la grabación lo tiene activado.
+     *
+     * @param evento Evento iniciado al empezar la ordenación.
+     * @param cache  Si el resultado se ha obtenido de la caché.
+     */
+    private void emitir(EventoOrdenacion evento, boolean cache) {
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.algoritmo = estrategia.getClass().getSimpleName();
+            evento.productos = listaProductos.size();
+            evento.afinidad = afinidadTotal;
+            evento.cache = cache;
+            evento.commit();
         }
     }
 
+    /**
+     * Codifica el algoritmo y los parámetros de la distribución que influyen en el resultado de la
+     * ordenación, para la clave de {@link CacheDistribuciones}.
+     *
+     * @param algoritmo Algoritmo de ordenación.
+     * @return Los parámetros codificados.
+     */
+    private String parametrosOrdenacion(int algoritmo) {
+        return algoritmo + ";" + numEstantes + ";" + afinidadVertical + ";" + brechaObjetivo + ";" + semilla;
+    }
+
     /**
      * Coloca un producto en una posición específica de la lista ordenada basado en su nombre.
      *
@@ -174,7 +494,6 @@ public class Distribucion {
     public boolean colocarProdPosicio(String nombreProducto, int i) {
         Producto p = buscarEnLista(nombreProducto);
         if (p != null) {
-            eliminarProductoDistOrdenada(p);
             colocarProd(i - 1, p); // Convertir a índice 0-based
             return true;
         } else {
@@ -189,7 +508,6 @@ public class Distribucion {
      * <p><b>Post:</b> Calcula la afinidad total de la listaOrdenada de la distribución.</p>
      */
     public void calculaAfinidadTotal() {
-        this.afinidadTotal = 0;
         calAfinidadTotal();
     }
 
@@ -209,6 +527,25 @@ public class Distribucion {
         this.afinidadTotal = 0;
     }
 
+    /**
+     * Constructor de una distribución ya ordenada, para reconstruirla a partir de los datos guardados.
+     *
+     * <p><b>Pre:</b> {@code listaOrdenada} es una permutación de {@code lp} (o está vacía si la distribución
+     * no se ha ordenado) y {@code afinidadTotal} es su afinidad.</p>
+     * <p><b>Post:</b> Crea la distribución con el orden y la afinidad indicados, sin volver a calcularlos.</p>
+     *
+     * @param id            El identificador único de la distribución.
+     * @param lp            La lista de productos que forman parte de la distribución.
+     * @param listaOrdenada La lista de productos ordenada, o {@code null} si no se ha ordenado.
+     * @param afinidadTotal La afinidad total de la lista ordenada.
+     */
+    public Distribucion(String id, ArrayList<Producto> lp, ArrayList<Producto> listaOrdenada, int afinidadTotal) {
+        this.id = id;
+        this.listaProductos = lp;
+        this.listaOrdenada = listaOrdenada != null ? listaOrdenada : new ArrayList<>();
+        this.afinidadTotal = afinidadTotal;
+    }
+
     /**
      * Establece la estrategia de ordenación basada en el algoritmo especificado.
      *
@@ -220,14 +557,89 @@ public class Distribucion {
      *                      <li>1: AlgoritmoBruto</li>
      *                      <li>2: AlgoritmoAproximacion</li>
      *                      <li>3: AlgoritmoGreedy</li>
+     *                      <li>4: AlgoritmoGreedy multiarranque</li>
+     *                      <li>5: AlgoritmoAristas</li>
+     *                      <li>6: AlgoritmoBusquedaLocal</li>
+     *                      <li>7: AlgoritmoGenetico</li>
+     *                      <li>8: AlgoritmoTabu</li>
+     *                      <li>9: AlgoritmoExacto</li>
+     *                      <li>10: AlgoritmoAutomatico</li>
+     *                      <li>11: AlgoritmoEstantes</li>
+     *                      <li>12: AlgoritmoEstantes con afinidad vertical</li>
      *                  </ul>
      */
     public void setEstrategia(int algoritmo) {
         if (algoritmo == 1) this.estrategia = new AlgoritmoBruto();
         else if (algoritmo == 2) this.estrategia = new AlgoritmoAproximacion();
+        else if (algoritmo == 4) this.estrategia = new AlgoritmoGreedy(true, true);
+        else if (algoritmo == 5) this.estrategia = new AlgoritmoAristas();
+        else if (algoritmo == 6) this.estrategia = new AlgoritmoBusquedaLocal();
+        else if (algoritmo == 7) this.estrategia = new AlgoritmoGenetico();
+        else if (algoritmo == 8) this.estrategia = new AlgoritmoTabu();
+        else if (algoritmo == 9) this.estrategia = new AlgoritmoExacto();
+        else if (algoritmo == 10) this.estrategia = new AlgoritmoAutomatico();
+        else if (algoritmo == 11) this.estrategia = new AlgoritmoEstantes(numEstantes, false);
+        else if (algoritmo == 12) this.estrategia = new AlgoritmoEstantes(numEstantes, true);
         else this.estrategia = new AlgoritmoGreedy();
     }
 
+    /**
+     * Indica con cuántos estantes se ha de puntuar y ordenar la distribución.
+     *
+     * <p><b>Pre:</b> {@code numEstantes >= 0}.</p>
+     * <p><b>Post:</b> La afinidad total y los algoritmos por estantes (11 y 12) usan la disposición en
+     * {@code numEstantes} filas; con 0 o 1 se vuelve a puntuar el ciclo completo. No recalcula la
+     * afinidad: hay que llamar a {@link #calculaAfinidadTotal()} u {@link #ordenar(int)}.</p>
+     *
+     * @param numEstantes      Número de estantes, o 0 para puntuar el ciclo completo.
+     * @param afinidadVertical Si es {@code true}, se cuenta la afinidad entre filas contiguas.
+     */
+    public void setDisposicion(int numEstantes, boolean afinidadVertical) {
+        this.numEstantes = numEstantes;
+        this.afinidadVertical = afinidadVertical;
+        if (estrategia instanceof AlgoritmoEstantes) this.estrategia = null;
+    }
+
+    /**
+     * Establece la semilla de los algoritmos aleatorios de las siguientes ordenaciones.
+     *
+     * <p><b>Pre:</b> Ninguna.</p>
+     * <p><b>Post:</b> Ordenar con el mismo algoritmo, los mismos productos y la misma semilla da el mismo
+     * resultado (salvo en los algoritmos que se cortan por tiempo). La semilla se guarda con la distribución.</p>
+     *
+     * @param semilla Semilla de los números aleatorios.
+     */
+    public void setSemilla(long semilla) {
+        this.semilla = semilla;
+    }
+
+    /**
+     * Obtiene la semilla de los algoritmos aleatorios de la distribución.
+     *
+     * @return La semilla.
+     */
+    public long getSemilla() {
+        return semilla;
+    }
+
+    /**
+     * Obtiene el número de estantes con los que se puntúa la distribución.
+     *
+     * @return El número de estantes, o 0 si se puntúa el ciclo completo.
+     */
+    public int getNumEstantes() {
+        return this.numEstantes;
+    }
+
+    /**
+     * Indica si la distribución cuenta la afinidad vertical entre estantes contiguos.
+     *
+     * @return {@code true} si se cuenta la afinidad vertical.
+     */
+    public boolean tieneAfinidadVertical() {
+        return this.afinidadVertical;
+    }
+
     /**
      * Obtiene el ID de la distribución.
      *
@@ -251,10 +663,67 @@ public class Distribucion {
         else return 0;
     }
 
+    /**
+     * Obtiene una cota superior de la afinidad total que puede alcanzar cualquier orden de los productos
+     * de la distribución, con el mismo criterio de puntuación que {@link #getAfinidadTotal()}
+     * (ver {@link CotaSuperior}).
+     *
+     * <p><b>Pre:</b> Ninguna.</p>
+     * <p><b>Post:</b> Devuelve un valor mayor o igual que la afinidad total de cualquier orden. El valor
+     * se guarda mientras no cambien los productos, la disposición ni la matriz de afinidades.</p>
+     *
+     * @return La cota superior, o {@code 0} si la distribución contiene uno o ningún producto.
+     */
+    public int getCotaSuperior() {
+        ArrayList<Producto> lista = new ArrayList<>(this.listaProductos);
+        if (lista.size() <= 1) return 0;
+        InstantaneaMatriz matriz = Matriz.getInstance().getInstantanea();
+        int[] guardada = this.cotaCalculada;
+        if (guardada != null && versionCota == matriz.getVersion() && guardada[1] == lista.size()
+                && guardada[2] == numEstantes && (guardada[3] == 1) == afinidadVertical) {
+            return guardada[0];
+        }
+        TablaAfinidad tabla = new TablaAfinidad(lista, matriz);
+        int cota = numEstantes > 1
+                ? CotaSuperior.estantes(tabla, afinidadVertical, afinidadTotal)
+                : CotaSuperior.ciclo(tabla, afinidadTotal);
+        this.versionCota = matriz.getVersion();
+        this.cotaCalculada = new int[]{cota, lista.size(), numEstantes, afinidadVertical ? 1 : 0};
+        return cota;
+    }
+
+    /**
+     * Establece la brecha de optimalidad objetivo de las siguientes ordenaciones: los algoritmos que
+     * lo admiten se detienen en cuanto la afinidad está a esa fracción o menos de la cota superior.
+     *
+     * <p><b>Pre:</b> {@code brecha} está entre 0 y 1.</p>
+     * <p><b>Post:</b> Las siguientes llamadas a {@link #ordenar(int)} usan la brecha indicada; 0 la desactiva.</p>
+     *
+     * @param brecha Brecha objetivo.
+     */
+    public void setBrechaObjetivo(double brecha) {
+        this.brechaObjetivo = brecha;
+    }
+
+    /**
+     * Obtiene la brecha de optimalidad de la distribución: la fracción de la cota superior que falta
+     * por alcanzar.
+     *
+     * <p><b>Pre:</b> Ninguna.</p>
+     * <p><b>Post:</b> Devuelve {@code (cota - afinidad) / cota}, entre 0 y 1; un 0 indica que el orden es óptimo.</p>
+     *
+     * @return La brecha de optimalidad, o {@code 0} si la cota es 0.
+     */
+    public double getBrecha() {
+        int cota = getCotaSuperior();
+        if (cota <= 0) return 0;
+        return Math.max(0, (cota - getAfinidadTotal()) / (double) cota);
+    }
+
     /**
      * Obtiene la lista de productos de la distribución.
      *
-     * @return La lista de productos que forman parte de la distribución.
+     * @return La lista de productos que forman parte de la distribución (instantánea: no se debe modificar).
      */
     public ArrayList<Producto> getListaProductos() {
         return this.listaProductos;
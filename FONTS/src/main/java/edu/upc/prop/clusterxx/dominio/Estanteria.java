@@ -1,6 +1,7 @@
 package edu.upc.prop.clusterxx.dominio;
 
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Clase <b>Estanteria</b>.
@@ -10,11 +11,30 @@ import java.util.ArrayList;
  * modificar el número de estantes. También se encarga de comunicar la distribución asociada con
  * el controlador de dominio, haciendo las llamadas necesarias a esta cuando {@code CtrlDominio} lo
  * solicite.
+ * <p>
+ * Una estantería leída de la persistencia puede ser sólo una <i>cabecera</i>: conoce su ID, su número
+ * de estantes y la afinidad guardada, y carga la distribución con un {@link CargadorDistribucion} la
+ * primera vez que se accede a ella. Así el arranque no depende del tamaño de las distribuciones guardadas.
+ * La cabecera incluye también los nombres de los productos de la distribución, para saber si un producto
+ * está en ella ({@link #contieneProducto(String)}) sin cargarla.
  */
 public class Estanteria {
     private final String id;
     private int numPrestatges;
-    private Distribucion distribucion; // Lista para almacenar productos en la estantería
+    private volatile Distribucion distribucion; // Lista para almacenar productos en la estantería
+    /**
+     * Cargador de la distribución guardada, mientras no se haya cargado; {@code null} en otro caso.
+     */
+    private transient volatile CargadorDistribucion cargador;
+    /**
+     * Afinidad total guardada en la cabecera, válida mientras la distribución no se haya cargado.
+     */
+    private transient int afinidadGuardada;
+    /**
+     * Nombres de los productos de la distribución guardada, leídos con la cabecera y válidos mientras la
+     * distribución no se haya cargado; {@code null} si la cabecera no los incluye.
+     */
+    private transient volatile Set<String> productosGuardados;
 
     /**
      * Mueve un producto a una posición específica dentro de la distribución.
@@ -29,7 +49,7 @@ public class Estanteria {
      * @param posicion       La posición a la que se moverá el producto.
      */
     public void moverProducto(String productoMovido, int posicion) {
-        boolean found = distribucion.colocarProdPosicio(productoMovido, posicion);
+        boolean found = distribucion().colocarProdPosicio(productoMovido, posicion);
         if (found) {
             calcularAfinidad();
         } else {
@@ -37,6 +57,78 @@ public class Estanteria {
         }
     }
 
+    /**
+     * Añade un producto a la distribución asociada reoptimizando sólo alrededor de su posición
+     * (ver {@link Distribucion#reoptimizarAnadiendo(Producto)}).
+     *
+     * <p><b>Pre:</b> La distribución asociada no es {@code null}.</p>
+     *
+     * <p><b>Post:</b> El producto queda en la distribución y la afinidad total se recalcula.</p>
+     *
+     * @param p El producto a añadir.
+     */
+    public void anadirProducto(Producto p) {
+        distribucion().reoptimizarAnadiendo(p);
+    }
+
+    /**
+     * Elimina un producto de la distribución asociada reoptimizando sólo alrededor del hueco
+     * (ver {@link Distribucion#reoptimizarEliminando(Producto)}).
+     *
+     * <p><b>Pre:</b> La distribución asociada no es {@code null}.</p>
+     *
+     * <p><b>Post:</b> El producto deja de estar en la distribución y la afinidad total se recalcula.</p>
+     *
+     * @param p El producto a eliminar.
+     */
+    public void eliminarProducto(Producto p) {
+        distribucion().reoptimizarEliminando(p);
+    }
+
+    /**
+     * Calcula, sin modificar la distribución asociada, el resultado de añadirle un producto
+     * (ver {@link Distribucion#prepararAnadido(Producto)}).
+     *
+     * <p><b>Pre:</b> La distribución asociada no es {@code null}.</p>
+     *
+     * <p><b>Post:</b> La distribución no cambia.</p>
+     *
+     * @param p El producto a añadir.
+     * @return La reoptimización a aplicar, o {@code null} si el producto ya estaba.
+     */
+    public Distribucion.Reoptimizacion prepararAnadido(Producto p) {
+        return distribucion().prepararAnadido(p);
+    }
+
+    /**
+     * Calcula, sin modificar la distribución asociada, el resultado de quitarle un producto
+     * (ver {@link Distribucion#prepararEliminado(Producto)}).
+     *
+     * <p><b>Pre:</b> La distribución asociada no es {@code null}.</p>
+     *
+     * <p><b>Post:</b> La distribución no cambia.</p>
+     *
+     * @param p El producto a eliminar.
+     * @return La reoptimización a aplicar, o {@code null} si el producto no estaba.
+     */
+    public Distribucion.Reoptimizacion prepararEliminado(Producto p) {
+        return distribucion().prepararEliminado(p);
+    }
+
+    /**
+     * Publica en la distribución asociada una reoptimización preparada
+     * (ver {@link Distribucion#aplicar(Distribucion.Reoptimizacion)}).
+     *
+     * <p><b>Pre:</b> {@code r} se ha preparado sobre la distribución asociada y esta no ha cambiado desde entonces.</p>
+     *
+     * <p><b>Post:</b> La distribución refleja el producto añadido o quitado.</p>
+     *
+     * @param r La reoptimización a aplicar.
+     */
+    public void aplicarReoptimizacion(Distribucion.Reoptimizacion r) {
+        distribucion().aplicar(r);
+    }
+
     /**
      * Calcula la afinidad total de la distribución asociada.
      *
@@ -45,7 +137,7 @@ public class Estanteria {
      * <p><b>Post:</b> Calcula y actualiza la afinidad total de la distribución.</p>
      */
     public void calcularAfinidad() {
-        distribucion.calculaAfinidadTotal();
+        distribucion().calculaAfinidadTotal();
     }
 
     /**
@@ -66,6 +158,95 @@ public class Estanteria {
         this.numPrestatges = numPrestatges;
     }
 
+    /**
+     * Constructor de una estantería de la que sólo se conoce la cabecera.
+     *
+     * <p><b>Pre:</b> Existe una distribución guardada para la estantería {@code id} que {@code cargador}
+     * puede cargar.</p>
+     *
+     * <p><b>Post:</b> Crea la estantería sin cargar su distribución; la afinidad total es
+     * {@code afinidadGuardada} hasta que se cargue.</p>
+     *
+     * @param id               El identificador único de la estantería.
+     * @param numPrestatges    El número de estantes que tendrá la estantería.
+     * @param afinidadGuardada La afinidad total de la distribución guardada.
+     * @param cargador         Cargador de la distribución guardada.
+     * @throws Exception Si el {@code id} es vacío.
+     */
+    public Estanteria(String id, int numPrestatges, int afinidadGuardada, CargadorDistribucion cargador) throws Exception {
+        this(id, numPrestatges, afinidadGuardada, null, cargador);
+    }
+
+    /**
+     * Constructor de una estantería de la que sólo se conoce la cabecera, incluidos los nombres de los
+     * productos de su distribución.
+     *
+     * <p><b>Pre:</b> Existe una distribución guardada para la estantería {@code id} que {@code cargador}
+     * puede cargar, y {@code productosGuardados} son los nombres de sus productos (o {@code null}).</p>
+     *
+     * <p><b>Post:</b> Crea la estantería sin cargar su distribución; {@link #contieneProducto(String)} no
+     * necesita cargarla si se conocen los nombres.</p>
+     *
+     * @param id                 El identificador único de la estantería.
+     * @param numPrestatges      El número de estantes que tendrá la estantería.
+     * @param afinidadGuardada   La afinidad total de la distribución guardada.
+     * @param productosGuardados Los nombres de los productos de la distribución guardada, o {@code null}.
+     * @param cargador           Cargador de la distribución guardada.
+     * @throws Exception Si el {@code id} es vacío.
+     */
+    public Estanteria(String id, int numPrestatges, int afinidadGuardada, Set<String> productosGuardados,
+                      CargadorDistribucion cargador) throws Exception {
+        this(id, numPrestatges);
+        this.afinidadGuardada = afinidadGuardada;
+        this.productosGuardados = productosGuardados;
+        this.cargador = cargador;
+    }
+
+    /**
+     * Carga la distribución guardada si la estantería sólo tiene la cabecera.
+     *
+     * <p><b>Pre:</b> Ninguna.</p>
+     *
+     * <p><b>Post:</b> La distribución está en memoria. Si no se puede leer, la estantería sigue sin cargar
+     * y se lanza una excepción.</p>
+     *
+     * @throws IllegalStateException Si el cargador no puede leer la distribución guardada.
+     */
+    public void cargarDistribucion() {
+        if (cargador == null) return;
+        synchronized (this) {
+            CargadorDistribucion c = this.cargador;
+            if (c == null) return;
+            try {
+                this.distribucion = c.cargar(this.id);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error: no se ha podido cargar la distribución de la estantería "
+                        + this.id + ": " + e.getMessage(), e);
+            }
+            this.cargador = null;
+            this.productosGuardados = null;
+        }
+    }
+
+    /**
+     * Verifica si la distribución de la estantería ya está en memoria.
+     *
+     * @return {@code false} si la estantería sólo tiene la cabecera; {@code true} en otro caso.
+     */
+    public boolean distribucionCargada() {
+        return cargador == null;
+    }
+
+    /**
+     * Devuelve la distribución, cargándola antes si la estantería sólo tiene la cabecera.
+     *
+     * @return La distribución asociada, o {@code null} si no tiene.
+     */
+    private Distribucion distribucion() {
+        cargarDistribucion();
+        return distribucion;
+    }
+
     //// GETTERS
 
     /**
@@ -96,12 +277,33 @@ public class Estanteria {
      * @return La afinidad total de la distribución o {@code 0} si no existe una distribución.
      */
     public int getAfinidadTotal() {
+        if (cargador != null) {
+            return afinidadGuardada;
+        }
+        Distribucion distribucion = this.distribucion;
         if (distribucion == null) {
             return 0;
         }
         else return distribucion.getAfinidadTotal();
     }
 
+    /**
+     * Obtiene una cota superior de la afinidad total que puede alcanzar la distribución asociada.
+     *
+     * <p><b>Pre:</b> La distribución asociada puede ser {@code null}.</p>
+     *
+     * <p><b>Post:</b> Devuelve la cota superior si la distribución existe; de lo contrario, devuelve {@code 0}.</p>
+     *
+     * @return La cota superior de la afinidad o {@code 0} si no existe una distribución.
+     */
+    public int getCotaSuperior() {
+        Distribucion distribucion = distribucion();
+        if (distribucion == null) {
+            return 0;
+        }
+        else return distribucion.getCotaSuperior();
+    }
+
     /**
      * Obtiene la lista de productos de la distribución asociada.
      *
@@ -112,7 +314,7 @@ public class Estanteria {
      * @return La lista de productos de la distribución.
      */
     public ArrayList<Producto> getListaProductos() {
-        return distribucion.getListaProductos();
+        return distribucion().getListaProductos();
     }
 
     /**
@@ -121,7 +323,7 @@ public class Estanteria {
      * @return La distribución asociada.
      */
     public Distribucion getDistribucion() {
-        return distribucion;
+        return distribucion();
     }
 
     /**
@@ -134,7 +336,7 @@ public class Estanteria {
      * @return La lista ordenada de productos.
      */
     public ArrayList<Producto> getListaOrdenada(){
-        return distribucion.getListaOrdenada();
+        return distribucion().getListaOrdenada();
     }
 
     //// SETTERS
@@ -145,34 +347,101 @@ public class Estanteria {
      * <p><b>Pre:</b> Recibe un entero {@code numPrestatges} que representa el nuevo número de estantes.
      * Este número debe estar entre 1 y 10.</p>
      *
-     * <p><b>Post:</b> Actualiza el número de estantes de la estantería.</p>
+     * <p><b>Post:</b> Actualiza el número de estantes de la estantería. Si la distribución se puntúa
+     * por estantes, se recalcula su afinidad con el nuevo número de filas.</p>
      *
      * @param numPrestatges El nuevo número de estantes.
      */
     public void setNumPrestatges(int numPrestatges) {
         this.numPrestatges = numPrestatges;
+        Distribucion actual = distribucion();
+        if (actual != null && actual.getNumEstantes() > 0) {
+            actual.setDisposicion(numPrestatges, actual.tieneAfinidadVertical());
+            actual.calculaAfinidadTotal();
+        }
     }
 
     /**
      * Crea una distribución con el ID y lista de productos proporcionados, utilizando el algoritmo especificado.
      *
      * <p><b>Pre:</b> Recibe una lista de productos {@code listaProductos}, un entero {@code algoritmo} que representa el algoritmo a usar
-     * (1: AlgoritmoBruto, 2: AlgoritmoAproximacion, 3: AlgoritmoGreedy), y el ID de la estantería {@code this.id} que ya debe existir.</p>
+     * (ver {@link Distribucion#setEstrategia(int)}), y el ID de la estantería {@code this.id} que ya debe existir.</p>
      *
      * <p><b>Post:</b> Crea una nueva distribución con el ID y la lista de productos dados mediante el algoritmo especificado.
-     * Si el algoritmo no es válido (no está entre 1 y 3), lanza una excepción.</p>
+     * Si el algoritmo no es válido (no está entre 1 y {@link Distribucion#NUM_ALGORITMOS}), lanza una excepción.</p>
      *
      * @param listaProductos La lista de productos a incluir en la distribución.
-     * @param algortimo       El algoritmo a utilizar para ordenar la distribución (1: Bruto, 2: Aproximación, 3: Greedy).
-     * @throws Exception Si el algoritmo no es 1, 2 o 3.
+     * @param algortimo       El algoritmo a utilizar para ordenar la distribución.
+     * @throws Exception Si el algoritmo no es válido.
      */
     public void crearDistribucion(ArrayList<Producto> listaProductos, int algortimo) throws Exception {
-        distribucion = new Distribucion(this.id, listaProductos);
-        if(algortimo < 1 || algortimo > 3) {
-            throw new Exception("Error: el algoritmo ha de ser 1, 2 o 3.");
+        setDistribucion(prepararDistribucion(listaProductos, algortimo));
+    }
+
+    /**
+     * Crea y ordena una distribución para esta estantería sin asociarla todavía.
+     *
+     * <p><b>Pre:</b> Recibe una lista de productos {@code listaProductos} y un entero {@code algoritmo}
+     * (ver {@link Distribucion#setEstrategia(int)}).</p>
+     *
+     * <p><b>Post:</b> Devuelve la distribución ordenada. Con los algoritmos por estantes, la distribución
+     * se optimiza y puntúa con el número de estantes de la estantería. Conserva la semilla de la distribución actual,
+     * si la hay, para que volver a crearla sea reproducible. La distribución actual de la estantería no cambia,
+     * de modo que otros hilos siguen viendo la anterior hasta que se llame a {@link #setDistribucion}.</p>
+     *
+     * @param listaProductos La lista de productos a incluir en la distribución.
+     * @param algoritmo      El algoritmo a utilizar para ordenar la distribución.
+     * @return La nueva distribución ordenada.
+     * @throws Exception Si el algoritmo no está entre 1 y {@link Distribucion#NUM_ALGORITMOS}.
+     */
+    public Distribucion prepararDistribucion(ArrayList<Producto> listaProductos, int algoritmo) throws Exception {
+        return prepararDistribucion(listaProductos, algoritmo, 0);
+    }
+
+    /**
+     * Crea y ordena una distribución para esta estantería sin asociarla todavía, deteniendo la ordenación
+     * en cuanto se alcanza la brecha de optimalidad objetivo (ver {@link Distribucion#setBrechaObjetivo}).
+     *
+     * <p><b>Pre:</b> Igual que {@link #prepararDistribucion(ArrayList, int)}; {@code brecha} está entre 0 y 1.</p>
+     *
+     * <p><b>Post:</b> Igual que {@link #prepararDistribucion(ArrayList, int)}; con {@code brecha} 0 no hay
+     * parada anticipada.</p>
+     *
+     * @param listaProductos La lista de productos a incluir en la distribución.
+     * @param algoritmo      El algoritmo a utilizar para ordenar la distribución.
+     * @param brecha         Brecha objetivo, como fracción de la cota superior.
+     * @return La nueva distribución ordenada.
+     * @throws Exception Si el algoritmo no está entre 1 y {@link Distribucion#NUM_ALGORITMOS}.
+     */
+    public Distribucion prepararDistribucion(ArrayList<Producto> listaProductos, int algoritmo, double brecha) throws Exception {
+        if(algoritmo < 1 || algoritmo > Distribucion.NUM_ALGORITMOS) {
+            throw new Exception("Error: el algoritmo ha de estar entre 1 y " + Distribucion.NUM_ALGORITMOS + ".");
         }
-        else {
-            this.distribucion.ordenar(algortimo);
+        Distribucion nueva = new Distribucion(this.id, listaProductos);
+        Distribucion actual = distribucion();
+        if (actual != null) nueva.setSemilla(actual.getSemilla());
+        if (algoritmo == Distribucion.ALGORITMO_ESTANTES || algoritmo == Distribucion.ALGORITMO_ESTANTES_VERTICAL) {
+            nueva.setDisposicion(this.numPrestatges, algoritmo == Distribucion.ALGORITMO_ESTANTES_VERTICAL);
+        }
+        nueva.setBrechaObjetivo(brecha);
+        nueva.ordenar(algoritmo);
+        return nueva;
+    }
+
+    /**
+     * Asocia una distribución ya ordenada a la estantería.
+     *
+     * <p><b>Pre:</b> {@code distribucion} no es {@code null}.</p>
+     *
+     * <p><b>Post:</b> La distribución de la estantería pasa a ser {@code distribucion}.</p>
+     *
+     * @param distribucion La distribución a asociar.
+     */
+    public void setDistribucion(Distribucion distribucion) {
+        synchronized (this) {
+            this.distribucion = distribucion;
+            this.cargador = null;
+            this.productosGuardados = null;
         }
     }
 
@@ -188,6 +457,31 @@ public class Estanteria {
      * @return {@code true} si existe una distribución; {@code false} en caso contrario.
      */
     public boolean existeDistribucion() {
-        return distribucion != null;
+        return cargador != null || distribucion != null;
+    }
+
+    /**
+     * Verifica si un producto está en la distribución de la estantería.
+     *
+     * <p><b>Pre:</b> Ninguna.</p>
+     *
+     * <p><b>Post:</b> Devuelve {@code true} si la estantería tiene una distribución que contiene un producto
+     * con ese nombre. Si la distribución no está cargada y la cabecera incluye los nombres de sus productos,
+     * no se carga.</p>
+     *
+     * @param nombre El nombre del producto.
+     * @return {@code true} si el producto está en la distribución; {@code false} en caso contrario.
+     */
+    public boolean contieneProducto(String nombre) {
+        if (cargador != null) {
+            Set<String> nombres = this.productosGuardados;
+            if (nombres != null) return nombres.contains(nombre);
+        }
+        Distribucion actual = distribucion();
+        if (actual == null) return false;
+        for (Producto p : actual.getListaProductos()) {
+            if (p.getNombre().equals(nombre)) return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,35 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Clase <b>EventoIntentoAproximacion</b>.
+ * <p>
+ * Evento de <i>JDK Flight Recorder</i> que se emite en cada reinicio de {@link AlgoritmoAproximacion}:
+ * la fase que parte de una distribución aleatoria y la mejora con intercambios hasta un óptimo local.
+ * Indica si el intento ha mejorado la mejor solución encontrada hasta entonces.
+ */
+@Name("edu.upc.prop.clusterxx.IntentoAproximacion")
+@Label("Intento de hill climbing")
+@Category({"PROP", "Dominio"})
+@Description("Un reinicio aleatorio seguido de mejoras locales en AlgoritmoAproximacion")
+public class EventoIntentoAproximacion extends Event {
+    @Label("Intento")
+    int intento;
+
+    @Label("Afinidad inicial")
+    int afinidadInicial;
+
+    @Label("Afinidad final")
+    int afinidadFinal;
+
+    @Label("Mejoras aplicadas")
+    int mejoras;
+
+    @Label("Nueva mejor solución")
+    boolean nuevaMejor;
+}
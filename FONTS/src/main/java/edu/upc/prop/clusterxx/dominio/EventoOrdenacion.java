@@ -0,0 +1,34 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Clase <b>EventoOrdenacion</b>.
+ * <p>
+ * Evento de <i>JDK Flight Recorder</i> que se emite en cada ordenación de una distribución
+ * ({@link Distribucion#ordenar(int)}), con su duración, para correlacionarla con la actividad del
+ * recolector de basura y las muestras de CPU de una grabación. Si la grabación no tiene el evento
+ * activado, crearlo y comprobar {@link #shouldCommit()} no cuesta prácticamente nada.
+ */
+@Name("edu.upc.prop.clusterxx.Ordenacion")
+@Label("Ordenación de una distribución")
+@Category({"PROP", "Dominio"})
+@Description("Ejecución de un algoritmo de ordenación sobre una distribución")
+public class EventoOrdenacion extends Event {
+    @Label("Algoritmo")
+    String algoritmo;
+
+    @Label("Productos")
+    int productos;
+
+    @Label("Afinidad total")
+    int afinidad;
+
+    @Label("Resultado de la caché")
+    @Description("El resultado se ha obtenido de la caché de distribuciones sin ejecutar el algoritmo")
+    boolean cache;
+}
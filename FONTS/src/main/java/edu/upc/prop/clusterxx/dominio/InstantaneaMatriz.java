@@ -0,0 +1,125 @@
+package edu.upc.prop.clusterxx.dominio;
+
+/**
+ * Clase <b>InstantaneaMatriz</b>.
+ * <p>
+ * Copia inmutable y versionada de la matriz de afinidades entre tipos. Los algoritmos capturan
+ * una instantánea al empezar y la usan durante toda la ejecución, de modo que un cambio de la
+ * matriz a mitad de una optimización no afecta a los resultados.
+ * <p>
+ * Los valores se guardan en un único vector de enteros. Si la matriz es simétrica sólo se guarda
+ * el triángulo inferior (incluida la diagonal); en caso contrario se guarda la matriz completa por filas.
+ * Cada instantánea tiene un número de versión creciente que permite invalidar las tablas
+ * calculadas a partir de ella.
+ */
+public final class InstantaneaMatriz {
+    /**
+     * Número de filas (y columnas) de la matriz.
+     */
+    private final int n;
+    /**
+     * Versión de la matriz. Dos instantáneas con la misma versión tienen los mismos valores.
+     */
+    private final long version;
+    /**
+     * Indica si la matriz es simétrica y, por tanto, se guarda sólo el triángulo inferior.
+     */
+    private final boolean simetrica;
+    /**
+     * Valores de la matriz aplanados.
+     */
+    private final int[] valores;
+
+    /**
+     * Crea una instantánea a partir de una matriz cuadrada.
+     *
+     * <p><b>Pre:</b> {@code matriz} es una matriz cuadrada de enteros no nula.</p>
+     * <p><b>Post:</b> Se crea una copia inmutable de la matriz con la versión indicada.</p>
+     *
+     * @param matriz  La matriz de afinidades.
+     * @param version El número de versión asignado.
+     */
+    InstantaneaMatriz(int[][] matriz, long version) {
+        this.n = matriz.length;
+        this.version = version;
+        this.simetrica = esSimetrica(matriz);
+        if (simetrica) {
+            this.valores = new int[n * (n + 1) / 2];
+            int k = 0;
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j <= i; ++j) {
+                    valores[k++] = matriz[i][j];
+                }
+            }
+        } else {
+            this.valores = new int[n * n];
+            for (int i = 0; i < n; ++i) {
+                System.arraycopy(matriz[i], 0, valores, i * n, n);
+            }
+        }
+    }
+
+    /**
+     * Comprueba si una matriz cuadrada es simétrica.
+     *
+     * @param matriz La matriz a comprobar.
+     * @return {@code true} si {@code matriz[i][j] == matriz[j][i]} para todo par.
+     */
+    private static boolean esSimetrica(int[][] matriz) {
+        for (int i = 0; i < matriz.length; ++i) {
+            for (int j = 0; j < i; ++j) {
+                if (matriz[i][j] != matriz[j][i]) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Obtiene el valor de afinidad entre los tipos {@code i} y {@code j}.
+     *
+     * <p><b>Pre:</b> {@code 0 <= i, j < getDimension()}.</p>
+     *
+     * @param i Identificador del primer tipo.
+     * @param j Identificador del segundo tipo.
+     * @return El valor de la posición (i, j) de la matriz.
+     */
+    public int get(int i, int j) {
+        if (simetrica) {
+            return i >= j ? valores[i * (i + 1) / 2 + j] : valores[j * (j + 1) / 2 + i];
+        }
+        return valores[i * n + j];
+    }
+
+    /**
+     * Obtiene la dimensión de la matriz.
+     *
+     * @return El número de tipos representados.
+     */
+    public int getDimension() {
+        return n;
+    }
+
+    /**
+     * Obtiene la versión de la instantánea.
+     *
+     * @return El número de versión.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Devuelve una copia de la instantánea en forma de matriz bidimensional.
+     *
+     * @return Una matriz nueva con los mismos valores.
+     */
+    public int[][] aMatriz() {
+        int[][] m = new int[n][n];
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                m[i][j] = get(i, j);
+            }
+        }
+        return m;
+    }
+}
@@ -1,19 +1,33 @@
 package edu.upc.prop.clusterxx.dominio;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Clase <b>Matriz</b>.
  * <p>
  * Se trata de una clase singleton que contiene una matriz.
  * La matriz que se guarda en esta clase es la misma que la de Utils, para así ahorrar consultas innecesarias a la persistencia.
  * La clase contiene las funciones para cargar y leer la matriz.
+ * <p>
+ * Internamente la matriz se guarda como una {@link InstantaneaMatriz} inmutable. Cada llamada a
+ * {@link #setMatriz} publica una instantánea nueva con una versión mayor, sin modificar las que
+ * estén usando los algoritmos en curso.
  */
 public class Matriz {
-    private int[][] matriz;
+    /**
+     * Instantánea actual de la matriz de afinidades.
+     */
+    private volatile InstantaneaMatriz instantanea;
+
+    /**
+     * Contador de versiones de la matriz.
+     */
+    private final AtomicLong versiones = new AtomicLong();
 
     /**
      * Declaración de instancia de matriz.
      */
-    private static Matriz instance;
+    private static final Matriz instance = new Matriz();
 
     /**
      * Obtiene la instancia única de la clase {@code Matriz}.
@@ -21,30 +35,50 @@ public class Matriz {
      * @return La instancia única de {@code Matriz}.
      */
     public static Matriz getInstance() {
-        if (instance == null) {
-            instance = new Matriz();
-        }
         return instance;
     }
 
     /**
      * Establece la matriz de afinidades.
      *
-     * <p><b>Pre:</b> Recibe una matriz de enteros {@code matriz}.</p>
-     * <p><b>Post:</b> La matriz de la clase es igual a la matriz entrante.</p>
+     * <p><b>Pre:</b> Recibe una matriz cuadrada de enteros {@code matriz}.</p>
+     * <p><b>Post:</b> La matriz de la clase es igual a la matriz entrante y su versión se incrementa.
+     * Los cambios posteriores sobre {@code matriz} no afectan a la clase.</p>
      *
      * @param matriz La matriz de enteros a establecer.
      */
     public void setMatriz(int[][] matriz) {
-        this.matriz = matriz;
+        this.instantanea = new InstantaneaMatriz(matriz, versiones.incrementAndGet());
     }
 
     /**
      * Obtiene la matriz de afinidades.
      *
-     * @return La matriz de enteros almacenada en la clase.
+     * @return Una copia de la matriz de enteros almacenada en la clase, o {@code null} si no se ha cargado.
      */
     public int[][] getMatriz() {
-        return this.matriz;
+        InstantaneaMatriz actual = this.instantanea;
+        return actual != null ? actual.aMatriz() : null;
+    }
+
+    /**
+     * Obtiene la instantánea actual de la matriz de afinidades.
+     * <p>
+     * Los algoritmos deben capturarla una sola vez al empezar y usarla durante toda su ejecución.
+     *
+     * @return La instantánea inmutable actual, o {@code null} si no se ha cargado ninguna matriz.
+     */
+    public InstantaneaMatriz getInstantanea() {
+        return this.instantanea;
+    }
+
+    /**
+     * Obtiene la versión de la matriz actual.
+     *
+     * @return El número de versión, o {@code 0} si no se ha cargado ninguna matriz.
+     */
+    public long getVersion() {
+        InstantaneaMatriz actual = this.instantanea;
+        return actual != null ? actual.getVersion() : 0;
     }
 }
@@ -0,0 +1,344 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase <b>Metricas</b>.
+ * <p>
+ * Se trata de una clase singleton que hace de registro de métricas dentro del propio proceso, sin ningún
+ * servicio externo, para saber dónde se va el tiempo al ordenar: construcción de afinidades, copias de
+ * listas o la propia búsqueda. Contiene:
+ * <ul>
+ *     <li><i>Contadores</i>: sumas acumuladas (ejecuciones, evaluaciones de afinidad, movimientos...).</li>
+ *     <li><i>Histogramas</i>: número, suma, mínimo, máximo y cubetas por potencias de dos de una medida
+ *     (tiempos, bytes asignados...), de los que se aproximan percentiles.</li>
+ *     <li><i>Series</i>: la evolución de la mejor afinidad en el tiempo de la última ejecución de cada algoritmo.</li>
+ * </ul>
+ * Todo se puede volcar como JSON ({@link #aJson()}). Si se arranca la aplicación con la propiedad del
+ * sistema {@code metricas.fichero}, al terminar el proceso se escribe el volcado en ese fichero, lo que
+ * permite obtener las métricas de ejecuciones sin interfaz gráfica.
+ * <p>
+ * Los algoritmos acumulan sus medidas en variables locales con {@link Ejecucion} y sólo las publican al
+ * terminar, así que el coste en los bucles internos es despreciable.
+ */
+public class Metricas {
+    /**
+     * Propiedad del sistema con la ruta del fichero donde volcar las métricas al terminar el proceso.
+     */
+    public static final String PROPIEDAD_FICHERO = "metricas.fichero";
+
+    /**
+     * Número máximo de puntos que se guardan de cada serie.
+     */
+    private static final int MAX_PUNTOS = 200;
+
+    /**
+     * Instancia única del registro.
+     */
+    private static final Metricas instance = new Metricas();
+
+    private final ConcurrentHashMap<String, LongAdder> contadores = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histograma> histogramas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, long[][]> series = new ConcurrentHashMap<>();
+
+    /**
+     * Histograma con cubetas por potencias de dos: la cubeta {@code b} cuenta los valores de
+     * {@code [2^(b-1), 2^b)}, y la 0 los valores menores que 1.
+     */
+    private static final class Histograma {
+        final LongAdder numero = new LongAdder();
+        final LongAdder suma = new LongAdder();
+        final LongAccumulator minimo = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        final LongAccumulator maximo = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        final AtomicLongArray cubetas = new AtomicLongArray(64);
+
+        void registrar(long valor) {
+            long v = Math.max(0, valor);
+            numero.increment();
+            suma.add(v);
+            minimo.accumulate(v);
+            maximo.accumulate(v);
+            cubetas.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(v)));
+        }
+
+        /**
+         * Aproxima el percentil {@code q} por el límite superior de la cubeta en que cae.
+         */
+        long percentil(double q) {
+            long total = numero.sum();
+            if (total == 0) return 0;
+            long objetivo = (long) Math.ceil(q * total);
+            long acumulado = 0;
+            for (int b = 0; b < 64; ++b) {
+                acumulado += cubetas.get(b);
+                if (acumulado >= objetivo) return Math.min(maximo.get(), b == 0 ? 0 : (1L << b) - 1);
+            }
+            return maximo.get();
+        }
+    }
+
+    /**
+     * Medidas de una ejecución de un algoritmo. No es segura entre hilos: la usa el hilo que
+     * coordina la ejecución y se publica en el registro con {@link #terminar()}.
+     */
+    public static final class Ejecucion {
+        private final String nombre;
+        private final long inicio = System.nanoTime();
+        private long probados;
+        private long aceptados;
+        private long reinicios;
+        private final ArrayList<long[]> mejoras = new ArrayList<>();
+
+        private Ejecucion(String nombre) {
+            this.nombre = nombre;
+        }
+
+        /**
+         * Cuenta {@code k} movimientos evaluados.
+         *
+         * @param k Número de movimientos.
+         */
+        public void probados(long k) {
+            probados += k;
+        }
+
+        /**
+         * Cuenta un movimiento aplicado.
+         */
+        public void aceptado() {
+            ++aceptados;
+        }
+
+        /**
+         * Cuenta {@code k} movimientos aplicados.
+         *
+         * @param k Número de movimientos.
+         */
+        public void aceptados(long k) {
+            aceptados += k;
+        }
+
+        /**
+         * Cuenta un reinicio (un nuevo intento, arranque o generación).
+         */
+        public void reinicio() {
+            ++reinicios;
+        }
+
+        /**
+         * Cuenta {@code k} reinicios.
+         *
+         * @param k Número de reinicios.
+         */
+        public void reinicios(long k) {
+            reinicios += k;
+        }
+
+        /**
+         * Anota una nueva mejor afinidad en el instante actual.
+         *
+         * @param afinidad La nueva mejor afinidad.
+         */
+        public void mejora(int afinidad) {
+            long[] punto = {(System.nanoTime() - inicio) / 1_000_000L, afinidad};
+            // Al llegar al máximo de puntos se sustituye el último, para conservar siempre el resultado final
+            if (mejoras.size() < MAX_PUNTOS) mejoras.add(punto);
+            else mejoras.set(MAX_PUNTOS - 1, punto);
+        }
+
+        /**
+         * Publica las medidas en el registro: contadores, tiempo y, si se ha anotado alguna mejora, la serie.
+         */
+        public void terminar() {
+            Metricas m = Metricas.getInstance();
+            m.contar(nombre + ".ejecuciones", 1);
+            if (probados > 0) m.contar(nombre + ".movimientosProbados", probados);
+            if (aceptados > 0) m.contar(nombre + ".movimientosAceptados", aceptados);
+            if (reinicios > 0) m.contar(nombre + ".reinicios", reinicios);
+            m.registrar(nombre + ".tiempoUs", (System.nanoTime() - inicio) / 1000);
+            if (!mejoras.isEmpty()) m.series.put(nombre + ".mejorAfinidad", mejoras.toArray(new long[0][]));
+        }
+    }
+
+    /**
+     * Constructor privado (singleton). Si se ha indicado {@code metricas.fichero}, registra el volcado al terminar.
+     */
+    private Metricas() {
+        String fichero = System.getProperty(PROPIEDAD_FICHERO);
+        if (fichero != null && !fichero.isEmpty()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    volcar(fichero);
+                } catch (IOException e) {
+                    System.err.println("No se han podido volcar las métricas en " + fichero + ": " + e.getMessage());
+                }
+            }));
+        }
+    }
+
+    /**
+     * Obtiene la instancia única de la clase {@code Metricas}.
+     *
+     * @return La instancia única de {@code Metricas}.
+     */
+    public static Metricas getInstance() {
+        return instance;
+    }
+
+    /**
+     * Empieza a medir una ejecución.
+     *
+     * @param nombre Nombre con el que se publican las medidas (normalmente, el del algoritmo).
+     * @return La ejecución, que se debe terminar con {@link Ejecucion#terminar()}.
+     */
+    public Ejecucion iniciar(String nombre) {
+        return new Ejecucion(nombre);
+    }
+
+    /**
+     * Suma {@code k} al contador indicado, creándolo si no existe.
+     *
+     * @param nombre Nombre del contador.
+     * @param k      Cantidad a sumar.
+     */
+    public void contar(String nombre, long k) {
+        contadores.computeIfAbsent(nombre, c -> new LongAdder()).add(k);
+    }
+
+    /**
+     * Obtiene el contador indicado, creándolo si no existe, para guardarlo y sumar sin buscarlo cada vez
+     * en los caminos más frecuentes.
+     *
+     * @param nombre Nombre del contador.
+     * @return El contador.
+     */
+    public LongAdder contador(String nombre) {
+        return contadores.computeIfAbsent(nombre, c -> new LongAdder());
+    }
+
+    /**
+     * Registra un valor en el histograma indicado, creándolo si no existe.
+     *
+     * @param nombre Nombre del histograma.
+     * @param valor  Valor a registrar (los negativos cuentan como 0).
+     */
+    public void registrar(String nombre, long valor) {
+        histogramas.computeIfAbsent(nombre, h -> new Histograma()).registrar(valor);
+    }
+
+    /**
+     * Obtiene el valor de un contador.
+     *
+     * @param nombre Nombre del contador.
+     * @return El valor acumulado, o 0 si el contador no existe.
+     */
+    public long getContador(String nombre) {
+        LongAdder c = contadores.get(nombre);
+        return c == null ? 0 : c.sum();
+    }
+
+    /**
+     * Obtiene los bytes asignados hasta ahora por el hilo actual, si la máquina virtual lo permite.
+     *
+     * @return Los bytes asignados, o -1 si no se pueden medir.
+     */
+    public static long bytesAsignadosHilo() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) bean;
+            if (hilos.isThreadAllocatedMemorySupported() && hilos.isThreadAllocatedMemoryEnabled()) {
+                return hilos.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Pone a cero los contadores y borra los histogramas y las series.
+     */
+    public void reiniciar() {
+        contadores.values().forEach(LongAdder::reset);
+        histogramas.clear();
+        series.clear();
+    }
+
+    /**
+     * Construye el volcado JSON de todas las métricas, con los nombres ordenados alfabéticamente.
+     *
+     * @return El JSON con los contadores, histogramas y series.
+     */
+    public String aJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"contadores\": {");
+        String sep = "\n";
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(contadores).entrySet()) {
+            sb.append(sep).append("    ").append(cadena(e.getKey())).append(": ").append(e.getValue().sum());
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"histogramas\": {");
+        sep = "\n";
+        for (Map.Entry<String, Histograma> e : new TreeMap<>(histogramas).entrySet()) {
+            Histograma h = e.getValue();
+            long n = h.numero.sum();
+            long suma = h.suma.sum();
+            sb.append(sep).append("    ").append(cadena(e.getKey())).append(": {")
+                    .append("\"n\": ").append(n)
+                    .append(", \"suma\": ").append(suma)
+                    .append(", \"min\": ").append(n == 0 ? 0 : h.minimo.get())
+                    .append(", \"max\": ").append(n == 0 ? 0 : h.maximo.get())
+                    .append(", \"media\": ").append(n == 0 ? 0 : suma / n)
+                    .append(", \"p50\": ").append(h.percentil(0.5))
+                    .append(", \"p90\": ").append(h.percentil(0.9))
+                    .append(", \"p99\": ").append(h.percentil(0.99))
+                    .append('}');
+            sep = ",\n";
+        }
+        sb.append("\n  },\n  \"series\": {");
+        sep = "\n";
+        for (Map.Entry<String, long[][]> e : new TreeMap<>(series).entrySet()) {
+            sb.append(sep).append("    ").append(cadena(e.getKey())).append(": [");
+            String sepPunto = "";
+            for (long[] punto : e.getValue()) {
+                sb.append(sepPunto).append('[').append(punto[0]).append(", ").append(punto[1]).append(']');
+                sepPunto = ", ";
+            }
+            sb.append(']');
+            sep = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Escribe el volcado JSON de las métricas en un fichero.
+     *
+     * @param ruta Ruta del fichero.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public void volcar(String ruta) throws IOException {
+        Files.write(Paths.get(ruta), aJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Escribe un texto como cadena JSON.
+     */
+    private static String cadena(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -1,6 +1,7 @@
 package edu.upc.prop.clusterxx.dominio;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Clase <b>Producto</b>.
@@ -13,6 +14,11 @@ public class Producto {
     private String nombre;
     private final ArrayList<Tipo> atributosT;
     private final ArrayList<Contexto> atributosC;
+    /**
+     * Firma de atributos del producto (ver {@link CacheAfinidad}). Vale 0 mientras no se ha calculado
+     * y se invalida cada vez que cambian los atributos. No se persiste.
+     */
+    private transient volatile int firma;
 
     /**
      * Establece los atributos del producto a partir de una lista de atributos proporcionada.
@@ -92,6 +98,44 @@ public class Producto {
         return this.atributosC;
     }
 
+    /**
+     * Obtiene la firma de atributos del producto.
+     * <p>
+     * Dos productos con los mismos tipos y contextos (sin importar el orden) tienen la misma firma,
+     * y por tanto la misma afinidad con cualquier otro producto. La firma se calcula la primera vez
+     * que se pide y se reutiliza hasta que cambian los atributos.
+     *
+     * @return Un entero positivo que identifica la combinación de atributos del producto.
+     */
+    public int getFirma() {
+        int f = this.firma;
+        if (f == 0) {
+            f = CacheAfinidad.getInstance().registrarFirma(claveAtributos());
+            this.firma = f;
+        }
+        return f;
+    }
+
+    /**
+     * Construye la clave canónica de los atributos del producto: los ids de los tipos ordenados
+     * seguidos de los nombres de los contextos ordenados.
+     *
+     * @return La clave textual de la combinación de atributos.
+     */
+    private String claveAtributos() {
+        int[] ids = new int[atributosT.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = atributosT.get(i).getId();
+        }
+        Arrays.sort(ids);
+        String[] contextos = new String[atributosC.size()];
+        for (int i = 0; i < contextos.length; ++i) {
+            contextos[i] = atributosC.get(i).getNombre();
+        }
+        Arrays.sort(contextos);
+        return Arrays.toString(ids) + "|" + String.join("|", contextos);
+    }
+
     // SETTERS
 
     /**
@@ -127,5 +171,6 @@ public class Producto {
         this.atributosC.clear();
         this.atributosT.clear();
         setAtr(AtributosProducto);
+        this.firma = 0;
     }
 }
@@ -0,0 +1,277 @@
+package edu.upc.prop.clusterxx.dominio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Clase <b>TablaAfinidad</b>.
+ * <p>
+ * Tabla precalculada con la afinidad entre todos los pares de productos de una lista, pensada para
+ * los algoritmos que consultan muchas veces la afinidad de los mismos pares.
+ * <p>
+ * En lugar de guardar una matriz n×n, los productos se agrupan por firma de atributos: se guarda la clase
+ * (firma) de cada producto y una tabla k×k con la afinidad entre clases, donde k es el número de firmas
+ * distintas de la lista. La memoria y el coste de construcción son O(n + k²) y cada consulta son dos
+ * accesos a vectores de enteros.
+ * <p>
+ * La tabla corresponde a una versión concreta de la matriz de afinidades ({@link #getVersion()}).
+ */
+public final class TablaAfinidad {
+    /**
+     * Productos de la tabla, en el orden de sus índices.
+     */
+    private final ArrayList<Producto> productos;
+    /**
+     * Número de productos de la tabla.
+     */
+    private final int n;
+    /**
+     * Número de firmas distintas entre los productos.
+     */
+    private final int k;
+    /**
+     * Clase (índice de firma, de 0 a k-1) de cada producto.
+     */
+    private final int[] clase;
+    /**
+     * Afinidad entre clases, guardada por filas en un vector de k×k.
+     */
+    private final int[] valores;
+    /**
+     * Versión de la matriz de afinidades con la que se ha construido la tabla.
+     */
+    private final long version;
+
+    /**
+     * Construye la tabla de afinidades de una lista de productos.
+     *
+     * <p><b>Pre:</b> {@code productos} no contiene nulos y {@code matriz} no es null.</p>
+     * <p><b>Post:</b> {@code get(i, j)} devuelve la afinidad entre {@code productos.get(i)} y {@code productos.get(j)}.</p>
+     *
+     * @param productos Lista de productos; los índices de la tabla son sus posiciones.
+     * @param matriz    Instantánea de la matriz de afinidades.
+     */
+    public TablaAfinidad(ArrayList<Producto> productos, InstantaneaMatriz matriz) {
+        long inicio = System.nanoTime();
+        this.productos = new ArrayList<>(productos);
+        this.n = productos.size();
+        this.version = matriz.getVersion();
+        this.clase = new int[n];
+
+        HashMap<Integer, Integer> indiceFirma = new HashMap<>();
+        ArrayList<Producto> representantes = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            Producto p = productos.get(i);
+            Integer c = indiceFirma.get(p.getFirma());
+            if (c == null) {
+                c = representantes.size();
+                indiceFirma.put(p.getFirma(), c);
+                representantes.add(p);
+            }
+            clase[i] = c;
+        }
+
+        this.k = representantes.size();
+        this.valores = new int[k * k];
+        CacheAfinidad cache = CacheAfinidad.getInstance();
+        for (int a = 0; a < k; ++a) {
+            for (int b = 0; b < k; ++b) {
+                valores[a * k + b] = cache.obtener(representantes.get(a), representantes.get(b), matriz);
+            }
+        }
+        Metricas metricas = Metricas.getInstance();
+        metricas.registrar("tablaAfinidad.construccionUs", (System.nanoTime() - inicio) / 1000);
+        metricas.registrar("tablaAfinidad.clases", k);
+    }
+
+    /**
+     * Construye una tabla directamente a partir de una matriz de afinidades entre posiciones, sin
+     * productos asociados. Se usa para medir el rendimiento de los algoritmos ({@link CalibracionAlgoritmos}).
+     *
+     * <p><b>Pre:</b> {@code afinidades} es una matriz cuadrada.</p>
+     * <p><b>Post:</b> {@code get(i, j) == afinidades[i][j]}; {@link #aLista(int[])} no se puede usar.</p>
+     *
+     * @param afinidades Afinidad entre cada par de posiciones.
+     */
+    TablaAfinidad(int[][] afinidades) {
+        this.productos = new ArrayList<>();
+        this.n = afinidades.length;
+        this.k = n;
+        this.version = 0;
+        this.clase = new int[n];
+        this.valores = new int[n * n];
+        for (int i = 0; i < n; ++i) {
+            clase[i] = i;
+            System.arraycopy(afinidades[i], 0, valores, i * n, n);
+        }
+    }
+
+    /**
+     * Construye la tabla de un subconjunto de productos reutilizando las clases y afinidades ya calculadas.
+     *
+     * @param origen  Tabla original.
+     * @param indices Posiciones en {@code origen} de los productos del subconjunto.
+     */
+    private TablaAfinidad(TablaAfinidad origen, int[] indices) {
+        this.productos = new ArrayList<>(indices.length);
+        this.n = indices.length;
+        this.k = origen.k;
+        this.valores = origen.valores;
+        this.version = origen.version;
+        this.clase = new int[n];
+        for (int i = 0; i < n; ++i) {
+            productos.add(origen.productos.get(indices[i]));
+            clase[i] = origen.clase[indices[i]];
+        }
+    }
+
+    /**
+     * Obtiene la tabla de un subconjunto de los productos, sin recalcular ninguna afinidad.
+     *
+     * <p><b>Pre:</b> {@code indices} contiene posiciones válidas de esta tabla.</p>
+     * <p><b>Post:</b> La posición {@code i} de la tabla devuelta corresponde a la posición
+     * {@code indices[i]} de esta tabla.</p>
+     *
+     * @param indices Posiciones de los productos del subconjunto.
+     * @return La tabla del subconjunto.
+     */
+    public TablaAfinidad subtabla(int[] indices) {
+        return new TablaAfinidad(this, indices);
+    }
+
+    /**
+     * Obtiene la afinidad entre los productos de las posiciones {@code i} y {@code j}.
+     *
+     * <p><b>Pre:</b> {@code 0 <= i, j < size()}.</p>
+     *
+     * @param i Posición del primer producto.
+     * @param j Posición del segundo producto.
+     * @return La afinidad entre ambos productos.
+     */
+    public int get(int i, int j) {
+        return valores[clase[i] * k + clase[j]];
+    }
+
+    /**
+     * Calcula la afinidad total de un orden de productos, con el mismo criterio que
+     * {@link Distribucion}: la suma de las afinidades entre productos consecutivos más la
+     * afinidad entre el primero y el último.
+     *
+     * <p><b>Pre:</b> {@code orden} es una permutación no vacía de índices de la tabla.</p>
+     *
+     * @param orden Índices de los productos en el orden a evaluar.
+     * @return La afinidad total del orden.
+     */
+    public int afinidadCircular(int[] orden) {
+        int total = 0;
+        for (int i = 0; i < orden.length - 1; ++i) {
+            total += get(orden[i], orden[i + 1]);
+        }
+        return total + get(orden[0], orden[orden.length - 1]);
+    }
+
+    /**
+     * Convierte un orden de índices en la lista de productos correspondiente.
+     *
+     * @param orden Índices de los productos.
+     * @return Una lista nueva con los productos en ese orden.
+     */
+    public ArrayList<Producto> aLista(int[] orden) {
+        ArrayList<Producto> lista = new ArrayList<>(orden.length);
+        for (int i : orden) {
+            lista.add(productos.get(i));
+        }
+        return lista;
+    }
+
+    /**
+     * Calcula las listas de vecinos candidatos: para cada producto, los {@code m} productos con los que
+     * tiene mayor afinidad, de mayor a menor (a igual afinidad, en un orden fijo que sólo depende de la tabla y del producto).
+     * <p>
+     * Como la afinidad sólo depende de la clase, basta con ordenar una vez las clases por afinidad
+     * para cada clase y recorrer sus miembros, con coste O(k² log k + n·m).
+     *
+     * <p><b>Pre:</b> {@code m >= 0}.</p>
+     * <p><b>Post:</b> Devuelve un vector de {@code size() * min(m, size() - 1)} posiciones donde los
+     * candidatos del producto {@code i} ocupan el tramo que empieza en {@code i * min(m, size() - 1)}.</p>
+     *
+     * @param m Número máximo de candidatos por producto.
+     * @return Las listas de candidatos concatenadas.
+     */
+    public int[] vecinos(int m) {
+        int porProducto = Math.max(0, Math.min(m, n - 1));
+        int[] resultado = new int[n * porProducto];
+        if (porProducto == 0) return resultado;
+
+        int[][] miembros = new int[k][];
+        int[] tam = new int[k];
+        for (int i = 0; i < n; ++i) ++tam[clase[i]];
+        for (int c = 0; c < k; ++c) miembros[c] = new int[tam[c]];
+        int[] llenos = new int[k];
+        int[] posicion = new int[n];
+        for (int i = 0; i < n; ++i) {
+            posicion[i] = llenos[clase[i]];
+            miembros[clase[i]][llenos[clase[i]]++] = i;
+        }
+
+        // Clases con algún producto (en una subtabla puede haber clases vacías)
+        int noVacias = 0;
+        for (int c = 0; c < k; ++c) if (tam[c] > 0) ++noVacias;
+        Integer[][] ordenClases = new Integer[k][];
+        for (int a = 0; a < k; ++a) {
+            if (tam[a] == 0) continue;
+            Integer[] orden = new Integer[noVacias];
+            for (int b = 0, t = 0; b < k; ++b) if (tam[b] > 0) orden[t++] = b;
+            final int fila = a * k;
+            Arrays.sort(orden, (x, y) -> valores[fila + y] != valores[fila + x]
+                    ? Integer.compare(valores[fila + y], valores[fila + x])
+                    : Integer.compare(miembros[x][0], miembros[y][0]));
+            ordenClases[a] = orden;
+        }
+
+        // Dentro de cada clase se empieza en un desplazamiento distinto para cada producto, de modo
+        // que los candidatos de productos equivalentes no se concentren en los mismos miembros.
+        for (int i = 0; i < n; ++i) {
+            int pos = i * porProducto;
+            int fin = pos + porProducto;
+            for (int c : ordenClases[clase[i]]) {
+                int[] lista = miembros[c];
+                int inicio = (c == clase[i] ? posicion[i] + 1 : i) % lista.length;
+                for (int t = 0; t < lista.length && pos < fin; ++t) {
+                    int j = lista[(inicio + t) % lista.length];
+                    if (j != i) resultado[pos++] = j;
+                }
+                if (pos == fin) break;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Obtiene el número de productos de la tabla.
+     *
+     * @return El número de productos.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Obtiene el número de firmas de atributos distintas entre los productos de la tabla.
+     *
+     * @return El número de clases de productos.
+     */
+    public int getNumClases() {
+        return k;
+    }
+
+    /**
+     * Obtiene la versión de la matriz de afinidades con la que se construyó la tabla.
+     *
+     * @return El número de versión de la matriz.
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,84 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import edu.upc.prop.clusterxx.dominio.Producto;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Clase <b>AdaptadorReferenciaProducto</b>.
+ * <p>
+ * Adaptador de Gson que guarda los productos de las distribuciones de las estanterías como una
+ * referencia (su nombre) en lugar de una copia completa, y al leerlos los enlaza con los productos ya
+ * cargados. Así los ficheros de estanterías no repiten cada producto dos veces (en la lista de productos
+ * y en la ordenada) y, tras cargarlos, la distribución contiene los mismos objetos que la lista de
+ * productos del sistema.
+ * <p>
+ * Los ficheros antiguos, con los productos completos, se siguen pudiendo leer: el producto se enlaza con
+ * el cargado del mismo nombre y, si no hay ninguno, se conserva la copia leída.
+ */
+class AdaptadorReferenciaProducto extends TypeAdapter<Producto> {
+    /**
+     * Productos cargados, por nombre.
+     */
+    private final Map<String, Producto> productos;
+
+    /**
+     * Constructor del adaptador.
+     *
+     * @param productos Productos con los que se enlazan las referencias, por nombre.
+     */
+    AdaptadorReferenciaProducto(Map<String, Producto> productos) {
+        this.productos = productos;
+    }
+
+    /**
+     * Escribe la referencia a un producto.
+     *
+     * @param out      Escritor JSON.
+     * @param producto Producto a escribir.
+     * @throws IOException Si hay un error de escritura.
+     */
+    @Override
+    public void write(JsonWriter out, Producto producto) throws IOException {
+        if (producto == null) {
+            out.nullValue();
+        } else {
+            out.value(producto.getNombre());
+        }
+    }
+
+    /**
+     * Lee una referencia a un producto (o un producto completo del formato antiguo) y la enlaza con el
+     * producto cargado del mismo nombre.
+     *
+     * @param in Lector JSON.
+     * @return El producto cargado con ese nombre.
+     * @throws IOException Si hay un error de lectura.
+     * @throws JsonParseException Si la referencia no corresponde a ningún producto cargado.
+     */
+    @Override
+    public Producto read(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BEGIN_OBJECT) {
+            Producto copia = AdaptadoresJson.PRODUCTO.read(in);
+            Producto cargado = productos.get(copia.getNombre());
+            return cargado != null ? cargado : copia;
+        }
+        String nombre = in.nextString();
+        Producto cargado = productos.get(nombre);
+        if (cargado == null) {
+            throw new JsonParseException("el producto " + nombre + " de la distribución no existe");
+        }
+        return cargado;
+    }
+}
@@ -0,0 +1,373 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import edu.upc.prop.clusterxx.dominio.Atributo;
+import edu.upc.prop.clusterxx.dominio.Contexto;
+import edu.upc.prop.clusterxx.dominio.Distribucion;
+import edu.upc.prop.clusterxx.dominio.Estanteria;
+import edu.upc.prop.clusterxx.dominio.Producto;
+import edu.upc.prop.clusterxx.dominio.Tipo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Clase <b>AdaptadoresJson</b>.
+ * <p>
+ * Registro de los adaptadores de Gson con los que se leen y escriben los ficheros JSON de productos y
+ * estanterías. Están escritos a mano sobre {@link JsonReader} y {@link JsonWriter}, sin reflexión, y se
+ * crean una sola vez en lugar de construir un {@code Gson} en cada llamada.
+ * <p>
+ * El JSON es el mismo que generaba Gson por reflexión, para que los ficheros existentes sigan siendo
+ * válidos: los campos en el orden en que están declarados (los de la subclase antes que los heredados),
+ * sin los campos nulos y con los caracteres HTML escapados. Al leer, los campos pueden venir en cualquier
+ * orden y los desconocidos se ignoran.
+ * <p>
+ * Los ficheros se abren siempre con {@link #abrirLector(File)}, {@link #abrirLectorParcial(File)} y
+ * {@link #abrirEscritor(File, boolean)}, en UTF-8. Los lectores descomprimen los ficheros comprimidos con
+ * {@link CompresionFicheros} sin que el llamante tenga que saberlo.
+ */
+public final class AdaptadoresJson {
+    /**
+     * Adaptador de {@link Tipo}: {@code {"id":..,"nombre":..}}.
+     */
+    public static final TypeAdapter<Tipo> TIPO = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, Tipo tipo) throws IOException {
+            if (tipo == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(tipo.getId());
+            if (tipo.getNombre() != null) out.name("nombre").value(tipo.getNombre());
+            out.endObject();
+        }
+
+        @Override
+        public Tipo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            int id = 0;
+            String nombre = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> id = in.nextInt();
+                    case "nombre" -> nombre = cadena(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new Tipo(nombre, id);
+        }
+    };
+
+    /**
+     * Adaptador de {@link Contexto}: {@code {"nombre":..}}.
+     */
+    public static final TypeAdapter<Contexto> CONTEXTO = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, Contexto contexto) throws IOException {
+            if (contexto == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (contexto.getNombre() != null) out.name("nombre").value(contexto.getNombre());
+            out.endObject();
+        }
+
+        @Override
+        public Contexto read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String nombre = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("nombre")) nombre = cadena(in);
+                else in.skipValue();
+            }
+            in.endObject();
+            return new Contexto(nombre);
+        }
+    };
+
+    /**
+     * Adaptador de {@link Producto} completo: {@code {"nombre":..,"atributosT":[..],"atributosC":[..]}}.
+     */
+    public static final TypeAdapter<Producto> PRODUCTO = new TypeAdapter<>() {
+        @Override
+        public void write(JsonWriter out, Producto producto) throws IOException {
+            if (producto == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("nombre").value(producto.getNombre());
+            out.name("atributosT");
+            escribirLista(out, producto.getAtributosT(), TIPO);
+            out.name("atributosC");
+            escribirLista(out, producto.getAtributosC(), CONTEXTO);
+            out.endObject();
+        }
+
+        @Override
+        public Producto read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String nombre = null;
+            ArrayList<Atributo> atributos = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "nombre" -> nombre = cadena(in);
+                    case "atributosT" -> {
+                        ArrayList<Tipo> tipos = leerLista(in, TIPO);
+                        if (tipos != null) atributos.addAll(tipos);
+                    }
+                    case "atributosC" -> {
+                        ArrayList<Contexto> contextos = leerLista(in, CONTEXTO);
+                        if (contextos != null) atributos.addAll(contextos);
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            try {
+                return new Producto(nombre == null ? "" : nombre, atributos);
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+    };
+
+    /**
+     * Clase de utilidades: no se instancia.
+     */
+    private AdaptadoresJson() {
+    }
+
+    /**
+     * Crea el adaptador de {@link Distribucion} que guarda sus productos con el adaptador indicado.
+     *
+     * @param productos Adaptador de los productos de las listas.
+     * @return El adaptador de distribuciones.
+     */
+    public static TypeAdapter<Distribucion> distribucion(TypeAdapter<Producto> productos) {
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter out, Distribucion d) throws IOException {
+                if (d == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                if (d.getId() != null) out.name("id").value(d.getId());
+                out.name("afinidadTotal").value(d.getAfinidadTotal());
+                out.name("listaProductos");
+                escribirLista(out, d.getListaProductos(), productos);
+                out.name("listaOrdenada");
+                escribirLista(out, d.getListaOrdenada(), productos);
+                out.name("numEstantes").value(d.getNumEstantes());
+                out.name("afinidadVertical").value(d.tieneAfinidadVertical());
+                out.name("semilla").value(d.getSemilla());
+                out.endObject();
+            }
+
+            @Override
+            public Distribucion read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                String id = null;
+                int afinidadTotal = 0;
+                ArrayList<Producto> listaProductos = null;
+                ArrayList<Producto> listaOrdenada = null;
+                int numEstantes = 0;
+                boolean afinidadVertical = false;
+                long semilla = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "id" -> id = cadena(in);
+                        case "afinidadTotal" -> afinidadTotal = in.nextInt();
+                        case "listaProductos" -> listaProductos = leerLista(in, productos);
+                        case "listaOrdenada" -> listaOrdenada = leerLista(in, productos);
+                        case "numEstantes" -> numEstantes = in.nextInt();
+                        case "afinidadVertical" -> afinidadVertical = in.nextBoolean();
+                        case "semilla" -> semilla = in.nextLong();
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                Distribucion d = new Distribucion(id, listaProductos != null ? listaProductos : new ArrayList<>(),
+                        listaOrdenada, afinidadTotal);
+                d.setDisposicion(numEstantes, afinidadVertical);
+                d.setSemilla(semilla);
+                return d;
+            }
+        };
+    }
+
+    /**
+     * Crea el adaptador de {@link Estanteria}, con los productos de su distribución guardados por nombre
+     * y enlazados con los productos indicados al leerlos (ver {@link AdaptadorReferenciaProducto}).
+     *
+     * @param productos Productos cargados, por nombre.
+     * @return El adaptador de estanterías.
+     */
+    public static TypeAdapter<Estanteria> estanteria(Map<String, Producto> productos) {
+        TypeAdapter<Distribucion> distribucion = distribucion(new AdaptadorReferenciaProducto(productos));
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter out, Estanteria e) throws IOException {
+                if (e == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                out.name("id").value(e.getId());
+                out.name("numPrestatges").value(e.getNumPrestatges());
+                if (e.existeDistribucion()) {
+                    out.name("distribucion");
+                    distribucion.write(out, e.getDistribucion());
+                }
+                out.endObject();
+            }
+
+            @Override
+            public Estanteria read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                String id = null;
+                int numPrestatges = 0;
+                Distribucion d = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "id" -> id = cadena(in);
+                        case "numPrestatges" -> numPrestatges = in.nextInt();
+                        case "distribucion" -> d = distribucion.read(in);
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                try {
+                    Estanteria e = new Estanteria(id == null ? "" : id, numPrestatges);
+                    if (d != null) e.setDistribucion(d);
+                    return e;
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex.getMessage());
+                }
+            }
+        };
+    }
+
+    /**
+     * Abre un fichero JSON para leerlo.
+     * <p>
+     * Los ficheros son pequeños, así que se leen enteros de una vez y se analizan desde memoria: así sólo
+     * se reserva el tamaño del fichero, en lugar de los búferes de 8 KB de un lector de flujo por cada
+     * fichero. Si el fichero está comprimido, se descomprime en memoria.
+     *
+     * @param archivo Fichero a leer.
+     * @return El lector JSON; hay que cerrarlo.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    public static JsonReader abrirLector(File archivo) throws IOException {
+        String contenido = new String(CompresionFicheros.leer(archivo), StandardCharsets.UTF_8);
+        return new JsonReader(new StringReader(contenido));
+    }
+
+    /**
+     * Abre un fichero JSON para leer sólo su principio, leyéndolo (y descomprimiéndolo, si lo está) por
+     * bloques a medida que se avanza.
+     *
+     * @param archivo Fichero a leer.
+     * @return El lector JSON; hay que cerrarlo.
+     * @throws IOException Si no se puede abrir el fichero.
+     */
+    public static JsonReader abrirLectorParcial(File archivo) throws IOException {
+        return new JsonReader(new InputStreamReader(CompresionFicheros.abrirEntrada(archivo), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Abre (creando o truncando) un fichero JSON para escribirlo, con búfer y en UTF-8, con las mismas
+     * opciones que usaba Gson por defecto.
+     *
+     * @param archivo   Fichero a escribir.
+     * @param comprimir Si se escribe comprimido ({@link CompresionFicheros}).
+     * @return El escritor JSON; hay que cerrarlo para que se vuelque el búfer.
+     * @throws IOException Si no se puede abrir el fichero.
+     */
+    public static JsonWriter abrirEscritor(File archivo, boolean comprimir) throws IOException {
+        BufferedWriter salida = comprimir
+                ? new BufferedWriter(new OutputStreamWriter(CompresionFicheros.abrirSalida(archivo, true), StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(archivo.toPath(), StandardCharsets.UTF_8);
+        JsonWriter writer = new JsonWriter(salida);
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(false);
+        return writer;
+    }
+
+    /**
+     * Lee una cadena, o {@code null} si el valor es nulo.
+     */
+    private static String cadena(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Escribe una lista con el adaptador de sus elementos, o nada si es {@code null}.
+     */
+    private static <T> void escribirLista(JsonWriter out, ArrayList<? extends T> lista, TypeAdapter<T> adaptador)
+            throws IOException {
+        if (lista == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (T elemento : lista) adaptador.write(out, elemento);
+        out.endArray();
+    }
+
+    /**
+     * Lee una lista con el adaptador de sus elementos, o {@code null} si el valor es nulo.
+     */
+    private static <T> ArrayList<T> leerLista(JsonReader in, TypeAdapter<T> adaptador) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ArrayList<T> lista = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) lista.add(adaptador.read(in));
+        in.endArray();
+        return lista;
+    }
+}
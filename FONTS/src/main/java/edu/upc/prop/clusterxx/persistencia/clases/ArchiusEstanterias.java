@@ -1,15 +1,23 @@
 package edu.upc.prop.clusterxx.persistencia.clases;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import edu.upc.prop.clusterxx.dominio.Distribucion;
 import edu.upc.prop.clusterxx.dominio.Estanteria;
+import edu.upc.prop.clusterxx.dominio.Producto;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * Clase encargada de gestionar los archivos JSON de las estanterías (creación, eliminación y lectura)
@@ -28,16 +36,32 @@ import java.util.Objects;
  * </ul>
  * Según la operación requerida, esta clase se comunicará con la carpeta necesaria
  * para crear, eliminar o leer los JSON de estanterías.
+ * <p>
+ * Al arrancar sólo se leen las <i>cabeceras</i> de las estanterías ({@link #cargarCabeceras(String)}):
+ * el ID, el número de estantes, la afinidad total y los nombres de los productos de la distribución, que
+ * se escriben al principio del fichero, antes de la lista ordenada. Los nombres permiten saber si un producto
+ * está en una distribución sin cargarla. La distribución completa se lee con
+ * {@link #cargarEstanteria(String)} la primera vez que se accede a ella.
+ * <p>
+ * Los productos de las distribuciones se guardan por nombre ({@link AdaptadorReferenciaProducto}) y, al
+ * leer una estantería, se enlazan con los productos cargados que proporciona {@link #setProductos(Supplier)}.
  */
 public class ArchiusEstanterias {
 
     /**
      * Ruta a la carpeta que contiene los archivos JSON de las estanterías.
      */
-    static String folderPath = System.getProperty("user.dir") + File.separator + "FONTS" + File.separator
-            + "src" + File.separator + "main" + File.separator + "java" + File.separator
-            + "edu" + File.separator + "upc" + File.separator + "prop" + File.separator
-            + "clusterxx" + File.separator + "persistencia" + File.separator + "estanterias";
+    static String folderPath = ConfiguracionAlmacenamiento.carpeta(ConfiguracionAlmacenamiento.ESTANTERIAS);
+
+    /**
+     * Adaptador con el que se escriben las estanterías (al escribir no se necesitan los productos cargados).
+     */
+    private static final TypeAdapter<Estanteria> ESCRITURA = AdaptadoresJson.estanteria(new HashMap<>());
+
+    /**
+     * Productos cargados con los que se enlazan los productos de las distribuciones leídas.
+     */
+    private static volatile Supplier<? extends Collection<Producto>> productos = ArrayList::new;
 
     /**
      * Instancia única de la clase ArchiusEstanterias (patrón singleton).
@@ -52,30 +76,205 @@ public class ArchiusEstanterias {
         }
     }
 
+    /**
+     * Indica los productos con los que se enlazan los productos de las distribuciones al leerlas.
+     *
+     * Precondición: productos no es null.
+     * Postcondición: Las estanterías que se lean a partir de ahora enlazan sus productos con los
+     *                que devuelva productos en el momento de leerlas.
+     *
+     * @param productos Proveedor de la lista de productos cargados.
+     */
+    public static void setProductos(Supplier<? extends Collection<Producto>> productos) {
+        ArchiusEstanterias.productos = productos;
+    }
+
+    /**
+     * Crea el adaptador de las estanterías, que guarda los productos de las distribuciones por nombre
+     * y los enlaza con los productos indicados al leerlos.
+     *
+     * @param cargados Productos con los que enlazar las referencias.
+     * @return Adaptador para leer y escribir estanterías.
+     */
+    private static TypeAdapter<Estanteria> adaptador(Collection<Producto> cargados) {
+        HashMap<String, Producto> porNombre = new HashMap<>();
+        for (Producto p : cargados) porNombre.put(p.getNombre(), p);
+        return AdaptadoresJson.estanteria(porNombre);
+    }
+
     /**
      * Carga una estantería desde un archivo JSON específico.
      *
-     * Precondición: archivo es un fichero JSON válido, gson está inicializado.
+     * Precondición: archivo es un fichero JSON válido.
      * Postcondición: Se devuelve la estantería leída del archivo, o null si no es un archivo JSON.
      *
      * @param archivo Fichero que contiene la estantería en formato JSON.
-     * @param gson Objeto Gson para la deserialización.
+     * @param adaptador Adaptador para la deserialización.
      * @return La estantería cargada, o null si el archivo no es un fichero JSON.
      * @throws Exception Si hay un error de lectura o el formato JSON es incorrecto.
      */
-    private static Estanteria cargarEstanteria(File archivo, Gson gson) throws Exception {
+    private static Estanteria cargarEstanteria(File archivo, TypeAdapter<Estanteria> adaptador) throws Exception {
         if (archivo.isFile() && archivo.getName().endsWith(".json")) {
-            try (FileReader reader = new FileReader(archivo)) {
-                return gson.fromJson(reader, Estanteria.class);
+            EventoFichero evento = new EventoFichero();
+            evento.begin();
+            long inicio = System.nanoTime();
+            try (JsonReader reader = AdaptadoresJson.abrirLector(archivo)) {
+                Estanteria leido = adaptador.read(reader);
+                evento.terminar("cargar", "estanteria", archivo.getName(), archivo.length());
+                EstadisticasPersistencia.getInstance().registrar("cargar.estanteria", archivo.getName(), inicio, archivo.length());
+                return leido;
+            } catch (MalformedJsonException | IllegalStateException | NumberFormatException | JsonParseException e) {
+                throw new Exception("Error leyendo los productos: Formato JSON incorrecto en el archivo: " + archivo.getName()
+                        + " (" + e.getMessage() + ")");
             } catch (IOException e) {
                 throw new Exception("Error leyendo los productos: " + archivo.getName());
-            } catch (JsonSyntaxException e) {
-                throw new Exception("Error leyendo los productos: Formato JSON incorrecto en el archivo: " + archivo.getName());
             }
         }
         return null;
     }
 
+    /**
+     * Carga la estantería guardada con el id indicado en la carpeta <b>estanterias</b>, con su distribución.
+     *
+     * Precondición: Existe el fichero JSON de la estantería.
+     * Postcondición: Se devuelve la estantería completa leída del fichero.
+     *
+     * @param id Identificador de la estantería.
+     * @return La estantería cargada.
+     * @throws Exception Si el fichero no existe, hay un error de lectura o el formato JSON es incorrecto.
+     */
+    public static Estanteria cargarEstanteria(String id) throws Exception {
+        File archivo = new File(folderPath + File.separator + id + ".json");
+        if (!archivo.isFile()) {
+            throw new Exception("Error leyendo la estantería: no existe el archivo " + archivo.getName());
+        }
+        return cargarEstanteria(archivo, adaptador(productos.get()));
+    }
+
+    /**
+     * Lee la cabecera de una estantería: sin enlazar los productos de su distribución ni leer la lista
+     * ordenada, sólo con los nombres de sus productos.
+     *
+     * Precondición: archivo es un fichero JSON con una estantería.
+     * Postcondición: Si la estantería tiene distribución, se devuelve una estantería que la cargará con
+     *                {@link #cargarEstanteria(String)} cuando se necesite; si no, la estantería completa.
+     *                Devuelve null si el archivo no es un fichero JSON.
+     *
+     * @param archivo Fichero que contiene la estantería en formato JSON.
+     * @return La estantería con la cabecera leída, o null si el archivo no es un fichero JSON.
+     * @throws Exception Si hay un error de lectura o el formato JSON es incorrecto.
+     */
+    private static Estanteria cargarCabecera(File archivo) throws Exception {
+        if (!archivo.isFile() || !archivo.getName().endsWith(".json")) return null;
+        long inicio = System.nanoTime();
+        String id = null;
+        int numPrestatges = 1;
+        boolean conDistribucion = false;
+        int afinidad = 0;
+        HashSet<String> nombres = null;
+        try (JsonReader reader = AdaptadoresJson.abrirLectorParcial(archivo)) {
+            reader.beginObject();
+            // Se deja de leer en cuanto se conocen el número de estantes, la afinidad y los productos de la distribución
+            while (reader.hasNext() && (id == null || !conDistribucion)) {
+                switch (reader.nextName()) {
+                    case "id" -> id = reader.nextString();
+                    case "numPrestatges" -> numPrestatges = reader.nextInt();
+                    case "distribucion" -> {
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else {
+                            conDistribucion = true;
+                            reader.beginObject();
+                            boolean leida = false;
+                            while ((!leida || nombres == null) && reader.hasNext()) {
+                                switch (reader.nextName()) {
+                                    case "afinidadTotal" -> {
+                                        afinidad = reader.nextInt();
+                                        leida = true;
+                                    }
+                                    case "listaProductos" -> nombres = leerNombres(reader);
+                                    default -> reader.skipValue();
+                                }
+                            }
+                            if (!reader.hasNext()) reader.endObject();
+                        }
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new Exception("Error leyendo las estanterías: Formato JSON incorrecto en el archivo: " + archivo.getName());
+        }
+        if (id == null) {
+            throw new Exception("Error leyendo las estanterías: falta el id en el archivo: " + archivo.getName());
+        }
+        EstadisticasPersistencia.getInstance().registrar("cargar.cabecera", archivo.getName(), inicio, 0);
+        if (!conDistribucion) return new Estanteria(id, numPrestatges);
+        return new Estanteria(id, numPrestatges, afinidad, nombres, ArchiusEstanterias::cargarDistribucion);
+    }
+
+    /**
+     * Lee los nombres de una lista de productos de una distribución: referencias por nombre o, en el
+     * formato antiguo, productos completos.
+     *
+     * @return Los nombres leídos, o null si la lista es null.
+     */
+    private static HashSet<String> leerNombres(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        HashSet<String> nombres = new HashSet<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            switch (reader.peek()) {
+                case STRING -> nombres.add(reader.nextString());
+                case BEGIN_OBJECT -> nombres.add(AdaptadoresJson.PRODUCTO.read(reader).getNombre());
+                default -> reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return nombres;
+    }
+
+    /**
+     * Carga la distribución guardada de una estantería.
+     *
+     * @param id Identificador de la estantería.
+     * @return La distribución guardada, o null si la estantería no tiene.
+     * @throws Exception Si no se puede leer la estantería.
+     */
+    private static Distribucion cargarDistribucion(String id) throws Exception {
+        return cargarEstanteria(id).getDistribucion();
+    }
+
+    /**
+     * Carga las cabeceras de todas las estanterías de la carpeta especificada.
+     *
+     * Precondición: -
+     * Postcondición: Devuelve un ArrayList con todas las estanterías de la carpeta, cuyas distribuciones
+     *                se cargarán la primera vez que se acceda a ellas.
+     *
+     * @param folderpath Ruta a la carpeta que contiene los ficheros JSON de las estanterías.
+     * @return Lista de estanterías.
+     * @throws Exception Si no se encuentra la carpeta o hay error en la lectura.
+     */
+    public static ArrayList<Estanteria> cargarCabeceras(String folderpath) throws Exception {
+        ArrayList<Estanteria> estanterias = new ArrayList<>();
+        File carpeta = new File(folderpath);
+        if (carpeta.exists() && carpeta.isDirectory()) {
+            long inicio = System.nanoTime();
+            for (File archivo : Objects.requireNonNull(carpeta.listFiles())) {
+                Estanteria estanteria = cargarCabecera(archivo);
+                if (estanteria != null) estanterias.add(estanteria);
+            }
+            EstadisticasPersistencia.getInstance().registrar("cargarCabeceras", carpeta.getName(), inicio, 0);
+        } else {
+            throw new Exception("Error leyendo las estanterías: No se encontraron estanterías guardadas.");
+        }
+        return estanterias;
+    }
+
     /**
      * Elimina todos los archivos JSON de la carpeta <b>estanterias</b>.
      *
@@ -110,14 +309,18 @@ public class ArchiusEstanterias {
      */
     public static ArrayList<Estanteria> cargarEstanterias(String folderpath) throws Exception {
         ArrayList<Estanteria> estanterias = new ArrayList<>();
-        Gson gson = new Gson();
+        TypeAdapter<Estanteria> adaptador = adaptador(productos.get());
 
         File carpeta = new File(folderpath);
         if (carpeta.exists() && carpeta.isDirectory()) {
+            long inicio = System.nanoTime();
+            long bytes = 0;
             for (File archivo : Objects.requireNonNull(carpeta.listFiles())) {
-                Estanteria estanteria = cargarEstanteria(archivo, gson);
+                Estanteria estanteria = cargarEstanteria(archivo, adaptador);
                 estanterias.add(estanteria);
+                if (estanteria != null) bytes += archivo.length();
             }
+            EstadisticasPersistencia.getInstance().registrar("cargarEstanterias", carpeta.getName(), inicio, bytes);
         } else {
             throw new Exception("Error leyendo los productos: No se encontraron productos guardados.");
         }
@@ -133,17 +336,18 @@ public class ArchiusEstanterias {
      *                y se devuelve la lista de dichas estanterías.
      *
      * @param folderpath Ruta a la carpeta que contiene los archivos JSON de las estanterías iniciales.
+     * @param prods      Productos iniciales, con los que se enlazan los productos de las distribuciones.
      * @return Lista de estanterías iniciales.
      * @throws Exception Si no se encuentra la carpeta de origen o destino, o falla la lectura/escritura.
      */
-    public static ArrayList<Estanteria> cargarestanteriasInicio(String folderpath) throws Exception {
+    public static ArrayList<Estanteria> cargarestanteriasInicio(String folderpath, Collection<Producto> prods) throws Exception {
         ArrayList<Estanteria> est = new ArrayList<>();
-        Gson gson = new Gson();
+        TypeAdapter<Estanteria> adaptador = adaptador(prods);
 
         File carpetaOrigen = new File(folderpath);
         if (carpetaOrigen.exists() && carpetaOrigen.isDirectory()) {
             for (File archivo : Objects.requireNonNull(carpetaOrigen.listFiles())) {
-                Estanteria estanteria = cargarEstanteria(archivo, gson);
+                Estanteria estanteria = cargarEstanteria(archivo, adaptador);
                 est.add(estanteria);
             }
             File carpetaDest = new File(folderPath);
@@ -171,13 +375,19 @@ public class ArchiusEstanterias {
      * @throws Exception Si ocurre algún error al escribir el archivo.
      */
     public static void guardarEstanteria(Estanteria est) throws Exception {
-        Gson gson = new Gson();
+        est.cargarDistribucion();
         String filename = folderPath + File.separator + est.getId() + ".json";
-        try (FileWriter writer = new FileWriter(filename)) {
-            gson.toJson(est, writer);
+        EventoFichero evento = new EventoFichero();
+        evento.begin();
+        long inicio = System.nanoTime();
+        try (JsonWriter writer = AdaptadoresJson.abrirEscritor(new File(filename), CompresionFicheros.comprimirEstanterias())) {
+            ESCRITURA.write(writer, est);
         } catch (IOException e) {
             throw new Exception("Error al guardar: " + e.getMessage());
         }
+        long bytes = new File(filename).length();
+        evento.terminar("guardar", "estanteria", est.getId() + ".json", bytes);
+        EstadisticasPersistencia.getInstance().registrar("guardar.estanteria", est.getId() + ".json", inicio, bytes);
     }
 
     /**
@@ -193,9 +403,15 @@ public class ArchiusEstanterias {
         String filename = folderPath + File.separator + id + ".json";
         File file = new File(filename);
         if (file.exists()) {
+            EventoFichero evento = new EventoFichero();
+            evento.begin();
+            long inicio = System.nanoTime();
+            long bytes = file.length();
             if(!file.delete()) {
                 throw new Exception("Error al eliminar: " + filename);
             }
+            evento.terminar("eliminar", "estanteria", file.getName(), bytes);
+            EstadisticasPersistencia.getInstance().registrar("eliminar.estanteria", file.getName(), inicio, bytes);
         } else {
             throw new Exception("Error al eliminar el producto: el archivo no existe");
         }
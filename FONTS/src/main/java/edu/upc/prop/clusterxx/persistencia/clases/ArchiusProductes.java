@@ -1,12 +1,12 @@
 package edu.upc.prop.clusterxx.persistencia.clases;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 import edu.upc.prop.clusterxx.dominio.Producto;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Objects;
@@ -34,10 +34,7 @@ public class ArchiusProductes {
     /**
      * Ruta a la carpeta que contiene los archivos JSON de los productos.
      */
-    static String folderPath = System.getProperty("user.dir") + File.separator + "FONTS" + File.separator
-            + "src" + File.separator + "main" + File.separator + "java" + File.separator
-            + "edu" + File.separator + "upc" + File.separator + "prop" + File.separator
-            + "clusterxx" + File.separator + "persistencia" + File.separator + "productos";
+    static String folderPath = ConfiguracionAlmacenamiento.carpeta(ConfiguracionAlmacenamiento.PRODUCTOS);
 
     /**
      * Instancia única de la clase ArchiusProductes (patrón singleton).
@@ -55,22 +52,27 @@ public class ArchiusProductes {
     /**
      * Carga un producto desde un archivo JSON específico.
      * <p>
-     * El archivo debe ser un fichero JSON válido, y gson debe estar inicializado.
+     * El archivo debe ser un fichero JSON válido; se lee con {@link AdaptadoresJson#PRODUCTO}.
      * Devuelve el producto leído del archivo, o null si no es un archivo JSON.
      *
      * @param archivo Fichero que contiene el producto en formato JSON.
-     * @param gson    Objeto Gson para la deserialización.
      * @return El producto cargado o null si el archivo no es un fichero JSON.
      * @throws Exception Si hay un error de lectura o el formato JSON es incorrecto.
      */
-    private static Producto cargarProd(File archivo, Gson gson) throws Exception {
+    static Producto cargarProd(File archivo) throws Exception {
         if (archivo.isFile() && archivo.getName().endsWith(".json")) {
-            try (FileReader reader = new FileReader(archivo)) {
-                return gson.fromJson(reader, Producto.class);
+            EventoFichero evento = new EventoFichero();
+            evento.begin();
+            long inicio = System.nanoTime();
+            try (JsonReader reader = AdaptadoresJson.abrirLector(archivo)) {
+                Producto leido = AdaptadoresJson.PRODUCTO.read(reader);
+                evento.terminar("cargar", "producto", archivo.getName(), archivo.length());
+                EstadisticasPersistencia.getInstance().registrar("cargar.producto", archivo.getName(), inicio, archivo.length());
+                return leido;
+            } catch (MalformedJsonException | IllegalStateException | NumberFormatException | JsonParseException e) {
+                throw new Exception("Error leyendo los productos: Formato JSON incorrecto en el archivo: " + archivo.getName());
             } catch (IOException e) {
                 throw new Exception("Error leyendo los productos: " + archivo.getName());
-            } catch (JsonSyntaxException e) {
-                throw new Exception("Error leyendo los productos: Formato JSON incorrecto en el archivo: " + archivo.getName());
             }
         }
         return null;
@@ -110,14 +112,17 @@ public class ArchiusProductes {
      */
     public static ArrayList<Producto> cargarProductos(String folderpath) throws Exception {
         ArrayList<Producto> productos = new ArrayList<>();
-        Gson gson = new Gson();
 
         File carpeta = new File(folderpath);
         if (carpeta.exists() && carpeta.isDirectory()) {
+            long inicio = System.nanoTime();
+            long bytes = 0;
             for (File archivo : Objects.requireNonNull(carpeta.listFiles())) {
-                Producto producto = cargarProd(archivo, gson);
+                Producto producto = cargarProd(archivo);
                 productos.add(producto);
+                if (producto != null) bytes += archivo.length();
             }
+            EstadisticasPersistencia.getInstance().registrar("cargarProductos", carpeta.getName(), inicio, bytes);
         } else {
             throw new Exception("Error leyendo los productos: No se encontraron productos guardados.");
         }
@@ -136,12 +141,11 @@ public class ArchiusProductes {
      */
     public static ArrayList<Producto> cargarProductosInicio(String folderpath) throws Exception {
         ArrayList<Producto> prods = new ArrayList<>();
-        Gson gson = new Gson();
 
         File carpetaOrigen = new File(folderpath);
         if (carpetaOrigen.exists() && carpetaOrigen.isDirectory()) {
             for (File archivo : Objects.requireNonNull(carpetaOrigen.listFiles())) {
-                Producto producto = cargarProd(archivo, gson);
+                Producto producto = cargarProd(archivo);
                 prods.add(producto);
             }
             File carpetaDest = new File(folderPath);
@@ -166,13 +170,18 @@ public class ArchiusProductes {
      * @throws Exception Si ocurre algún error al escribir el archivo.
      */
     public static void guardarProd(Producto producto) throws Exception {
-        Gson gson = new Gson();
         String filename = folderPath + File.separator + producto.getNombre() + ".json";
-        try (FileWriter writer = new FileWriter(filename)) {
-            gson.toJson(producto, writer);
+        EventoFichero evento = new EventoFichero();
+        evento.begin();
+        long inicio = System.nanoTime();
+        try (JsonWriter writer = AdaptadoresJson.abrirEscritor(new File(filename), CompresionFicheros.comprimirProductos())) {
+            AdaptadoresJson.PRODUCTO.write(writer, producto);
         } catch (IOException e) {
             throw new Exception("Error al guardar: " + e.getMessage());
         }
+        long bytes = new File(filename).length();
+        evento.terminar("guardar", "producto", producto.getNombre() + ".json", bytes);
+        EstadisticasPersistencia.getInstance().registrar("guardar.producto", producto.getNombre() + ".json", inicio, bytes);
     }
 
     /**
@@ -186,9 +195,15 @@ public class ArchiusProductes {
         String filename = folderPath + File.separator + nombre + ".json";
         File file = new File(filename);
         if (file.exists()) {
+            EventoFichero evento = new EventoFichero();
+            evento.begin();
+            long inicio = System.nanoTime();
+            long bytes = file.length();
             if (!file.delete()) {
                 throw new Exception("Error al eliminar: " + filename);
             }
+            evento.terminar("eliminar", "producto", file.getName(), bytes);
+            EstadisticasPersistencia.getInstance().registrar("eliminar.producto", file.getName(), inicio, bytes);
         } else {
             throw new Exception("Error al eliminar el producto:" + nombre + " el archivo no existe");
         }
@@ -0,0 +1,140 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Objects;
+
+/**
+ * Clase <b>BancoCompresion</b>.
+ * <p>
+ * Pequeño banco de pruebas para decidir si vale la pena activar {@link CompresionFicheros}: con los
+ * ficheros JSON de una carpeta (por defecto, la de estanterías) mide, sin comprimir y con los niveles
+ * 1, 6 y 9, el tamaño total, la velocidad de compresión y de descompresión en memoria, y el tiempo de
+ * escribir y volver a leer todos los ficheros en una carpeta temporal. Cada medida es la mejor de
+ * {@code REPETICIONES}.
+ * <p>
+ * En un disco local los ficheros leídos suelen estar en la caché del sistema, así que las columnas de
+ * escritura y lectura muestran sobre todo el coste de CPU; en un disco de red el tiempo de E/S crece con
+ * los bytes, y ahí es donde se nota la reducción de tamaño.
+ * <p>
+ * Uso: {@code java -cp ... edu.upc.prop.clusterxx.persistencia.clases.BancoCompresion [carpeta]}
+ */
+public final class BancoCompresion {
+    /**
+     * Número de repeticiones de cada medida.
+     */
+    public static final int REPETICIONES = 5;
+
+    /**
+     * Niveles de compresión que se comparan.
+     */
+    private static final int[] NIVELES = {1, 6, 9};
+
+    /**
+     * Clase de utilidades: no se instancia.
+     */
+    private BancoCompresion() {
+    }
+
+    /**
+     * Ejecuta el banco de pruebas y escribe los resultados por la salida estándar.
+     *
+     * @param args Opcionalmente, la carpeta con los ficheros JSON.
+     * @throws Exception Si no se pueden leer los ficheros o usar la carpeta temporal.
+     */
+    public static void main(String[] args) throws Exception {
+        String carpeta = args.length > 0 ? args[0] : ConfiguracionAlmacenamiento.carpeta(ConfiguracionAlmacenamiento.ESTANTERIAS);
+        System.out.println(medir(new File(carpeta)));
+    }
+
+    /**
+     * Mide el tamaño y la velocidad de cada nivel de compresión con los ficheros JSON de una carpeta.
+     *
+     * Precondición: carpeta contiene ficheros JSON.
+     * Postcondición: No se modifica la carpeta.
+     *
+     * @param carpeta Carpeta con los ficheros.
+     * @return Una tabla con los resultados.
+     * @throws IOException Si no se pueden leer los ficheros o usar la carpeta temporal.
+     */
+    public static String medir(File carpeta) throws IOException {
+        ArrayList<byte[]> ficheros = new ArrayList<>();
+        long total = 0;
+        for (File archivo : Objects.requireNonNull(carpeta.listFiles())) {
+            if (!archivo.isFile() || !archivo.getName().endsWith(".json")) continue;
+            byte[] datos = CompresionFicheros.leer(archivo);
+            ficheros.add(datos);
+            total += datos.length;
+        }
+        if (ficheros.isEmpty()) return "No hay ficheros JSON en " + carpeta;
+
+        StringBuilder sb = new StringBuilder(String.format("%d ficheros de %s, %d bytes sin comprimir%n",
+                ficheros.size(), carpeta, total));
+        sb.append(String.format("%-6s %12s %7s %13s %15s %12s %11s%n",
+                "Nivel", "Bytes", "Ratio", "Compr. MB/s", "Descompr. MB/s", "Escrit. ms", "Lect. ms"));
+        Path temporal = Files.createTempDirectory("banco-compresion");
+        try {
+            double[] es = escribirYLeer(ficheros, temporal);
+            sb.append(String.format("%-6s %12d %7.2f %13s %15s %12.1f %11.1f%n",
+                    "sin", total, 1.0, "-", "-", es[0], es[1]));
+            for (int nivel : NIVELES) {
+                ArrayList<byte[]> comprimidos = new ArrayList<>();
+                long mejorCompresion = Long.MAX_VALUE;
+                for (int r = 0; r < REPETICIONES; ++r) {
+                    comprimidos.clear();
+                    long t = System.nanoTime();
+                    for (byte[] datos : ficheros) comprimidos.add(CompresionFicheros.comprimir(datos, nivel));
+                    mejorCompresion = Math.min(mejorCompresion, System.nanoTime() - t);
+                }
+                long bytes = 0;
+                for (byte[] c : comprimidos) bytes += c.length;
+                long mejorDescompresion = Long.MAX_VALUE;
+                for (int r = 0; r < REPETICIONES; ++r) {
+                    long t = System.nanoTime();
+                    for (byte[] c : comprimidos) CompresionFicheros.descomprimir(c);
+                    mejorDescompresion = Math.min(mejorDescompresion, System.nanoTime() - t);
+                }
+                es = escribirYLeer(comprimidos, temporal);
+                sb.append(String.format("%-6d %12d %7.2f %13.1f %15.1f %12.1f %11.1f%n", nivel, bytes,
+                        (double) total / bytes, megasPorSegundo(total, mejorCompresion),
+                        megasPorSegundo(total, mejorDescompresion), es[0], es[1]));
+            }
+        } finally {
+            try (DirectoryStream<Path> restos = Files.newDirectoryStream(temporal)) {
+                for (Path f : restos) Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(temporal);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Escribe los ficheros en la carpeta temporal y los vuelve a leer (descomprimiéndolos si lo están).
+     *
+     * @return El mejor tiempo de escritura y de lectura, en milisegundos.
+     */
+    private static double[] escribirYLeer(ArrayList<byte[]> ficheros, Path carpeta) throws IOException {
+        long mejorEscritura = Long.MAX_VALUE;
+        long mejorLectura = Long.MAX_VALUE;
+        for (int r = 0; r < REPETICIONES; ++r) {
+            long t = System.nanoTime();
+            for (int i = 0; i < ficheros.size(); ++i) Files.write(carpeta.resolve(i + ".json"), ficheros.get(i));
+            mejorEscritura = Math.min(mejorEscritura, System.nanoTime() - t);
+            t = System.nanoTime();
+            for (int i = 0; i < ficheros.size(); ++i) CompresionFicheros.leer(carpeta.resolve(i + ".json").toFile());
+            mejorLectura = Math.min(mejorLectura, System.nanoTime() - t);
+        }
+        return new double[]{mejorEscritura / 1e6, mejorLectura / 1e6};
+    }
+
+    /**
+     * Calcula una velocidad en MB/s.
+     */
+    private static double megasPorSegundo(long bytes, long nanos) {
+        return bytes / 1e6 / (nanos / 1e9);
+    }
+}
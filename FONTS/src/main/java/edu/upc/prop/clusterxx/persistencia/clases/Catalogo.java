@@ -1,7 +1,6 @@
 package edu.upc.prop.clusterxx.persistencia.clases;
 
 import edu.upc.prop.clusterxx.dominio.*;
-import java.io.File;
 import java.util.ArrayList;
 
 /**
@@ -129,17 +128,11 @@ public class Catalogo {
      * @throws Exception Si ocurre algún error en el proceso de lectura/escritura de JSON.
      */
     public void cargarCatalogo() throws Exception {
-        String folderpathP = System.getProperty("user.dir") + File.separator + "FONTS" + File.separator 
-                + "src" + File.separator + "main" + File.separator + "java" + File.separator
-                + "edu" + File.separator + "upc" + File.separator + "prop" + File.separator
-                + "clusterxx" + File.separator + "persistencia" + File.separator + "productosIniciales";
-        String folderpathE = System.getProperty("user.dir") + File.separator + "FONTS" + File.separator
-                + "src" + File.separator + "main" + File.separator + "java" + File.separator
-                + "edu" + File.separator + "upc" + File.separator + "prop" + File.separator
-                + "clusterxx" + File.separator + "persistencia" + File.separator + "estanteriasIniciales";
-
-        estanterias = ArchiusEstanterias.cargarestanteriasInicio(folderpathE);
+        String folderpathP = ConfiguracionAlmacenamiento.carpeta(ConfiguracionAlmacenamiento.PRODUCTOS_INICIALES);
+        String folderpathE = ConfiguracionAlmacenamiento.carpeta(ConfiguracionAlmacenamiento.ESTANTERIAS_INICIALES);
+
         productos = ArchiusProductes.cargarProductosInicio(folderpathP);
+        estanterias = ArchiusEstanterias.cargarestanteriasInicio(folderpathE, productos);
     }
 
     /**
@@ -151,6 +144,43 @@ public class Catalogo {
         cargarAtributos();
     }
 
+    /**
+     * Valida los atributos de un producto leído de un fichero contra el catálogo: cada tipo debe existir
+     * (por id) y cada contexto también (por nombre).
+     * 
+     * Precondición: leido no es null.
+     * Postcondición: Devuelve un producto con el mismo nombre y los atributos equivalentes del catálogo,
+     *                de modo que sus tipos y contextos sean las mismas instancias que usa el resto del sistema.
+     * 
+     * @param leido Producto leído.
+     * @return El producto con los tipos y contextos del catálogo.
+     * @throws Exception Si algún tipo o contexto no existe en el catálogo.
+     */
+    public Producto conAtributosDelCatalogo(Producto leido) throws Exception {
+        ArrayList<Atributo> atributosProducto = new ArrayList<>();
+        for (Tipo t : leido.getAtributosT()) {
+            Tipo delCatalogo = null;
+            for (Tipo tipo : tipos) {
+                if (tipo.getId() == t.getId()) delCatalogo = tipo;
+            }
+            if (delCatalogo == null) {
+                throw new Exception("El tipo " + t.getId() + " (" + t.getNombre() + ") no existe.");
+            }
+            atributosProducto.add(delCatalogo);
+        }
+        for (Contexto c : leido.getAtributosC()) {
+            Contexto delCatalogo = null;
+            for (Contexto contexto : contextos) {
+                if (contexto.getNombre().equals(c.getNombre())) delCatalogo = contexto;
+            }
+            if (delCatalogo == null) {
+                throw new Exception("El contexto " + c.getNombre() + " no existe.");
+            }
+            atributosProducto.add(delCatalogo);
+        }
+        return new Producto(leido.getNombre(), atributosProducto);
+    }
+
     /* GETTERS */
 
     /**
@@ -0,0 +1,237 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Clase <b>CompresionFicheros</b>.
+ * <p>
+ * Permite guardar comprimidos (con {@link Deflater}) los ficheros JSON de estanterías y, opcionalmente, de
+ * productos, para ocupar menos disco y leer menos bytes cuando la carpeta de datos está en un disco lento o
+ * de red. Un fichero comprimido empieza con la cabecera {@code CABECERA} seguida del JSON en formato zlib;
+ * como un JSON nunca empieza por el byte {@code 0x1F}, al leer se distingue sin ambigüedad y los ficheros
+ * sin comprimir se siguen leyendo igual. Los ficheros conservan la extensión {@code .json}, así que una
+ * carpeta puede mezclar ficheros de los dos tipos.
+ * <p>
+ * Qué se comprime se elige con la propiedad del sistema {@code persistencia.compresion}: {@code ninguno}
+ * (por defecto), {@code estanterias} o {@code todos}. El nivel de compresión (de 1 a 9) se elige con
+ * {@code persistencia.nivelCompresion}. Los productos son ficheros de unos cien bytes que apenas se reducen,
+ * por eso no se comprimen salvo que se pida. {@link BancoCompresion} mide la reducción y la velocidad de
+ * cada nivel con los ficheros de una carpeta.
+ */
+public final class CompresionFicheros {
+    /**
+     * Propiedad del sistema que indica qué ficheros se comprimen.
+     */
+    public static final String PROPIEDAD = "persistencia.compresion";
+
+    /**
+     * Propiedad del sistema con el nivel de compresión.
+     */
+    public static final String PROPIEDAD_NIVEL = "persistencia.nivelCompresion";
+
+    /**
+     * Nivel de compresión por defecto: el más rápido, que en JSON ya reduce mucho el tamaño.
+     */
+    public static final int NIVEL_POR_DEFECTO = Deflater.BEST_SPEED;
+
+    /**
+     * Cabecera de los ficheros comprimidos.
+     */
+    static final byte[] CABECERA = {0x1F, 'P', 'Z', 1};
+
+    /**
+     * Indica si se comprimen los ficheros de estanterías.
+     */
+    private static final boolean ESTANTERIAS;
+
+    /**
+     * Indica si se comprimen los ficheros de productos.
+     */
+    private static final boolean PRODUCTOS;
+
+    /**
+     * Nivel de compresión.
+     */
+    private static final int NIVEL;
+
+    static {
+        String valor = System.getProperty(PROPIEDAD, "ninguno").trim();
+        boolean todos = valor.equals("todos");
+        if (!todos && !valor.equals("estanterias") && !valor.equals("ninguno")) {
+            System.err.println("Valor no válido para " + PROPIEDAD + ": " + valor);
+        }
+        ESTANTERIAS = todos || valor.equals("estanterias");
+        PRODUCTOS = todos;
+
+        int nivel = NIVEL_POR_DEFECTO;
+        String valorNivel = System.getProperty(PROPIEDAD_NIVEL);
+        if (valorNivel != null) {
+            try {
+                nivel = Integer.parseInt(valorNivel.trim());
+                if (nivel < Deflater.BEST_SPEED || nivel > Deflater.BEST_COMPRESSION) throw new NumberFormatException();
+            } catch (NumberFormatException e) {
+                System.err.println("Valor no válido para " + PROPIEDAD_NIVEL + ": " + valorNivel);
+                nivel = NIVEL_POR_DEFECTO;
+            }
+        }
+        NIVEL = nivel;
+    }
+
+    /**
+     * Clase de utilidades: no se instancia.
+     */
+    private CompresionFicheros() {
+    }
+
+    /**
+     * Indica si los ficheros de estanterías se guardan comprimidos.
+     *
+     * @return true si se comprimen.
+     */
+    public static boolean comprimirEstanterias() {
+        return ESTANTERIAS;
+    }
+
+    /**
+     * Indica si los ficheros de productos se guardan comprimidos.
+     *
+     * @return true si se comprimen.
+     */
+    public static boolean comprimirProductos() {
+        return PRODUCTOS;
+    }
+
+    /**
+     * Indica si unos datos empiezan con la cabecera de fichero comprimido.
+     *
+     * @param datos Contenido de un fichero.
+     * @return true si están comprimidos.
+     */
+    static boolean estaComprimido(byte[] datos) {
+        return datos.length >= CABECERA.length && Arrays.equals(datos, 0, CABECERA.length, CABECERA, 0, CABECERA.length);
+    }
+
+    /**
+     * Lee un fichero entero, descomprimiéndolo si hace falta.
+     *
+     * @param archivo Fichero a leer.
+     * @return El contenido sin comprimir.
+     * @throws IOException Si no se puede leer el fichero o los datos comprimidos están dañados.
+     */
+    static byte[] leer(File archivo) throws IOException {
+        byte[] datos = Files.readAllBytes(archivo.toPath());
+        return estaComprimido(datos) ? descomprimir(datos) : datos;
+    }
+
+    /**
+     * Abre un fichero para leerlo por bloques, descomprimiéndolo a medida que se lee si hace falta.
+     *
+     * @param archivo Fichero a leer.
+     * @return El flujo con el contenido sin comprimir; hay que cerrarlo.
+     * @throws IOException Si no se puede abrir el fichero.
+     */
+    static InputStream abrirEntrada(File archivo) throws IOException {
+        BufferedInputStream entrada = new BufferedInputStream(Files.newInputStream(archivo.toPath()));
+        try {
+            entrada.mark(CABECERA.length);
+            byte[] inicio = entrada.readNBytes(CABECERA.length);
+            if (estaComprimido(inicio)) return new InflaterInputStream(entrada);
+            entrada.reset();
+            return entrada;
+        } catch (IOException e) {
+            entrada.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Abre (creando o truncando) un fichero para escribirlo, comprimido o no.
+     *
+     * @param archivo   Fichero a escribir.
+     * @param comprimir Si se escribe comprimido.
+     * @return El flujo de salida, con búfer; hay que cerrarlo para que se vuelque.
+     * @throws IOException Si no se puede abrir el fichero.
+     */
+    static OutputStream abrirSalida(File archivo, boolean comprimir) throws IOException {
+        OutputStream salida = new BufferedOutputStream(Files.newOutputStream(archivo.toPath()));
+        if (!comprimir) return salida;
+        salida.write(CABECERA);
+        Deflater deflater = new Deflater(NIVEL);
+        return new DeflaterOutputStream(salida, deflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Comprime unos datos, con la cabecera de fichero comprimido.
+     *
+     * @param datos Datos a comprimir.
+     * @param nivel Nivel de compresión, de 1 a 9.
+     * @return Los datos comprimidos.
+     */
+    public static byte[] comprimir(byte[] datos, int nivel) {
+        Deflater deflater = new Deflater(nivel);
+        try {
+            deflater.setInput(datos);
+            deflater.finish();
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4 + 64);
+            salida.writeBytes(CABECERA);
+            byte[] bloque = new byte[8192];
+            while (!deflater.finished()) {
+                salida.write(bloque, 0, deflater.deflate(bloque));
+            }
+            return salida.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Descomprime unos datos que empiezan con la cabecera de fichero comprimido.
+     *
+     * @param datos Datos comprimidos.
+     * @return Los datos sin comprimir.
+     * @throws IOException Si los datos están dañados o incompletos.
+     */
+    public static byte[] descomprimir(byte[] datos) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(datos, CABECERA.length, datos.length - CABECERA.length);
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length * 4);
+            byte[] bloque = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(bloque);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("datos comprimidos incompletos");
+                }
+                salida.write(bloque, 0, n);
+            }
+            return salida.toByteArray();
+        } catch (DataFormatException e) {
+            throw new ZipException("datos comprimidos dañados: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Clase que decide en qué carpeta guarda la capa de persistencia sus datos.
+ * <p>
+ * Todas las carpetas de persistencia (<b>productos</b>, <b>estanterias</b>, <b>productosIniciales</b> y
+ * <b>estanteriasIniciales</b>) cuelgan de una única carpeta raíz, que se busca, por orden:
+ * <ol>
+ *   <li>En la propiedad del sistema {@code persistencia.raiz}.</li>
+ *   <li>
+ *       En la clave {@code raiz} del fichero de configuración: el de la propiedad del sistema
+ *       {@code persistencia.configuracion} o, si no se indica, {@code persistencia.properties} en el directorio
+ *       de trabajo. Una ruta relativa se interpreta respecto a la carpeta del fichero.
+ *   </li>
+ *   <li>
+ *       Si no hay ninguna de las dos, la carpeta <b>persistencia</b> del código fuente, como hasta ahora.
+ *   </li>
+ * </ol>
+ * Así se pueden poner los datos en un disco rápido o ejecutar varias instancias, cada una con su raíz.
+ */
+public final class ConfiguracionAlmacenamiento {
+    /**
+     * Propiedad del sistema con la carpeta raíz.
+     */
+    public static final String PROPIEDAD_RAIZ = "persistencia.raiz";
+
+    /**
+     * Propiedad del sistema con la ruta del fichero de configuración.
+     */
+    public static final String PROPIEDAD_CONFIGURACION = "persistencia.configuracion";
+
+    /**
+     * Fichero de configuración por defecto, en el directorio de trabajo.
+     */
+    public static final String FICHERO_CONFIGURACION = "persistencia.properties";
+
+    /**
+     * Carpeta de los productos.
+     */
+    public static final String PRODUCTOS = "productos";
+
+    /**
+     * Carpeta de las estanterías.
+     */
+    public static final String ESTANTERIAS = "estanterias";
+
+    /**
+     * Carpeta de los productos iniciales, que se cargan al resetear.
+     */
+    public static final String PRODUCTOS_INICIALES = "productosIniciales";
+
+    /**
+     * Carpeta de las estanterías iniciales, que se cargan al resetear.
+     */
+    public static final String ESTANTERIAS_INICIALES = "estanteriasIniciales";
+
+    /**
+     * Carpeta <b>persistencia</b> del código fuente, que se usa si no se configura otra raíz.
+     */
+    private static final Path RAIZ_POR_DEFECTO = Path.of(System.getProperty("user.dir"), "FONTS", "src", "main",
+            "java", "edu", "upc", "prop", "clusterxx", "persistencia");
+
+    /**
+     * Carpeta raíz configurada.
+     */
+    private static final Path RAIZ = resolverRaiz();
+
+    /**
+     * Clase de utilidades: no se instancia.
+     */
+    private ConfiguracionAlmacenamiento() {
+    }
+
+    /**
+     * Obtiene la carpeta raíz de la persistencia.
+     *
+     * @return Ruta absoluta de la carpeta raíz.
+     */
+    public static String getRaiz() {
+        return RAIZ.toString();
+    }
+
+    /**
+     * Obtiene la ruta de una de las carpetas de persistencia.
+     *
+     * @param nombre Nombre de la carpeta ({@code PRODUCTOS}, {@code ESTANTERIAS}...).
+     * @return Ruta absoluta de la carpeta dentro de la raíz.
+     */
+    public static String carpeta(String nombre) {
+        return RAIZ.resolve(nombre).toString();
+    }
+
+    /**
+     * Crea las carpetas de persistencia que falten en la raíz configurada. Si faltan las carpetas de datos
+     * iniciales y la raíz no es la del código fuente, se copian de allí.
+     *
+     * Precondición: -
+     * Postcondición: Existen las carpetas de productos y de estanterías.
+     *
+     * @return true si las carpetas de productos y de estanterías no tienen ningún JSON (la raíz es nueva) y
+     *         hay que llenarlas con los datos iniciales.
+     * @throws IOException Si no se pueden crear las carpetas.
+     */
+    public static boolean prepararCarpetas() throws IOException {
+        if (!RAIZ.equals(RAIZ_POR_DEFECTO)) {
+            copiarSiFalta(PRODUCTOS_INICIALES);
+            copiarSiFalta(ESTANTERIAS_INICIALES);
+        }
+        boolean vacia = true;
+        for (String nombre : new String[]{PRODUCTOS, ESTANTERIAS}) {
+            Path carpeta = Files.createDirectories(RAIZ.resolve(nombre));
+            try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(carpeta, "*.json")) {
+                if (ficheros.iterator().hasNext()) vacia = false;
+            }
+        }
+        return vacia;
+    }
+
+    /**
+     * Busca la carpeta raíz en la propiedad del sistema y en el fichero de configuración.
+     */
+    private static Path resolverRaiz() {
+        String valor = System.getProperty(PROPIEDAD_RAIZ);
+        if (valor != null && !valor.isBlank()) return Path.of(valor.trim()).toAbsolutePath().normalize();
+
+        String ruta = System.getProperty(PROPIEDAD_CONFIGURACION);
+        File fichero = ruta != null ? new File(ruta) : new File(System.getProperty("user.dir"), FICHERO_CONFIGURACION);
+        if (fichero.isFile()) {
+            Properties propiedades = new Properties();
+            try (Reader lector = Files.newBufferedReader(fichero.toPath(), StandardCharsets.UTF_8)) {
+                propiedades.load(lector);
+            } catch (IOException e) {
+                System.err.println("No se puede leer la configuración " + fichero + ": " + e.getMessage());
+            }
+            valor = propiedades.getProperty("raiz");
+            if (valor != null && !valor.isBlank()) {
+                Path base = fichero.getAbsoluteFile().toPath().getParent();
+                return base.resolve(valor.trim()).toAbsolutePath().normalize();
+            }
+        } else if (ruta != null) {
+            System.err.println("No existe el fichero de configuración " + fichero);
+        }
+        return RAIZ_POR_DEFECTO;
+    }
+
+    /**
+     * Copia una carpeta de datos iniciales desde la raíz del código fuente si falta en la raíz configurada.
+     */
+    private static void copiarSiFalta(String nombre) throws IOException {
+        Path destino = RAIZ.resolve(nombre);
+        Path origen = RAIZ_POR_DEFECTO.resolve(nombre);
+        if (Files.isDirectory(destino) || !Files.isDirectory(origen)) return;
+        Files.createDirectories(destino);
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(origen)) {
+            for (Path f : ficheros) {
+                if (Files.isRegularFile(f)) Files.copy(f, destino.resolve(f.getFileName()));
+            }
+        }
+    }
+}
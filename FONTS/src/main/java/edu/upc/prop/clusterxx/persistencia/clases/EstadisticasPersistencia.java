@@ -0,0 +1,170 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import edu.upc.prop.clusterxx.dominio.Metricas;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clase <b>EstadisticasPersistencia</b>.
+ * <p>
+ * Se trata de una clase singleton que acumula, para cada tipo de operación de persistencia
+ * ({@code cargar.producto}, {@code guardar.estanteria}, {@code cargarProductos}...), el número de
+ * operaciones, el tiempo total y máximo, los bytes leídos o escritos y cuántas han sido lentas. Sirve para
+ * ver cuándo guardar cada producto y estantería en su propio JSON empieza a ser el cuello de botella.
+ * <p>
+ * Una operación es lenta si tarda más que el umbral de la propiedad del sistema
+ * {@code persistencia.umbralLentoMs} (por defecto {@code UMBRAL_LENTO_MS}); en ese caso se escribe un
+ * aviso con el fichero afectado por la salida de errores. Los tiempos y bytes también se publican en el
+ * registro de {@link Metricas} con el prefijo {@code persistencia.}.
+ */
+public class EstadisticasPersistencia {
+    /**
+     * Propiedad del sistema con el umbral, en milisegundos, a partir del cual una operación es lenta.
+     */
+    public static final String PROPIEDAD_UMBRAL = "persistencia.umbralLentoMs";
+
+    /**
+     * Umbral por defecto, en milisegundos.
+     */
+    public static final long UMBRAL_LENTO_MS = 50;
+
+    /**
+     * Instancia única de la clase.
+     */
+    private static final EstadisticasPersistencia instance = new EstadisticasPersistencia();
+
+    /**
+     * Acumulados de cada tipo de operación.
+     */
+    private final ConcurrentHashMap<String, Acumulado> operaciones = new ConcurrentHashMap<>();
+
+    /**
+     * Umbral de operación lenta, en nanosegundos.
+     */
+    private final long umbralNs;
+
+    /**
+     * Acumulados de un tipo de operación.
+     */
+    private static final class Acumulado {
+        final String metricaTiempo;
+        final String metricaBytes;
+        final LongAdder numero = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAccumulator maximoNs = new LongAccumulator(Math::max, 0);
+        final LongAdder bytes = new LongAdder();
+        final LongAdder lentas = new LongAdder();
+
+        Acumulado(String operacion) {
+            metricaTiempo = "persistencia." + operacion + ".tiempoUs";
+            metricaBytes = "persistencia." + operacion + ".bytes";
+        }
+    }
+
+    /**
+     * Constructor privado (singleton). Lee el umbral de la propiedad del sistema.
+     */
+    private EstadisticasPersistencia() {
+        long umbral = UMBRAL_LENTO_MS;
+        String valor = System.getProperty(PROPIEDAD_UMBRAL);
+        if (valor != null) {
+            try {
+                umbral = Long.parseLong(valor.trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Valor no válido para " + PROPIEDAD_UMBRAL + ": " + valor);
+            }
+        }
+        umbralNs = umbral * 1_000_000L;
+    }
+
+    /**
+     * Devuelve la instancia única de EstadisticasPersistencia.
+     *
+     * @return Instancia de EstadisticasPersistencia.
+     */
+    public static EstadisticasPersistencia getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registra una operación terminada.
+     *
+     * Precondición: {@code inicioNs} se ha obtenido con {@link System#nanoTime()} al empezar la operación.
+     * Postcondición: Se acumulan su duración y sus bytes; si supera el umbral se avisa por la salida de errores.
+     *
+     * @param operacion Tipo de operación (por ejemplo {@code guardar.producto}).
+     * @param fichero   Fichero o carpeta afectado.
+     * @param inicioNs  Instante de inicio de la operación.
+     * @param bytes     Bytes leídos o escritos.
+     */
+    public void registrar(String operacion, String fichero, long inicioNs, long bytes) {
+        long duracion = System.nanoTime() - inicioNs;
+        Acumulado a = operaciones.computeIfAbsent(operacion, Acumulado::new);
+        a.numero.increment();
+        a.nanos.add(duracion);
+        a.maximoNs.accumulate(duracion);
+        a.bytes.add(bytes);
+        Metricas metricas = Metricas.getInstance();
+        metricas.registrar(a.metricaTiempo, duracion / 1000);
+        metricas.contar(a.metricaBytes, bytes);
+        if (duracion > umbralNs) {
+            a.lentas.increment();
+            System.err.printf("Operación de persistencia lenta: %s de %s (%d bytes) ha tardado %.1f ms%n",
+                    operacion, fichero, bytes, duracion / 1e6);
+        }
+    }
+
+    /**
+     * Obtiene el número de operaciones registradas de un tipo.
+     *
+     * @param operacion Tipo de operación.
+     * @return El número de operaciones, o 0 si no hay ninguna.
+     */
+    public long getNumero(String operacion) {
+        Acumulado a = operaciones.get(operacion);
+        return a == null ? 0 : a.numero.sum();
+    }
+
+    /**
+     * Obtiene los bytes acumulados de un tipo de operación.
+     *
+     * @param operacion Tipo de operación.
+     * @return Los bytes leídos o escritos, o 0 si no hay ninguna operación.
+     */
+    public long getBytes(String operacion) {
+        Acumulado a = operaciones.get(operacion);
+        return a == null ? 0 : a.bytes.sum();
+    }
+
+    /**
+     * Construye un resumen de las operaciones registradas, una línea por tipo de operación.
+     *
+     * @return El resumen, o un aviso si todavía no hay ninguna operación.
+     */
+    public String resumen() {
+        TreeMap<String, Acumulado> ordenadas = new TreeMap<>(operaciones);
+        if (ordenadas.isEmpty()) return "Persistencia: sin operaciones registradas";
+        StringBuilder sb = new StringBuilder("Persistencia (umbral lento ")
+                .append(umbralNs / 1_000_000L).append(" ms):");
+        for (Map.Entry<String, Acumulado> e : ordenadas.entrySet()) {
+            Acumulado a = e.getValue();
+            long numero = a.numero.sum();
+            double totalMs = a.nanos.sum() / 1e6;
+            sb.append(String.format("%n  %-20s %6d ops  %9.1f ms (media %.2f, máx %.1f)  %10d bytes  %d lentas",
+                    e.getKey(), numero, totalMs, numero == 0 ? 0 : totalMs / numero,
+                    a.maximoNs.get() / 1e6, a.bytes.sum(), a.lentas.sum()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Pone a cero todos los acumulados.
+     */
+    public void reiniciar() {
+        operaciones.clear();
+    }
+}
@@ -0,0 +1,53 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Clase <b>EventoFichero</b>.
+ * <p>
+ * Evento de <i>JDK Flight Recorder</i> que se emite por cada fichero JSON que se carga, guarda o elimina
+ * en {@link ArchiusProductes} y {@link ArchiusEstanterias}, con su duración y tamaño.
+ */
+@Name("edu.upc.prop.clusterxx.Fichero")
+@Label("Operación sobre un fichero")
+@Category({"PROP", "Persistencia"})
+@Description("Carga, guardado o eliminación de un fichero JSON de productos o estanterías")
+public class EventoFichero extends Event {
+    @Label("Operación")
+    String operacion;
+
+    @Label("Tipo")
+    @Description("producto o estanteria")
+    String tipo;
+
+    @Label("Fichero")
+    String fichero;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Termina el evento y, si la grabación lo tiene activado, rellena sus campos y lo emite.
+     *
+     * @param operacion Operación realizada (cargar, guardar o eliminar).
+     * @param tipo      Tipo de fichero (producto o estanteria).
+     * @param fichero   Fichero afectado.
+     * @param bytes     Tamaño del fichero, en bytes.
+     */
+    void terminar(String operacion, String tipo, String fichero, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.operacion = operacion;
+            this.tipo = tipo;
+            this.fichero = fichero;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
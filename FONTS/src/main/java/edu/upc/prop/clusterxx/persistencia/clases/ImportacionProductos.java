@@ -0,0 +1,308 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import edu.upc.prop.clusterxx.dominio.Producto;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ * Clase que importa y exporta el catálogo de productos como un único fichero <i>JSON Lines</i>: un producto
+ * por línea, con el mismo formato que los ficheros de la carpeta <b>productos</b>.
+ * <p>
+ * Ambas operaciones recorren el fichero en streaming, así que la memoria que usan no depende de su tamaño:
+ * <ul>
+ *   <li>
+ *       La importación valida cada producto contra los tipos (por id) y contextos (por nombre) del
+ *       {@link Catalogo}, escribe su JSON en una carpeta temporal junto a <b>productos</b> y se los entrega
+ *       al receptor en lotes de {@code TAM_LOTE}. Sólo si todo el fichero es válido se mueven los JSON a
+ *       <b>productos</b>; si no, o si falla alguno de los movimientos, se borra la carpeta temporal y la carpeta
+ *       <b>productos</b> queda como estaba.
+ *   </li>
+ *   <li>
+ *       La exportación escribe en un fichero temporal y lo renombra al terminar, de modo que el destino
+ *       nunca queda a medias.
+ *   </li>
+ * </ul>
+ */
+public class ImportacionProductos {
+
+    /**
+     * Número de productos de cada lote que se entrega al receptor.
+     */
+    public static final int TAM_LOTE = 1000;
+
+    /**
+     * Subcarpeta de la carpeta temporal en la que se apartan los ficheros que la importación sustituye.
+     */
+    private static final String SUBCARPETA_RESPALDO = "respaldo";
+
+    /**
+     * Receptor de los lotes de productos importados (normalmente el controlador de dominio).
+     */
+    @FunctionalInterface
+    public interface ReceptorLote {
+        /**
+         * Recibe un lote de productos ya validados contra el catálogo.
+         *
+         * @param lote Productos del lote.
+         * @throws Exception Si algún producto no se puede añadir; la importación se cancela.
+         */
+        void recibir(ArrayList<Producto> lote) throws Exception;
+    }
+
+    /**
+     * Clase de utilidades: no se instancia.
+     */
+    private ImportacionProductos() {
+    }
+
+    /**
+     * Importa los productos de un fichero JSON Lines.
+     *
+     * Precondición: origen es un fichero con un producto en formato JSON por línea (las líneas vacías se ignoran).
+     * Postcondición: Si todos los productos son válidos y el receptor los acepta, sus JSON quedan en la
+     *                carpeta <b>productos</b>. Si no, la carpeta <b>productos</b> no cambia.
+     *
+     * @param origen   Fichero a importar.
+     * @param receptor Receptor de los lotes de productos.
+     * @return Número de productos importados.
+     * @throws Exception Si el fichero no se puede leer, una línea no es un producto válido o el receptor
+     *                   rechaza un lote. El mensaje indica la línea.
+     */
+    public static long importar(File origen, ReceptorLote receptor) throws Exception {
+        long inicio = System.nanoTime();
+        Path carpeta = new File(ArchiusProductes.folderPath).toPath();
+        Path temporal;
+        try {
+            temporal = Files.createTempDirectory(carpeta.getParent(), "productos.importacion");
+        } catch (IOException e) {
+            throw new Exception("Error al importar: no se puede crear la carpeta temporal: " + e.getMessage());
+        }
+        long importados = 0;
+        boolean confirmada = false;
+        try {
+            // Carpeta en la que debe quedar cada fichero: un nombre no puede salir de ella
+            Path base = temporal.toAbsolutePath().normalize();
+            long numLinea = 0;
+            ArrayList<Producto> lote = new ArrayList<>(TAM_LOTE);
+            try (BufferedReader lector = Files.newBufferedReader(origen.toPath(), StandardCharsets.UTF_8)) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    ++numLinea;
+                    if (linea.isBlank()) continue;
+                    Producto p = leerLinea(linea, numLinea);
+                    Path archivo = base.resolve(p.getNombre() + ".json").normalize();
+                    if (!base.equals(archivo.getParent())) {
+                        throw new Exception("Error al importar: el nombre del producto de la línea " + numLinea
+                                + " no es válido.");
+                    }
+                    escribir(p, archivo.toFile(), numLinea);
+                    lote.add(p);
+                    if (lote.size() == TAM_LOTE) {
+                        receptor.recibir(lote);
+                        importados += lote.size();
+                        lote = new ArrayList<>(TAM_LOTE);
+                    }
+                }
+            } catch (IOException e) {
+                throw new Exception("Error al importar: no se puede leer " + origen.getName() + ": " + e.getMessage());
+            }
+            if (!lote.isEmpty()) {
+                receptor.recibir(lote);
+                importados += lote.size();
+            }
+            confirmar(temporal, carpeta);
+            confirmada = true;
+        } finally {
+            if (!confirmada) borrar(temporal);
+        }
+        EstadisticasPersistencia.getInstance().registrar("importar", origen.getName(), inicio, origen.length());
+        return importados;
+    }
+
+    /**
+     * Exporta los productos a un fichero JSON Lines.
+     *
+     * Precondición: destino está en una carpeta en la que se puede escribir.
+     * Postcondición: destino contiene un producto por línea, en el orden de la lista.
+     *
+     * @param productos Productos a exportar.
+     * @param destino   Fichero de destino; si existe, se sustituye.
+     * @return Número de productos exportados.
+     * @throws Exception Si no se puede escribir el fichero.
+     */
+    public static long exportar(Iterable<Producto> productos, File destino) throws Exception {
+        long inicio = System.nanoTime();
+        Path ruta = destino.toPath().toAbsolutePath();
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        long exportados = 0;
+        try {
+            try (BufferedWriter escritor = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+                // Un JsonWriter por línea, porque sólo admite un valor raíz; escribe directamente en el
+                // búfer, así que no hace falta vaciarlo ni cerrarlo
+                for (Producto p : productos) {
+                    JsonWriter json = new JsonWriter(escritor);
+                    json.setHtmlSafe(true);
+                    AdaptadoresJson.PRODUCTO.write(json, p);
+                    escritor.write('\n');
+                    ++exportados;
+                }
+            }
+            mover(temporal, ruta);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal);
+            throw new Exception("Error al exportar: " + e.getMessage());
+        }
+        EstadisticasPersistencia.getInstance().registrar("exportar", destino.getName(), inicio, destino.length());
+        return exportados;
+    }
+
+    /**
+     * Lee un producto de una línea y lo valida contra el catálogo ({@link Catalogo#conAtributosDelCatalogo}).
+     *
+     * @return El producto, con los tipos y contextos del catálogo.
+     * @throws Exception Si la línea no es un producto válido.
+     */
+    private static Producto leerLinea(String linea, long numLinea) throws Exception {
+        Producto leido;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(linea));
+            leido = AdaptadoresJson.PRODUCTO.read(reader);
+            if (leido == null || reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new Exception("Error al importar: la línea " + numLinea + " no contiene un único producto.");
+            }
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException | JsonParseException e) {
+            throw new Exception("Error al importar: formato JSON incorrecto en la línea " + numLinea
+                    + " (" + e.getMessage() + ")");
+        }
+        if (!nombreValido(leido.getNombre())) {
+            throw new Exception("Error al importar: el nombre del producto de la línea " + numLinea
+                    + " está vacío o contiene separadores de ruta.");
+        }
+        try {
+            return Catalogo.getInstance().conAtributosDelCatalogo(leido);
+        } catch (Exception e) {
+            throw new Exception("Error al importar: línea " + numLinea + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si un nombre de producto se puede usar como nombre de fichero dentro de la carpeta de productos:
+     * no está vacío, no contiene separadores de ruta ni caracteres nulos y no es {@code .} ni {@code ..}.
+     */
+    private static boolean nombreValido(String nombre) {
+        return nombre != null && !nombre.isBlank() && !nombre.equals(".") && !nombre.equals("..")
+                && nombre.indexOf('/') < 0 && nombre.indexOf('\\') < 0 && nombre.indexOf('\0') < 0
+                && nombre.indexOf(File.separatorChar) < 0;
+    }
+
+    /**
+     * Escribe el JSON de un producto en la carpeta temporal.
+     */
+    private static void escribir(Producto p, File archivo, long numLinea) throws Exception {
+        try (JsonWriter writer = AdaptadoresJson.abrirEscritor(archivo, CompresionFicheros.comprimirProductos())) {
+            AdaptadoresJson.PRODUCTO.write(writer, p);
+        } catch (IOException e) {
+            throw new Exception("Error al importar el producto de la línea " + numLinea + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Mueve los JSON de la carpeta temporal a la carpeta de productos y borra la temporal.
+     * <p>
+     * Si ya existe un fichero con el mismo nombre (por ejemplo, de un producto con un borrado pendiente de
+     * guardar), antes se aparta a una subcarpeta de respaldo. Si algún movimiento falla, se deshacen los
+     * anteriores: los ficheros importados vuelven a la carpeta temporal y los apartados a su sitio, de modo
+     * que la carpeta de productos queda como estaba.
+     */
+    private static void confirmar(Path temporal, Path carpeta) throws Exception {
+        ArrayList<Path> ficheros = new ArrayList<>();
+        try (DirectoryStream<Path> contenido = Files.newDirectoryStream(temporal, "*.json")) {
+            for (Path f : contenido) ficheros.add(f.getFileName());
+        } catch (IOException e) {
+            throw new Exception("Error al importar: no se han podido leer los productos: " + e.getMessage());
+        }
+        Path respaldo = temporal.resolve(SUBCARPETA_RESPALDO);
+        ArrayList<Path> movidos = new ArrayList<>();
+        ArrayList<Path> apartados = new ArrayList<>();
+        try {
+            Files.createDirectories(respaldo);
+            for (Path nombre : ficheros) {
+                Path destino = carpeta.resolve(nombre);
+                if (Files.exists(destino)) {
+                    mover(destino, respaldo.resolve(nombre));
+                    apartados.add(nombre);
+                }
+                mover(temporal.resolve(nombre), destino);
+                movidos.add(nombre);
+            }
+        } catch (IOException e) {
+            deshacer(temporal, carpeta, respaldo, movidos, apartados);
+            throw new Exception("Error al importar: no se han podido mover los productos: " + e.getMessage());
+        }
+        borrar(temporal);
+    }
+
+    /**
+     * Deshace un movimiento a medias: devuelve los ficheros movidos a la carpeta temporal y los apartados
+     * a la carpeta de productos. Los errores se avisan, pero no detienen el resto.
+     */
+    private static void deshacer(Path temporal, Path carpeta, Path respaldo, ArrayList<Path> movidos,
+                                 ArrayList<Path> apartados) {
+        for (int i = movidos.size() - 1; i >= 0; --i) {
+            try {
+                mover(carpeta.resolve(movidos.get(i)), temporal.resolve(movidos.get(i)));
+            } catch (IOException e) {
+                System.err.println("No se ha podido deshacer la importación de " + movidos.get(i) + ": " + e.getMessage());
+            }
+        }
+        for (Path nombre : apartados) {
+            try {
+                mover(respaldo.resolve(nombre), carpeta.resolve(nombre));
+            } catch (IOException e) {
+                System.err.println("No se ha podido restaurar " + nombre + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Renombra un fichero, de forma atómica si el sistema de ficheros lo permite.
+     */
+    private static void mover(Path origen, Path destino) throws IOException {
+        try {
+            Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Borra la carpeta temporal y su contenido (incluida la subcarpeta de respaldo), sin lanzar excepciones.
+     */
+    private static void borrar(Path temporal) {
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(temporal)) {
+            for (Path f : ficheros) {
+                if (Files.isDirectory(f)) borrar(f);
+                else Files.deleteIfExists(f);
+            }
+            Files.deleteIfExists(temporal);
+        } catch (IOException e) {
+            System.err.println("No se ha podido borrar la carpeta temporal " + temporal + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Clase <b>InstantaneaInicial</b>.
+ * <p>
+ * Se trata de una clase singleton que permite resetear las carpetas <b>productos</b> y <b>estanterias</b>
+ * sin leer, borrar y volver a escribir cada fichero. Para cada una se mantiene preparada una copia de la
+ * carpeta de datos iniciales ({@code productos.reset} y {@code estanterias.reset}, junto a ellas), que se
+ * construye en un hilo en segundo plano copiando los ficheros tal cual. Resetear consiste en dos
+ * renombrados por carpeta: la carpeta actual pasa a ser una carpeta descartada y la copia preparada ocupa
+ * su lugar. Después, también en segundo plano, se borran las carpetas descartadas y se prepara la copia
+ * para el siguiente reset.
+ * <p>
+ * Las copias se construyen en una carpeta temporal y se renombran al terminar, así que nunca se usa una
+ * copia a medias. Si al resetear la copia no está lista, se espera a que termine o se construye en el
+ * momento.
+ */
+public class InstantaneaInicial {
+    /**
+     * Sufijo de las copias preparadas.
+     */
+    public static final String SUFIJO_COPIA = ".reset";
+
+    /**
+     * Sufijo de las carpetas descartadas, pendientes de borrar.
+     */
+    public static final String SUFIJO_DESCARTADA = ".descartada";
+
+    /**
+     * Carpetas que se resetean, con su carpeta de datos iniciales.
+     */
+    private static final String[][] CARPETAS = {
+            {ConfiguracionAlmacenamiento.PRODUCTOS, ConfiguracionAlmacenamiento.PRODUCTOS_INICIALES},
+            {ConfiguracionAlmacenamiento.ESTANTERIAS, ConfiguracionAlmacenamiento.ESTANTERIAS_INICIALES}
+    };
+
+    /**
+     * Instancia única de la clase.
+     */
+    private static final InstantaneaInicial instance = new InstantaneaInicial();
+
+    /**
+     * Hilo que prepara las copias, o null si no hay ninguno en marcha.
+     */
+    private Thread preparacion;
+
+    /**
+     * Indica si las copias están listas para el próximo reset.
+     */
+    private volatile boolean preparada = false;
+
+    /**
+     * Constructor privado (singleton).
+     */
+    private InstantaneaInicial() {
+    }
+
+    /**
+     * Devuelve la instancia única de InstantaneaInicial.
+     *
+     * @return Instancia de InstantaneaInicial.
+     */
+    public static InstantaneaInicial getInstance() {
+        return instance;
+    }
+
+    /**
+     * Prepara en un hilo en segundo plano las copias para el próximo reset, borrando antes las carpetas
+     * descartadas y las copias de ejecuciones anteriores.
+     *
+     * Precondición: -
+     * Postcondición: Si no había una preparación en marcha, se lanza en un hilo <i>daemon</i>.
+     */
+    public synchronized void prepararEnSegundoPlano() {
+        if (preparacion != null && preparacion.isAlive()) return;
+        preparada = false;
+        preparacion = new Thread(() -> {
+            try {
+                preparar();
+            } catch (IOException e) {
+                System.err.println("No se ha podido preparar la copia para resetear: " + e.getMessage());
+            }
+        }, "preparacion-reset");
+        preparacion.setDaemon(true);
+        preparacion.start();
+    }
+
+    /**
+     * Sustituye las carpetas de productos y estanterías por las copias de los datos iniciales.
+     *
+     * Precondición: Existen las carpetas <b>productosIniciales</b> y <b>estanteriasIniciales</b>.
+     * Postcondición: Las carpetas <b>productos</b> y <b>estanterias</b> contienen los ficheros iniciales, y
+     *                se prepara en segundo plano la copia para el siguiente reset.
+     *
+     * @throws Exception Si no se pueden preparar las copias o renombrar las carpetas.
+     */
+    public synchronized void restaurar() throws Exception {
+        long inicio = System.nanoTime();
+        if (preparacion != null) {
+            preparacion.join();
+            preparacion = null;
+        }
+        try {
+            if (!preparada) preparar();
+            preparada = false;
+            Path raiz = Path.of(ConfiguracionAlmacenamiento.getRaiz());
+            String marca = "." + System.nanoTime();
+            for (String[] carpeta : CARPETAS) {
+                Path actual = raiz.resolve(carpeta[0]);
+                if (Files.exists(actual)) mover(actual, raiz.resolve(carpeta[0] + SUFIJO_DESCARTADA + marca));
+                mover(raiz.resolve(carpeta[0] + SUFIJO_COPIA), actual);
+            }
+        } catch (IOException e) {
+            throw new Exception("Error al resetear: " + e.getMessage());
+        }
+        EstadisticasPersistencia.getInstance().registrar("reset", ConfiguracionAlmacenamiento.getRaiz(), inicio, 0);
+        prepararEnSegundoPlano();
+    }
+
+    /**
+     * Borra las carpetas descartadas y construye las copias que falten.
+     */
+    private void preparar() throws IOException {
+        Path raiz = Path.of(ConfiguracionAlmacenamiento.getRaiz());
+        try (DirectoryStream<Path> carpetas = Files.newDirectoryStream(raiz, "*" + SUFIJO_DESCARTADA + ".*")) {
+            for (Path descartada : carpetas) borrar(descartada);
+        }
+        for (String[] carpeta : CARPETAS) {
+            Path copia = raiz.resolve(carpeta[0] + SUFIJO_COPIA);
+            if (Files.isDirectory(copia)) borrar(copia);
+            Path temporal = raiz.resolve(carpeta[0] + SUFIJO_COPIA + ".tmp");
+            if (Files.exists(temporal)) borrar(temporal);
+            Files.createDirectories(temporal);
+            try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(raiz.resolve(carpeta[1]))) {
+                for (Path f : ficheros) {
+                    if (Files.isRegularFile(f)) Files.copy(f, temporal.resolve(f.getFileName()));
+                }
+            }
+            mover(temporal, copia);
+        }
+        preparada = true;
+    }
+
+    /**
+     * Renombra un fichero o carpeta, de forma atómica si el sistema de ficheros lo permite.
+     */
+    private static void mover(Path origen, Path destino) throws IOException {
+        try {
+            Files.move(origen, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origen, destino);
+        }
+    }
+
+    /**
+     * Borra una carpeta y los ficheros que contiene.
+     */
+    private static void borrar(Path carpeta) throws IOException {
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(carpeta)) {
+            for (Path f : ficheros) Files.deleteIfExists(f);
+        }
+        Files.deleteIfExists(carpeta);
+    }
+}
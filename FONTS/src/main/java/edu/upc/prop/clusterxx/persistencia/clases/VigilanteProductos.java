@@ -0,0 +1,217 @@
+package edu.upc.prop.clusterxx.persistencia.clases;
+
+import edu.upc.prop.clusterxx.dominio.Producto;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clase que vigila la carpeta <b>productos</b> para detectar los ficheros que crean, modifican o borran
+ * otras herramientas mientras la aplicación está abierta.
+ * <p>
+ * Un hilo <i>daemon</i> espera los eventos del {@link WatchService}, agrupa los que llegan seguidos (durante
+ * {@code ESPERA_MS}) y sólo lee los ficheros afectados: para cada nombre se mira el estado actual del
+ * fichero, de modo que un fichero creado y borrado en el mismo grupo cuenta como borrado. El resultado se
+ * entrega al receptor (normalmente el controlador de dominio), que decide cómo aplicarlo.
+ * <p>
+ * Un fichero que no se puede leer (por ejemplo, porque todavía se está escribiendo) se ignora con un
+ * aviso; el siguiente evento de modificación lo volverá a intentar. Si el sistema pierde eventos
+ * (desbordamiento), se vuelve a leer la carpeta entera.
+ * <p>
+ * La vigilancia se puede desactivar con la propiedad del sistema {@code persistencia.vigilarProductos=false}.
+ */
+public class VigilanteProductos implements Runnable {
+    /**
+     * Propiedad del sistema que activa o desactiva la vigilancia.
+     */
+    public static final String PROPIEDAD_ACTIVO = "persistencia.vigilarProductos";
+
+    /**
+     * Tiempo, en milisegundos, que se espera a más eventos antes de leer los ficheros afectados.
+     */
+    public static final long ESPERA_MS = 100;
+
+    /**
+     * Receptor de los cambios detectados en la carpeta de productos.
+     */
+    @FunctionalInterface
+    public interface ReceptorCambios {
+        /**
+         * Recibe los productos cuyos ficheros han cambiado.
+         *
+         * @param cambios     Productos leídos por nombre; el valor es null si el fichero ya no existe.
+         * @param existentes  Nombres de todos los productos de la carpeta si se han perdido eventos y se ha
+         *                    leído entera (los productos que no estén aquí se han borrado), o null.
+         */
+        void aplicar(Map<String, Producto> cambios, Set<String> existentes);
+    }
+
+    /**
+     * Carpeta vigilada.
+     */
+    private final Path carpeta;
+
+    /**
+     * Servicio de vigilancia de la carpeta.
+     */
+    private final WatchService servicio;
+
+    /**
+     * Receptor de los cambios.
+     */
+    private final ReceptorCambios receptor;
+
+    /**
+     * Constructor privado: la vigilancia se crea con {@link #iniciar}.
+     */
+    private VigilanteProductos(Path carpeta, WatchService servicio, ReceptorCambios receptor) {
+        this.carpeta = carpeta;
+        this.servicio = servicio;
+        this.receptor = receptor;
+    }
+
+    /**
+     * Empieza a vigilar la carpeta <b>productos</b> en un hilo en segundo plano.
+     *
+     * Precondición: -
+     * Postcondición: Si la vigilancia está activada, los cambios en la carpeta se entregan al receptor.
+     *
+     * @param receptor Receptor de los cambios.
+     * @return El vigilante, o null si la vigilancia está desactivada.
+     * @throws Exception Si no se puede vigilar la carpeta.
+     */
+    public static VigilanteProductos iniciar(ReceptorCambios receptor) throws Exception {
+        if (!Boolean.parseBoolean(System.getProperty(PROPIEDAD_ACTIVO, "true"))) return null;
+        Path carpeta = new File(ArchiusProductes.folderPath).toPath();
+        VigilanteProductos vigilante;
+        try {
+            WatchService servicio = FileSystems.getDefault().newWatchService();
+            carpeta.register(servicio, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            vigilante = new VigilanteProductos(carpeta, servicio, receptor);
+        } catch (IOException e) {
+            throw new Exception("No se puede vigilar la carpeta de productos: " + e.getMessage());
+        }
+        Thread hilo = new Thread(vigilante, "vigilante-productos");
+        hilo.setDaemon(true);
+        hilo.start();
+        return vigilante;
+    }
+
+    /**
+     * Deja de vigilar la carpeta. El hilo termina en cuanto lo detecta.
+     */
+    public void detener() {
+        try {
+            servicio.close();
+        } catch (IOException e) {
+            System.err.println("Error al detener la vigilancia de productos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Bucle del hilo de vigilancia: espera eventos, los agrupa y entrega los cambios.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                HashSet<String> nombres = new HashSet<>();
+                boolean desbordado = recoger(servicio.take(), nombres);
+                WatchKey siguiente;
+                while ((siguiente = servicio.poll(ESPERA_MS, TimeUnit.MILLISECONDS)) != null) {
+                    desbordado |= recoger(siguiente, nombres);
+                }
+                try {
+                    if (desbordado) {
+                        releerCarpeta();
+                    } else if (!nombres.isEmpty()) {
+                        HashMap<String, Producto> cambios = new HashMap<>();
+                        for (String nombre : nombres) leer(nombre, cambios);
+                        if (!cambios.isEmpty()) receptor.aplicar(cambios, null);
+                    }
+                } catch (ClosedWatchServiceException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    // Un grupo de cambios que no se puede aplicar no detiene la vigilancia
+                    System.err.println("No se han podido aplicar los cambios de la carpeta de productos: " + e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Vigilancia detenida
+        }
+    }
+
+    /**
+     * Añade los nombres de los productos afectados por los eventos de una clave.
+     *
+     * @return true si se han perdido eventos.
+     */
+    private boolean recoger(WatchKey clave, HashSet<String> nombres) {
+        boolean desbordado = false;
+        for (WatchEvent<?> evento : clave.pollEvents()) {
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                desbordado = true;
+                continue;
+            }
+            String fichero = evento.context().toString();
+            if (fichero.endsWith(".json")) nombres.add(fichero.substring(0, fichero.length() - ".json".length()));
+        }
+        clave.reset();
+        return desbordado;
+    }
+
+    /**
+     * Lee el estado actual del fichero de un producto y lo añade a los cambios. Si el fichero existe pero
+     * no se puede leer, o tiene tipos o contextos que no están en el catálogo, no se añade.
+     */
+    private void leer(String nombre, HashMap<String, Producto> cambios) {
+        File archivo = carpeta.resolve(nombre + ".json").toFile();
+        if (!archivo.isFile()) {
+            cambios.put(nombre, null);
+            return;
+        }
+        try {
+            Producto leido = ArchiusProductes.cargarProd(archivo);
+            if (leido == null || !nombre.equals(leido.getNombre())) {
+                System.err.println("Se ignora " + archivo.getName() + ": no contiene el producto " + nombre + ".");
+                return;
+            }
+            // Los tipos y contextos deben existir y ser los del catálogo, igual que en una importación
+            cambios.put(nombre, Catalogo.getInstance().conAtributosDelCatalogo(leido));
+        } catch (Exception e) {
+            System.err.println("Se ignora el cambio externo de " + archivo.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lee toda la carpeta después de perder eventos. Los ficheros que no se pueden leer cuentan como
+     * existentes, para no borrar su producto.
+     */
+    private void releerCarpeta() {
+        HashMap<String, Producto> cambios = new HashMap<>();
+        HashSet<String> existentes = new HashSet<>();
+        for (File archivo : Objects.requireNonNull(carpeta.toFile().listFiles())) {
+            String fichero = archivo.getName();
+            if (!fichero.endsWith(".json")) continue;
+            String nombre = fichero.substring(0, fichero.length() - ".json".length());
+            existentes.add(nombre);
+            leer(nombre, cambios);
+        }
+        cambios.values().removeIf(Objects::isNull);
+        receptor.aplicar(cambios, existentes);
+    }
+}
@@ -4,11 +4,17 @@ import edu.upc.prop.clusterxx.dominio.*;
 import edu.upc.prop.clusterxx.persistencia.clases.ArchiusEstanterias;
 import edu.upc.prop.clusterxx.persistencia.clases.ArchiusProductes;
 import edu.upc.prop.clusterxx.persistencia.clases.Catalogo;
+import edu.upc.prop.clusterxx.persistencia.clases.ConfiguracionAlmacenamiento;
+import edu.upc.prop.clusterxx.persistencia.clases.EstadisticasPersistencia;
+import edu.upc.prop.clusterxx.persistencia.clases.ImportacionProductos;
+import edu.upc.prop.clusterxx.persistencia.clases.InstantaneaInicial;
 import edu.upc.prop.clusterxx.persistencia.clases.Utils;
+import edu.upc.prop.clusterxx.persistencia.clases.VigilanteProductos;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 /**
  * Clase que representa el controlador de persistencia (CtrlPersistencia).
@@ -35,6 +41,14 @@ public class CtrlPersistencia {
      * Utilidad para gestión de matriz de afinidad u otras operaciones auxiliares.
      */
     private final Utils utils;
+    /**
+     * Vigilante de la carpeta de productos, o null si no se vigila.
+     */
+    private VigilanteProductos vigilante;
+    /**
+     * Receptor de los cambios de la carpeta de productos, para volver a vigilarla después de un reset.
+     */
+    private VigilanteProductos.ReceptorCambios receptorCambios;
 
     /**
      * Única instancia de CtrlPersistencia (patrón singleton).
@@ -50,15 +64,22 @@ public class CtrlPersistencia {
     }
 
     /**
-     * Reinicia la persistencia, recargando el catálogo inicial.
+     * Reinicia la persistencia, sustituyendo las carpetas de productos y estanterías por una copia ya
+     * preparada de los datos iniciales ({@link InstantaneaInicial}). Mientras tanto se deja de vigilar la
+     * carpeta de productos, que después se vuelve a vigilar en su nueva ubicación.
      * 
      * Precondición: -
-     * Postcondición: Se vacían las carpetas de productos y estanterías, y se vuelven a cargar los iniciales.
+     * Postcondición: Las carpetas de productos y estanterías contienen los datos iniciales.
      *
-     * @throws Exception Si ocurre algún error al recargar el catálogo.
+     * @throws Exception Si ocurre algún error al restaurar las carpetas.
      */
     public void reset() throws Exception {
-        catalogo.cargarCatalogo();
+        if (vigilante != null) vigilante.detener();
+        try {
+            InstantaneaInicial.getInstance().restaurar();
+        } finally {
+            if (vigilante != null) vigilante = VigilanteProductos.iniciar(receptorCambios);
+        }
     }
 
     /**
@@ -87,6 +108,53 @@ public class CtrlPersistencia {
         archiusProductes.eliminarProducto(nombre);
     }
 
+    /**
+     * Importa los productos de un fichero JSON Lines (un producto por línea).
+     * 
+     * Precondición: ruta es un fichero legible.
+     * Postcondición: Si todos los productos son válidos y el receptor acepta todos los lotes, se guardan sus
+     *                JSON en la carpeta de productos; si no, la carpeta no cambia (ver {@link ImportacionProductos}).
+     *
+     * @param ruta     Ruta del fichero a importar.
+     * @param receptor Receptor de los lotes de productos validados.
+     * @return Número de productos importados.
+     * @throws Exception Si el fichero no es válido, no se puede leer o el receptor rechaza un lote.
+     */
+    public long importarProductos(String ruta, ImportacionProductos.ReceptorLote receptor) throws Exception {
+        return ImportacionProductos.importar(new File(ruta), receptor);
+    }
+
+    /**
+     * Exporta los productos a un fichero JSON Lines (un producto por línea).
+     * 
+     * Precondición: -
+     * Postcondición: El fichero ruta contiene todos los productos indicados.
+     *
+     * @param productos Productos a exportar.
+     * @param ruta      Ruta del fichero de destino.
+     * @return Número de productos exportados.
+     * @throws Exception Si no se puede escribir el fichero.
+     */
+    public long exportarProductos(Iterable<Producto> productos, String ruta) throws Exception {
+        return ImportacionProductos.exportar(productos, new File(ruta));
+    }
+
+    /**
+     * Empieza a vigilar la carpeta de productos para detectar los cambios que hacen otras herramientas.
+     * 
+     * Precondición: -
+     * Postcondición: Los ficheros de productos creados, modificados o borrados se leen y se entregan al receptor.
+     *
+     * @param receptor Receptor de los cambios.
+     * @return El vigilante, o null si la vigilancia está desactivada.
+     * @throws Exception Si no se puede vigilar la carpeta.
+     */
+    public VigilanteProductos vigilarProductos(VigilanteProductos.ReceptorCambios receptor) throws Exception {
+        receptorCambios = receptor;
+        vigilante = VigilanteProductos.iniciar(receptor);
+        return vigilante;
+    }
+
     /**
      * Guarda una estantería como un fichero JSON en la carpeta de estanterías.
      * 
@@ -115,14 +183,41 @@ public class CtrlPersistencia {
 
     /**
      * Constructor privado del CtrlPersistencia (singleton).
+     * Si la carpeta raíz de almacenamiento ({@link ConfiguracionAlmacenamiento}) es nueva, la llena con los
+     * datos iniciales.
      *
-     * @throws IOException Si ocurre algún problema de E/S al instanciar los objetos de persistencia.
+     * @throws IOException Si ocurre algún problema de E/S al instanciar los objetos de persistencia o al
+     *                     preparar la carpeta raíz.
      */
     private CtrlPersistencia() throws IOException {
         archiusEstanterias = ArchiusEstanterias.getInstance();
         archiusProductes = ArchiusProductes.getInstance();
         catalogo = Catalogo.getInstance();
         utils = Utils.getInstance();
+        // Una raíz de almacenamiento nueva empieza con los datos iniciales
+        if (ConfiguracionAlmacenamiento.prepararCarpetas()) {
+            try {
+                catalogo.cargarCatalogo();
+            } catch (Exception e) {
+                throw new IOException("Error al preparar la carpeta " + ConfiguracionAlmacenamiento.getRaiz()
+                        + ": " + e.getMessage(), e);
+            }
+        }
+        InstantaneaInicial.getInstance().prepararEnSegundoPlano();
+    }
+
+    /**
+     * Indica la lista de productos del sistema, con la que se enlazan los productos de las distribuciones
+     * al leer las estanterías.
+     * 
+     * Precondición: productos no es null.
+     * Postcondición: Las distribuciones que se lean a partir de ahora contienen los mismos objetos Producto
+     *                que la lista que devuelva productos.
+     *
+     * @param productos Proveedor de la lista de productos del sistema.
+     */
+    public void setProductosCargados(Supplier<ArrayList<Producto>> productos) {
+        ArchiusEstanterias.setProductos(productos);
     }
 
     /**
@@ -141,17 +236,15 @@ public class CtrlPersistencia {
      * Carga las estanterías desde la carpeta de persistencia correspondiente.
      * 
      * Precondición: -
-     * Postcondición: Devuelve una lista con todas las estanterías almacenadas en ficheros JSON.
+     * Postcondición: Devuelve una lista con todas las estanterías almacenadas en ficheros JSON. Sólo se leen
+     *                sus cabeceras; cada distribución se carga la primera vez que se accede a ella.
      *
      * @return Lista de estanterías.
      * @throws Exception Si ocurre algún error en la lectura de los ficheros.
      */
     public ArrayList<Estanteria> getEstanterias() throws Exception {
-        String folderpath = System.getProperty("user.dir") + File.separator + "FONTS" + File.separator +
-                            "src" + File.separator + "main" + File.separator + "java" + File.separator +
-                            "edu" + File.separator + "upc" + File.separator + "prop" + File.separator +
-                            "clusterxx" + File.separator + "persistencia" + File.separator + "estanterias";
-        return ArchiusEstanterias.cargarEstanterias(folderpath);
+        String folderpath = ConfiguracionAlmacenamiento.carpeta(ConfiguracionAlmacenamiento.ESTANTERIAS);
+        return ArchiusEstanterias.cargarCabeceras(folderpath);
     }
 
     /**
@@ -176,10 +269,7 @@ public class CtrlPersistencia {
      * @throws Exception Si ocurre algún error en la lectura de los ficheros.
      */
     public ArrayList<Producto> getProductos() throws Exception {
-        String folderpath = System.getProperty("user.dir") + File.separator + "FONTS" + File.separator +
-                            "src" + File.separator + "main" + File.separator + "java" + File.separator +
-                            "edu" + File.separator + "upc" + File.separator + "prop" + File.separator +
-                            "clusterxx" + File.separator + "persistencia" + File.separator + "productos";
+        String folderpath = ConfiguracionAlmacenamiento.carpeta(ConfiguracionAlmacenamiento.PRODUCTOS);
         return ArchiusProductes.cargarProductos(folderpath);
     }
 
@@ -231,6 +321,19 @@ public class CtrlPersistencia {
         return utils.getMatriz();
     }
 
+    /**
+     * Devuelve un resumen de las operaciones de lectura y escritura realizadas.
+     * 
+     * Precondición: -
+     * Postcondición: Retorna, para cada tipo de operación, su número, tiempo, bytes y operaciones lentas
+     *                (ver {@link EstadisticasPersistencia}).
+     *
+     * @return Resumen de las operaciones de persistencia.
+     */
+    public String getResumenEstadisticas() {
+        return EstadisticasPersistencia.getInstance().resumen();
+    }
+
     /**
      * Devuelve la instancia única de CtrlPersistencia.
      * 
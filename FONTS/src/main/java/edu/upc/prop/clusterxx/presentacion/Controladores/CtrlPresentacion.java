@@ -7,6 +7,7 @@ import edu.upc.prop.clusterxx.dominio.Producto;
 import edu.upc.prop.clusterxx.dominio.Tipo;
 import edu.upc.prop.clusterxx.presentacion.Vistas.*;
 
+import javax.swing.SwingUtilities;
 import java.util.ArrayList;
 
 /**
@@ -37,7 +38,7 @@ public class CtrlPresentacion {
      * @throws Exception Si ocurre un error durante la inicialización de {@code CtrlDominio} o las vistas.
      */
     public CtrlPresentacion() throws Exception {
-        this.ctrlDominio = new CtrlDominio();
+        this.ctrlDominio = CtrlDominio.getInstance();
         vistaPrincipal = new VistaPrincipal(this);
         vistaGestionarProductos = new VistaGestionarProductos(this);
         vistaCrearDistribucion = new VistaCrearDistribucion(this);
@@ -245,6 +246,59 @@ public class CtrlPresentacion {
         return ctrlDominio.getAfinidadTotal();
     }
 
+    /**
+     * Obtiene una cota superior de la afinidad total de la distribución actual.
+     *
+     * <p><b>Pre:</b> El controlador de dominio debe estar inicializado.</p>
+     *
+     * <p><b>Post:</b> Devuelve un valor que ningún orden de los productos de la distribución puede superar.</p>
+     *
+     * @return La cota superior de la afinidad.
+     */
+    public int getCotaSuperior() {
+        return ctrlDominio.getCotaSuperior();
+    }
+
+    /**
+     * Obtiene el volcado JSON de las métricas de las ordenaciones.
+     *
+     * <p><b>Pre:</b> El controlador de dominio debe estar inicializado.</p>
+     *
+     * <p><b>Post:</b> Devuelve las métricas registradas desde el inicio de la aplicación.</p>
+     *
+     * @return El JSON con las métricas.
+     */
+    public String getMetricasJson() {
+        return ctrlDominio.getMetricasJson();
+    }
+
+    /**
+     * Escribe el volcado JSON de las métricas en un fichero.
+     *
+     * <p><b>Pre:</b> {@code ruta} es una ruta en la que se puede escribir.</p>
+     *
+     * <p><b>Post:</b> El fichero contiene las métricas registradas hasta ahora.</p>
+     *
+     * @param ruta Ruta del fichero.
+     * @throws Exception Si no se puede escribir el fichero.
+     */
+    public void volcarMetricas(String ruta) throws Exception {
+        ctrlDominio.volcarMetricas(ruta);
+    }
+
+    /**
+     * Obtiene el resumen de las operaciones de lectura y escritura de la persistencia.
+     *
+     * <p><b>Pre:</b> El controlador de dominio debe estar inicializado.</p>
+     *
+     * <p><b>Post:</b> Devuelve, por tipo de operación, su número, tiempo, bytes y operaciones lentas.</p>
+     *
+     * @return El resumen de la persistencia.
+     */
+    public String getResumenPersistencia() {
+        return ctrlDominio.getResumenPersistencia();
+    }
+
     /**
      * Verifica si existe una distribución inicializada.
      *
@@ -288,6 +342,39 @@ public class CtrlPresentacion {
         ctrlDominio.persistenciaProductos();
     }
 
+    /**
+     * Importa los productos de un fichero JSON Lines (un producto por línea).
+     *
+     * <p><b>Pre:</b> {@code ruta} es un fichero legible.</p>
+     *
+     * <p><b>Post:</b> Si todos los productos son válidos, se añaden al catálogo y se actualiza la vista para crear
+     * distribuciones; si no, no cambia nada.</p>
+     *
+     * @param ruta Ruta del fichero a importar.
+     * @return Número de productos importados.
+     * @throws Exception Si algún producto no es válido, ya existe, o no se puede leer o guardar el fichero.
+     */
+    public long importarProductos(String ruta) throws Exception {
+        long n = ctrlDominio.importarProductos(ruta);
+        actualizarVistaCrearDistribucion();
+        return n;
+    }
+
+    /**
+     * Exporta todos los productos del catálogo a un fichero JSON Lines (un producto por línea).
+     *
+     * <p><b>Pre:</b> {@code ruta} es una ruta en la que se puede escribir.</p>
+     *
+     * <p><b>Post:</b> El fichero contiene todos los productos del catálogo.</p>
+     *
+     * @param ruta Ruta del fichero de destino.
+     * @return Número de productos exportados.
+     * @throws Exception Si no se puede escribir el fichero.
+     */
+    public long exportarProductos(String ruta) throws Exception {
+        return ctrlDominio.exportarProductos(ruta);
+    }
+
     /**
      * Elimina un producto específico por su nombre.
      *
@@ -351,17 +438,47 @@ public class CtrlPresentacion {
     /**
      * Crea una nueva distribución con los productos y algoritmo especificados.
      *
-     * <p><b>Pre:</b> Requiere una lista de productos {@code productos} y un {@code int} {@code algoritmo} válido (1, 2 o 3).</p>
+     * <p><b>Pre:</b> Requiere una lista de productos {@code productos} y un {@code int} {@code algoritmo} válido.</p>
      *
      * <p><b>Post:</b> Crea una nueva distribución, la ordena según el algoritmo especificado y configura el panel de distribución en la vista principal.</p>
      *
+     * <p>Puede llamarse fuera del hilo de eventos de Swing: el panel se actualiza en ese hilo.</p>
+     *
      * @param productos El listado de productos a incluir en la distribución.
-     * @param algoritmo El algoritmo a utilizar para ordenar la distribución (1: Bruto, 2: Aproximación, 3: Greedy).
+     * @param algoritmo El algoritmo a utilizar para ordenar la distribución (1: Bruto, 2: Aproximación, 3: Greedy, 4: Greedy multiarranque, 5: Aristas voraces, 6: Búsqueda local, 7: Genético, 8: Búsqueda tabú, 9: Exacto, 10: Automático, 11: Por estantes, 12: Por estantes con afinidad vertical).
      * @throws Exception Si ocurre un error durante la creación de la distribución.
      */
     public void crearDistribucion(ArrayList<Producto> productos, int algoritmo) throws Exception {
         ctrlDominio.crearDistribucion(productos, algoritmo);
-        vistaPrincipal.configurarPanelDistribucion();
+        SwingUtilities.invokeLater(vistaPrincipal::configurarPanelDistribucion);
+    }
+
+    /**
+     * Cambia la brecha de optimalidad objetivo de las siguientes distribuciones que se creen.
+     *
+     * <p><b>Pre:</b> {@code brecha} está entre 0 (incluido) y 1 (excluido).</p>
+     *
+     * <p><b>Post:</b> Los algoritmos que lo admiten se detienen en cuanto la afinidad está a esa fracción o menos
+     * de la cota superior; 0 desactiva la parada anticipada.</p>
+     *
+     * @param brecha Brecha objetivo, como fracción de la cota superior.
+     * @throws Exception Si la brecha no es válida.
+     */
+    public void setBrechaObjetivo(double brecha) throws Exception {
+        ctrlDominio.setBrechaObjetivo(brecha);
+    }
+
+    /**
+     * Obtiene la brecha de optimalidad objetivo con la que se crean las distribuciones.
+     *
+     * <p><b>Pre:</b> El controlador de dominio debe estar inicializado.</p>
+     *
+     * <p><b>Post:</b> Devuelve la brecha objetivo actual (0 si no hay parada anticipada).</p>
+     *
+     * @return La brecha objetivo, como fracción de la cota superior.
+     */
+    public double getBrechaObjetivo() {
+        return ctrlDominio.getBrechaObjetivo();
     }
 
     /**
@@ -382,6 +499,43 @@ public class CtrlPresentacion {
         vistaPrincipal.configurarPanelDistribucion();
     }
 
+    /**
+     * Añade un producto a la distribución actual reoptimizándola sólo alrededor de su posición.
+     *
+     * <p><b>Pre:</b> Existe una distribución y el producto con el {@code nombreProducto} especificado existe
+     * y no está en ella.</p>
+     *
+     * <p><b>Post:</b> El producto pasa a formar parte de la distribución y se configura el panel de distribución
+     * en la vista principal.</p>
+     *
+     * <p>Puede llamarse fuera del hilo de eventos de Swing: el panel se actualiza en ese hilo.</p>
+     *
+     * @param nombreProducto El nombre del producto a añadir.
+     * @throws Exception Si no se puede añadir el producto a la distribución.
+     */
+    public void anadirProductoDistribucion(String nombreProducto) throws Exception {
+        ctrlDominio.anadirProductoDistribucion(nombreProducto);
+        SwingUtilities.invokeLater(vistaPrincipal::configurarPanelDistribucion);
+    }
+
+    /**
+     * Elimina un producto de la distribución actual reoptimizándola sólo alrededor del hueco.
+     *
+     * <p><b>Pre:</b> Existe una distribución que contiene el producto con el {@code nombreProducto} especificado.</p>
+     *
+     * <p><b>Post:</b> El producto deja de estar en la distribución y se configura el panel de distribución
+     * en la vista principal.</p>
+     *
+     * <p>Puede llamarse fuera del hilo de eventos de Swing: el panel se actualiza en ese hilo.</p>
+     *
+     * @param nombreProducto El nombre del producto a eliminar.
+     * @throws Exception Si no se puede eliminar el producto de la distribución.
+     */
+    public void eliminarProductoDistribucion(String nombreProducto) throws Exception {
+        ctrlDominio.eliminarProductoDistribucion(nombreProducto);
+        SwingUtilities.invokeLater(vistaPrincipal::configurarPanelDistribucion);
+    }
+
     /**
      * Crea una nueva estantería con el nombre especificado.
      *
@@ -7,6 +7,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ItemEvent;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Clase que representa la vista para crear una nueva distribución de productos.
@@ -30,6 +31,10 @@ public class VistaCrearDistribucion {
      * ComboBox para seleccionar el tipo de algoritmo a emplear.
      */
     private JComboBox<String> algoritmos;
+    /**
+     * Selector de la brecha de optimalidad objetivo, en porcentaje de la cota superior (0 = sin parada anticipada).
+     */
+    private JSpinner brechaObjetivo;
 
     /**
      * Botón para volver atrás.
@@ -108,11 +113,26 @@ public class VistaCrearDistribucion {
 
         JPanel panelAlgoritmos = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         algoritmos = new JComboBox<>();
+        algoritmos.addItem("Automático");
         algoritmos.addItem("Fuerza bruta");
         algoritmos.addItem("Aproximación");
         algoritmos.addItem("Greedy");
+        algoritmos.addItem("Greedy multiarranque");
+        algoritmos.addItem("Aristas voraces");
+        algoritmos.addItem("Búsqueda local");
+        algoritmos.addItem("Genético");
+        algoritmos.addItem("Búsqueda tabú");
+        algoritmos.addItem("Exacto");
+        algoritmos.addItem("Por estantes");
+        algoritmos.addItem("Por estantes (con verticales)");
         panelAlgoritmos.add(algoritmos);
 
+        brechaObjetivo = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 99.0, 0.5));
+        brechaObjetivo.setToolTipText("Los algoritmos que lo admiten se detienen al quedar a este porcentaje o menos "
+                + "de la cota superior (0 = sin parada anticipada).");
+        panelAlgoritmos.add(new JLabel("Brecha objetivo (%):"));
+        panelAlgoritmos.add(brechaObjetivo);
+
         panelBotones.add(panelAlgoritmos);
 
         JPanel panelBotonesInferior = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -247,13 +267,15 @@ public class VistaCrearDistribucion {
      * Crea la distribución usando el algoritmo seleccionado y los productos marcados.
      *
      * Precondición: Debe haberse seleccionado un algoritmo y al menos un producto.
-     * Postcondición: Se crea la distribución con los productos seleccionados y el algoritmo elegido.
-     *                Se muestra un mensaje de confirmación y se cierra la ventana.
+     * Postcondición: Se empieza a crear la distribución con los productos seleccionados y el algoritmo elegido
+     *                en un hilo aparte, con el botón de aceptar desactivado. Al acabar se muestra un mensaje de
+     *                confirmación y se cierra la ventana, o se muestra el error.
      *
-     * @throws Exception Si se produce algún error durante la creación de la distribución.
+     * @throws Exception Si la brecha objetivo no es válida.
      */
     private void crearDistribucion() throws Exception {
         String algoritmo = (String) algoritmos.getSelectedItem();
+        ctrlP.setBrechaObjetivo(((Number) brechaObjetivo.getValue()).doubleValue() / 100);
         ArrayList<Producto> productos = ctrlP.getProductosCatalogo();
         
         ArrayList<Producto> productosSeleccionados = new ArrayList<>();
@@ -268,17 +290,59 @@ public class VistaCrearDistribucion {
             }
         }
 
-        // Aplicar el algoritmo seleccionado.
+        // Identificador del algoritmo seleccionado.
+        int id;
         if (algoritmo.equals("Fuerza bruta")) {
-            ctrlP.crearDistribucion(productosSeleccionados, 1);
+            id = 1;
         } else if(algoritmo.equals("Aproximación")) {
-            ctrlP.crearDistribucion(productosSeleccionados, 2);
+            id = 2;
+        } else if (algoritmo.equals("Greedy multiarranque")) {
+            id = 4;
+        } else if (algoritmo.equals("Aristas voraces")) {
+            id = 5;
+        } else if (algoritmo.equals("Búsqueda local")) {
+            id = 6;
+        } else if (algoritmo.equals("Genético")) {
+            id = 7;
+        } else if (algoritmo.equals("Búsqueda tabú")) {
+            id = 8;
+        } else if (algoritmo.equals("Exacto")) {
+            id = 9;
+        } else if (algoritmo.equals("Automático")) {
+            id = 10;
+        } else if (algoritmo.equals("Por estantes")) {
+            id = 11;
+        } else if (algoritmo.equals("Por estantes (con verticales)")) {
+            id = 12;
         } else {
-            ctrlP.crearDistribucion(productosSeleccionados, 3);
+            id = 3;
         }
 
-        JOptionPane.showMessageDialog(null, "Distribución creada correctamente.");
-        frameVista.setVisible(false);
+        // Los algoritmos pueden tardar segundos: se ejecutan fuera del hilo de eventos para no congelar la interfaz.
+        aceptar.setEnabled(false);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                ctrlP.crearDistribucion(productosSeleccionados, id);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                aceptar.setEnabled(true);
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(null, "Error: " + e.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                JOptionPane.showMessageDialog(null, "Distribución creada correctamente.");
+                frameVista.setVisible(false);
+            }
+        }.execute();
     }
 
     /**
@@ -317,13 +381,15 @@ public class VistaCrearDistribucion {
      * Cambia la visibilidad de la vista.
      *
      * Precondición: -
-     * Postcondición: Si se hace visible, se actualizan las checkboxes con la distribución actual (si existe).
+     * Postcondición: Si se hace visible, se actualizan las checkboxes con la distribución actual (si existe)
+     *                y la brecha objetivo con la actual.
      *
      * @param b true para mostrar la vista, false para ocultarla.
      */
     public void setVisible(boolean b) {
         if (b) {
             actualizarCheckBoxes();
+            brechaObjetivo.setValue(ctrlP.getBrechaObjetivo() * 100);
         }
         frameVista.setVisible(b);
     }
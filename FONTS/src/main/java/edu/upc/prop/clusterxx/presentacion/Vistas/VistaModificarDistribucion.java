@@ -6,10 +6,12 @@ import edu.upc.prop.clusterxx.presentacion.Controladores.CtrlPresentacion;
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Clase que representa la vista para modificar una distribución existente.
- * Permite visualizar la distribución actual, modificar el orden de los productos y ver la afinidad total.
+ * Permite visualizar la distribución actual, modificar el orden de los productos, añadir o quitar productos
+ * sin volver a crearla y ver la afinidad total.
  */
 public class VistaModificarDistribucion {
 
@@ -74,17 +76,24 @@ public class VistaModificarDistribucion {
     }
 
     /**
-     * Configura el panel inferior con el botón de salir y la etiqueta de afinidad.
+     * Configura el panel inferior con los botones de añadir y quitar productos, el de salir y la etiqueta de afinidad.
      *
      * Precondición: -
-     * Postcondición: Se agrega un panel en la parte inferior con la afinidad total y un botón para cerrar la vista.
+     * Postcondición: Se agrega un panel en la parte inferior con la afinidad total, los botones para añadir y quitar
+     *                productos y un botón para cerrar la vista.
      */
     private void configurarBotonSaliryAfinidad(){
         JPanel panelBotonSalir = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton botonAnadir = new JButton("Añadir producto");
+        JButton botonQuitar = new JButton("Quitar producto");
         JButton botonSalir = new JButton("Salir");
         afinidad = new JLabel("Afinidad: " + ctrlP.getAfinidadTotal());
+        botonAnadir.addActionListener(e -> anadirProducto());
+        botonQuitar.addActionListener(e -> quitarProducto());
         botonSalir.addActionListener(e -> frameVista.setVisible(false));
         panelBotonSalir.add(afinidad);
+        panelBotonSalir.add(botonAnadir);
+        panelBotonSalir.add(botonQuitar);
         panelBotonSalir.add(botonSalir);
         frameVista.add(panelBotonSalir, BorderLayout.SOUTH);
     }
@@ -192,6 +201,93 @@ public class VistaModificarDistribucion {
         ventanaPosicionNueva.setVisible(true);
     }
 
+    /**
+     * Abre un diálogo para añadir a la distribución un producto del catálogo que no esté en ella.
+     *
+     * Precondición: -
+     * Postcondición: Si existe una distribución y se elige un producto, se añade en la mejor posición y se
+     *                reoptimiza sólo a su alrededor. Se actualizan la lista de productos y la afinidad mostrada.
+     */
+    private void anadirProducto() {
+        if (!ctrlP.existeDistribucion()) {
+            JOptionPane.showMessageDialog(frameVista, "No hay ninguna distribución.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        ArrayList<Producto> enDistribucion = ctrlP.getDistribucionOrdenada();
+        JComboBox<String> candidatos = new JComboBox<>();
+        for (Producto producto : ctrlP.getProductosCatalogo()) {
+            if (!enDistribucion.contains(producto)) candidatos.addItem(producto.getNombre());
+        }
+        if (candidatos.getItemCount() == 0) {
+            JOptionPane.showMessageDialog(frameVista, "Todos los productos ya están en la distribución.");
+            return;
+        }
+        int opcion = JOptionPane.showConfirmDialog(frameVista, candidatos, "Añadir producto a la distribución",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (opcion != JOptionPane.OK_OPTION) return;
+        modificarProductos((String) candidatos.getSelectedItem(), true);
+    }
+
+    /**
+     * Abre un diálogo para quitar un producto de la distribución.
+     *
+     * Precondición: -
+     * Postcondición: Si existe una distribución y se elige un producto, se quita y se reoptimiza sólo alrededor
+     *                del hueco. Se actualizan la lista de productos y la afinidad mostrada.
+     */
+    private void quitarProducto() {
+        if (!ctrlP.existeDistribucion()) {
+            JOptionPane.showMessageDialog(frameVista, "No hay ninguna distribución.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        JComboBox<String> candidatos = new JComboBox<>();
+        for (Producto producto : ctrlP.getDistribucionOrdenada()) {
+            candidatos.addItem(producto.getNombre());
+        }
+        int opcion = JOptionPane.showConfirmDialog(frameVista, candidatos, "Quitar producto de la distribución",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (opcion != JOptionPane.OK_OPTION) return;
+        modificarProductos((String) candidatos.getSelectedItem(), false);
+    }
+
+    /**
+     * Añade o quita un producto de la distribución en un hilo aparte, para que la reoptimización no congele
+     * la interfaz, y al acabar actualiza la lista de productos y la afinidad mostrada o muestra el error.
+     *
+     * Precondición: -
+     * Postcondición: Mientras se reoptimiza, la ventana no admite otras modificaciones.
+     *
+     * @param nombre Nombre del producto.
+     * @param anadir Si se añade ({@code true}) o se quita ({@code false}).
+     */
+    private void modificarProductos(String nombre, boolean anadir) {
+        frameVista.setEnabled(false);
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                if (anadir) ctrlP.anadirProductoDistribucion(nombre);
+                else ctrlP.eliminarProductoDistribucion(nombre);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                frameVista.setEnabled(true);
+                try {
+                    get();
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(frameVista, "Error: " + ex.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                actualizarListaProductos();
+                actualizarAfinidad();
+            }
+        }.execute();
+    }
+
     /**
      * Actualiza la lista de productos de la distribución mostrada en la vista.
      *
@@ -170,17 +170,19 @@ public class VistaPrincipal {
             distribucionText.append("</div></html>");
             distribucionLabel.setText(distribucionText.toString());
         }
-        afinidad.setText("Afinidad: " + ctrlP.getAfinidadTotal());
+        int cota = ctrlP.getCotaSuperior();
+        afinidad.setText("Afinidad: " + ctrlP.getAfinidadTotal() + (cota > 0 ? " (cota superior: " + cota + ")" : ""));
     }
 
     /**
-     * Configura el panel con los botones principales para gestionar la estantería, la distribución y los productos.
+     * Configura el panel con los botones principales para gestionar la estantería, la distribución y los productos
+     * (incluidas la importación y la exportación de productos).
      *
      * Precondición: -
      * Postcondición: Se añaden todos los botones con sus respectivas acciones.
      */
     private void configurarPanelBotones() {
-        panelBotonesP.setLayout(new GridLayout(4, 2, 10, 10));
+        panelBotonesP.setLayout(new GridLayout(5, 2, 10, 10));
 
         JButton mas = new JButton("+");
         mas.addActionListener(e -> {
@@ -251,14 +253,48 @@ public class VistaPrincipal {
         EE.addActionListener(e -> ctrlP.activarVistaEliminarEstanteria());
         panelBotonesP.add(EE);
 
+        JButton IP = new JButton("Importar productos");
+        IP.addActionListener(e -> {
+            // Precondición: -
+            // Postcondición: Si el usuario elige un fichero JSON Lines válido, sus productos se añaden al catálogo;
+            //                si no, se muestra el error y el catálogo no cambia.
+            JFileChooser selector = new JFileChooser();
+            if (selector.showOpenDialog(frameVista) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    long n = ctrlP.importarProductos(selector.getSelectedFile().getPath());
+                    JOptionPane.showMessageDialog(frameVista, "Se han importado " + n + " productos.");
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(frameVista, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        panelBotonesP.add(IP);
+
+        JButton XP = new JButton("Exportar productos");
+        XP.addActionListener(e -> {
+            // Precondición: -
+            // Postcondición: Si el usuario elige un fichero, se escriben en él todos los productos del catálogo.
+            JFileChooser selector = new JFileChooser();
+            selector.setSelectedFile(new java.io.File("productos.jsonl"));
+            if (selector.showSaveDialog(frameVista) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    long n = ctrlP.exportarProductos(selector.getSelectedFile().getPath());
+                    JOptionPane.showMessageDialog(frameVista, "Se han exportado " + n + " productos.");
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(frameVista, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        panelBotonesP.add(XP);
+
         frameVista.add(panelBotonesP, BorderLayout.CENTER);
     }
 
     /**
-     * Configura el panel con botones extra, como el de afinidad, reiniciar y guardar/salir.
+     * Configura el panel con botones extra, como el de afinidad, métricas, reiniciar y guardar/salir.
      *
      * Precondición: -
-     * Postcondición: Se añaden las etiquetas de afinidad y los botones para reiniciar y guardar/salir.
+     * Postcondición: Se añaden las etiquetas de afinidad y los botones para ver las métricas, reiniciar y guardar/salir.
      *
      * @throws Exception Si se produce algún error durante la reconfiguración.
      */
@@ -276,6 +312,7 @@ public class VistaPrincipal {
             try {
                 ctrlP.peristenciaEstanterias();
                 ctrlP.peristenciaProductos();
+                System.err.println(ctrlP.getResumenPersistencia());
                 System.exit(0);
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
@@ -299,7 +336,30 @@ public class VistaPrincipal {
             }
         });
 
+        JButton metricasButton = new JButton("Métricas");
+        metricasButton.addActionListener(e -> {
+            // Precondición: -
+            // Postcondición: Se muestran las métricas en JSON y, si el usuario lo pide, se guardan en un fichero.
+            JTextArea texto = new JTextArea(ctrlP.getMetricasJson(), 25, 70);
+            texto.setEditable(false);
+            Object[] opciones = {"Guardar", "Cerrar"};
+            int opcion = JOptionPane.showOptionDialog(frameVista, new JScrollPane(texto), "Métricas",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, opciones, opciones[1]);
+            if (opcion == 0) {
+                JFileChooser selector = new JFileChooser();
+                selector.setSelectedFile(new java.io.File("metricas.json"));
+                if (selector.showSaveDialog(frameVista) == JFileChooser.APPROVE_OPTION) {
+                    try {
+                        ctrlP.volcarMetricas(selector.getSelectedFile().getPath());
+                    } catch (Exception ex) {
+                        JOptionPane.showMessageDialog(null, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        });
+
         panelBotonesEx.add(afinidad);
+        panelBotonesEx.add(metricasButton);
         panelBotonesEx.add(resetButton);
         panelBotonesEx.add(exitButton);
 